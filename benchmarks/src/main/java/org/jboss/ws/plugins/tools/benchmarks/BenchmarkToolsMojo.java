@@ -0,0 +1,141 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.apache.maven.artifact.Artifact;
+import org.codehaus.plexus.util.FileUtils;
+import org.jboss.ws.plugins.tools.WsConsumeMojo;
+
+/**
+ * A wsconsume mojo working on a synthetic classpath, for benchmarking the
+ * mojo infrastructure outside of a Maven build.
+ */
+public class BenchmarkToolsMojo extends WsConsumeMojo
+{
+   private final File baseDirectory;
+   private final List<String> classpathElements;
+
+   /**
+    * @param baseDirectory  the directory to create the classpath and the build directory in
+    * @param size           the number of classpath elements
+    */
+   public BenchmarkToolsMojo(File baseDirectory, int size) throws IOException
+   {
+      this.baseDirectory = baseDirectory;
+      this.classpathElements = createClasspath(new File(baseDirectory, "repository"), size);
+   }
+
+   /**
+    * @param baseDirectory      the directory to create the build directory in
+    * @param classpathElements  the classpath elements
+    */
+   public BenchmarkToolsMojo(File baseDirectory, List<String> classpathElements)
+   {
+      this.baseDirectory = baseDirectory;
+      this.classpathElements = classpathElements;
+   }
+
+   /**
+    * Create the given number of small jars, laid out like in a local Maven repository
+    */
+   private static List<String> createClasspath(File repository, int size) throws IOException
+   {
+      List<String> elements = new ArrayList<String>(size);
+      for (int i = 0; i < size; i++)
+      {
+         File jar = new File(repository, "org/example/group" + (i % 50) + "/artifact-" + i + "/1.0." + i + "/artifact-" + i + "-1.0." + i + ".jar");
+         jar.getParentFile().mkdirs();
+         JarOutputStream jos = new JarOutputStream(new FileOutputStream(jar));
+         try
+         {
+            jos.putNextEntry(new JarEntry("org/example/artifact" + i + "/Type.class"));
+            jos.write(new byte[64]);
+         }
+         finally
+         {
+            jos.close();
+         }
+         elements.add(jar.getAbsolutePath());
+      }
+      return elements;
+   }
+
+   @Override
+   public void execute()
+   {
+   }
+
+   /**
+    * Start a new build session, as far as the session-scoped classloader is concerned
+    */
+   public void setSessionStartTime(Date sessionStartTime)
+   {
+      this.sessionStartTime = sessionStartTime;
+   }
+
+   /**
+    * @return the classloader of the session, including the classpath elements
+    */
+   public URLClassLoader getClassLoader()
+   {
+      return getMavenClasspathAwareClassLoader();
+   }
+
+   public void cleanUp() throws IOException
+   {
+      FileUtils.deleteDirectory(baseDirectory);
+   }
+
+   @Override
+   public File getOutputDirectory()
+   {
+      return new File(baseDirectory, "target/classes");
+   }
+
+   @Override
+   public List<String> getClasspathElements()
+   {
+      return classpathElements;
+   }
+
+   @Override
+   public List<Artifact> getPluginArtifacts()
+   {
+      return Collections.emptyList();
+   }
+
+   @Override
+   protected void updateProjectSourceRoots()
+   {
+   }
+}
@@ -0,0 +1,99 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools.benchmarks;
+
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.ws.plugins.tools.ClassLoaderCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the classloader of the mojos ({@link BenchmarkToolsMojo#getClassLoader()}): a new
+ * session per invocation measures the creation of the loader (and a lookup through the whole
+ * classpath), while the shared session measures the reuse of the session-scoped one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClassLoaderBenchmark
+{
+   @Param({"100", "500"})
+   public int classpathSize;
+
+   private BenchmarkToolsMojo mojo;
+   private final Date session = new Date();
+
+   @Setup
+   public void setUp() throws IOException
+   {
+      mojo = new BenchmarkToolsMojo(Files.createTempDirectory("jaxws-tools-bench-").toFile(), classpathSize);
+   }
+
+   @TearDown
+   public void tearDown() throws IOException
+   {
+      mojo.cleanUp();
+   }
+
+   @Benchmark
+   public Object newSession() throws Exception
+   {
+      mojo.setSessionStartTime(new Date(System.nanoTime()));
+      URLClassLoader loader = mojo.getClassLoader();
+      try
+      {
+         //resources missing from the classpath are looked up through all of its jars
+         return loader.getResource("META-INF/services/javax.xml.ws.spi.Provider");
+      }
+      finally
+      {
+         ClassLoaderCache.release(loader);
+      }
+   }
+
+   @Benchmark
+   public Object sharedSession()
+   {
+      mojo.setSessionStartTime(session);
+      URLClassLoader loader = mojo.getClassLoader();
+      ClassLoaderCache.release(loader);
+      return loader;
+   }
+}
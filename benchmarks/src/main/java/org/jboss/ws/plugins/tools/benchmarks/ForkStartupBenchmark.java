@@ -0,0 +1,103 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.jboss.ws.plugins.tools.ForkProfile;
+import org.jboss.ws.plugins.tools.WSContractConsumerParams;
+import org.jboss.ws.plugins.tools.WSContractDelegate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the startup of a forked wsconsume JVM with each {@link ForkProfile}, by consuming
+ * a single-operation synthetic wsdl, so that the time is dominated by the JVM and tool startup.
+ * The total time gains on larger wsdl sets are measured by {@link GenerationBenchmark}
+ * (<code>profiles=default,fast-start,throughput</code>).
+ *
+ * The JBossWS tools stack must be on the classpath, e.g. through the shaded benchmarks jar.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ForkStartupBenchmark
+{
+   @Param({"default", "fast-start", "throughput"})
+   public String profile;
+
+   private BenchmarkToolsMojo mojo;
+   private WSContractDelegate delegate;
+   private WSContractConsumerParams params;
+   private String wsdl;
+
+   @Setup
+   public void setUp() throws IOException
+   {
+      File directory = Files.createTempDirectory("jaxws-tools-bench-").toFile();
+      mojo = new BenchmarkToolsMojo(directory, Arrays.asList(System.getProperty("java.class.path").split(File.pathSeparator)));
+      wsdl = new SyntheticWsdlGenerator(1, 1, 1, 1, 0).generateService(new File(directory, "corpus"), 0).getAbsolutePath();
+      delegate = new WSContractDelegate(new SystemStreamLog());
+      params = new WSContractConsumerParams();
+      params.setFork(true);
+      params.setForkProfile(ForkProfile.fromName(profile));
+      params.setManifestOnlyJar(mojo.createJar(mojo.getClasspathElements(), ""));
+      params.setGenerateSource(true);
+      params.setNoCompile(true);
+      params.setOutputDirectory(new File(directory, "output/classes"));
+      params.setSourceDirectory(new File(directory, "output/sources"));
+   }
+
+   @TearDown
+   public void tearDown() throws IOException
+   {
+      mojo.cleanUp();
+   }
+
+   @Benchmark
+   public void consume() throws Exception
+   {
+      FileUtils.cleanDirectory(params.getSourceDirectory().getParentFile());
+      params.getOutputDirectory().mkdirs();
+      params.getSourceDirectory().mkdirs();
+      delegate.runConsumer(params, wsdl);
+   }
+}
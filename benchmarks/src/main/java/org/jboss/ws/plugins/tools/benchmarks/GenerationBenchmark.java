@@ -0,0 +1,386 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.jboss.ws.plugins.tools.ClassLoaderCache;
+import org.jboss.ws.plugins.tools.ForkProfile;
+import org.jboss.ws.plugins.tools.WSContractConsumerJob;
+import org.jboss.ws.plugins.tools.WSContractConsumerJob.Status;
+import org.jboss.ws.plugins.tools.WSContractConsumerParams;
+import org.jboss.ws.plugins.tools.WSContractDelegate;
+
+/**
+ * End-to-end wsconsume benchmark over a synthetic corpus (see {@link SyntheticWsdlGenerator}),
+ * running {@link WSContractDelegate} in-process, in fork mode (a JVM per wsdl) and in batch mode
+ * (a single JVM for all the wsdls), the forked modes with each of the given {@link ForkProfile}s.
+ * Each run happens in a fresh JVM, for which the wall time,
+ * the number of generated files per second and the peak RSS of the JVM and of the tool JVMs it
+ * forks (Linux only) are reported.
+ *
+ * Usage: <code>GenerationBenchmark &lt;directory&gt; [name=value ...]</code>, the settings being
+ * <code>services</code> (1), <code>operations</code> (100), <code>types</code> (200),
+ * <code>depth</code> (3), <code>fanOut</code> (4), <code>seed</code> (0),
+ * <code>modes</code> (in-process,fork,batch), <code>profiles</code> (default), <code>iterations</code> (3),
+ * <code>compile</code> (false) and <code>jvmArgs</code> (none).
+ *
+ * The JBossWS tools stack must be on the classpath, e.g. through the shaded benchmarks jar.
+ */
+public class GenerationBenchmark
+{
+   private static final String RUN = "--run";
+   private static final String RESULT = "RESULT ";
+   private static final List<String> MODES = Arrays.asList("in-process", "fork", "batch");
+
+   public static void main(String[] args) throws Exception
+   {
+      if (args.length > 0 && RUN.equals(args[0]))
+      {
+         run(args[1], ForkProfile.fromName(args[2]), new File(args[3]), Boolean.parseBoolean(args[4]), Arrays.asList(args).subList(5, args.length));
+         return;
+      }
+      if (args.length < 1)
+      {
+         System.err.println("Usage: GenerationBenchmark <directory> [services=1] [operations=100] [types=200] [depth=3] [fanOut=4] [seed=0]"
+               + " [modes=in-process,fork,batch] [profiles=default,fast-start,throughput] [iterations=3] [compile=false] [jvmArgs=...]");
+         System.exit(1);
+      }
+      Map<String, String> settings = new HashMap<String, String>();
+      for (int i = 1; i < args.length; i++)
+      {
+         int eq = args[i].indexOf('=');
+         settings.put(args[i].substring(0, eq), args[i].substring(eq + 1));
+      }
+      File directory = new File(args[0]).getAbsoluteFile();
+      File corpus = new File(directory, "corpus");
+      FileUtils.deleteDirectory(corpus);
+      SyntheticWsdlGenerator generator = new SyntheticWsdlGenerator(intSetting(settings, "operations", 100), intSetting(settings, "types", 200),
+            intSetting(settings, "depth", 3), intSetting(settings, "fanOut", 4), Long.parseLong(setting(settings, "seed", "0")));
+      List<File> wsdls = generator.generate(corpus, intSetting(settings, "services", 1));
+
+      final int iterations = intSetting(settings, "iterations", 3);
+      final boolean compile = Boolean.parseBoolean(setting(settings, "compile", "false"));
+      final String jvmArgs = settings.get("jvmArgs");
+      Map<String, List<long[]>> results = new LinkedHashMap<String, List<long[]>>();
+      List<ForkProfile> profiles = new ArrayList<ForkProfile>();
+      for (String profile : setting(settings, "profiles", "default").split(","))
+      {
+         profiles.add(ForkProfile.fromName(profile));
+      }
+      for (String mode : setting(settings, "modes", "in-process,fork,batch").split(","))
+      {
+         if (!MODES.contains(mode))
+         {
+            throw new IllegalArgumentException("Unknown mode: " + mode + ", expected one of " + MODES);
+         }
+         //the profile only applies to the forked JVMs
+         for (ForkProfile profile : "in-process".equals(mode) ? Arrays.asList(ForkProfile.DEFAULT) : profiles)
+         {
+            String name = "in-process".equals(mode) ? mode : mode + "/" + profile;
+            List<long[]> runs = new ArrayList<long[]>();
+            for (int i = 0; i < iterations; i++)
+            {
+               File output = new File(directory, "output-" + mode);
+               FileUtils.deleteDirectory(output);
+               runs.add(spawn(mode, profile, output, compile, jvmArgs, wsdls));
+            }
+            results.put(name, runs);
+         }
+      }
+      report(settings, wsdls.size(), results);
+   }
+
+   private static String setting(Map<String, String> settings, String name, String defaultValue)
+   {
+      String value = settings.get(name);
+      return value != null ? value : defaultValue;
+   }
+
+   private static int intSetting(Map<String, String> settings, String name, int defaultValue)
+   {
+      return Integer.parseInt(setting(settings, name, String.valueOf(defaultValue)));
+   }
+
+   /**
+    * Run the given mode in a fresh JVM
+    *
+    * @return wall time (ms), generated files, peak RSS (kB), peak tool JVMs RSS (kB)
+    */
+   private static long[] spawn(String mode, ForkProfile profile, File output, boolean compile, String jvmArgs, List<File> wsdls) throws Exception
+   {
+      List<String> command = new ArrayList<String>();
+      command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath());
+      if (jvmArgs != null)
+      {
+         command.addAll(Arrays.asList(jvmArgs.trim().split("\\s+")));
+      }
+      command.add("-cp");
+      command.add(System.getProperty("java.class.path"));
+      command.add(GenerationBenchmark.class.getName());
+      command.add(RUN);
+      command.add(mode);
+      command.add(profile.getName());
+      command.add(output.getAbsolutePath());
+      command.add(String.valueOf(compile));
+      for (File wsdl : wsdls)
+      {
+         command.add(wsdl.getAbsolutePath());
+      }
+      Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+      BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+      long[] result = null;
+      String line;
+      while ((line = reader.readLine()) != null)
+      {
+         if (line.startsWith(RESULT))
+         {
+            String[] values = line.substring(RESULT.length()).split(" ");
+            result = new long[values.length];
+            for (int i = 0; i < values.length; i++)
+            {
+               result[i] = Long.parseLong(values[i]);
+            }
+         }
+         else
+         {
+            System.out.println("[" + mode + "] " + line);
+         }
+      }
+      final int exitCode = process.waitFor();
+      if (exitCode != 0 || result == null)
+      {
+         throw new IllegalStateException("The " + mode + " run failed with exit code " + exitCode);
+      }
+      return result;
+   }
+
+   private static void run(String mode, ForkProfile profile, File output, boolean compile, List<String> wsdls) throws Exception
+   {
+      List<String> classpath = Arrays.asList(System.getProperty("java.class.path").split(File.pathSeparator));
+      BenchmarkToolsMojo mojo = new BenchmarkToolsMojo(output, classpath);
+      mojo.setSessionStartTime(new Date());
+      RssSampler sampler = new RssSampler();
+      sampler.start();
+
+      final long start = System.nanoTime();
+      WSContractConsumerParams params = new WSContractConsumerParams();
+      params.setGenerateSource(true);
+      params.setNoCompile(!compile);
+      params.setOutputDirectory(new File(output, "classes"));
+      params.setSourceDirectory(new File(output, "sources"));
+      params.getOutputDirectory().mkdirs();
+      params.getSourceDirectory().mkdirs();
+      URLClassLoader loader = mojo.getClassLoader();
+      try
+      {
+         params.setLoader(loader);
+         if (!"in-process".equals(mode))
+         {
+            params.setFork(true);
+            params.setManifestOnlyJar(mojo.createJar(classpath, ""));
+            params.setForkProfile(profile);
+         }
+         WSContractDelegate delegate = new WSContractDelegate(new SystemStreamLog());
+         if ("batch".equals(mode))
+         {
+            List<WSContractConsumerJob> jobs = new ArrayList<WSContractConsumerJob>();
+            for (String wsdl : wsdls)
+            {
+               jobs.add(new WSContractConsumerJob(params, wsdl));
+            }
+            delegate.runConsumerBatch(params, jobs);
+            for (WSContractConsumerJob job : jobs)
+            {
+               if (job.getStatus() != Status.SUCCESS)
+               {
+                  throw new IllegalStateException("Could not consume " + job.getWsdl() + ": " + job.getMessage());
+               }
+            }
+         }
+         else
+         {
+            for (String wsdl : wsdls)
+            {
+               delegate.runConsumer(params, wsdl);
+            }
+         }
+      }
+      finally
+      {
+         ClassLoaderCache.release(loader);
+      }
+      final long wallTime = (System.nanoTime() - start) / 1000000L;
+      sampler.interrupt();
+      sampler.join();
+
+      final long files = FileUtils.getFiles(output, "sources/**,classes/**", null).size();
+      System.out.println(RESULT + wallTime + " " + files + " " + RssSampler.peakRss("self") + " " + sampler.peakChildRss);
+      //the classloader cache and the JVM shutdown would not be part of a Maven build
+      System.exit(0);
+   }
+
+   private static void report(Map<String, String> settings, int services, Map<String, List<long[]>> results)
+   {
+      System.out.println();
+      System.out.println("Corpus: " + services + " service(s), settings " + settings);
+      System.out.println(String.format("%-20s %4s %10s %8s %10s %14s %14s", "mode", "run", "wall (ms)", "files", "files/s", "peak RSS (MB)", "tool RSS (MB)"));
+      for (Map.Entry<String, List<long[]>> e : results.entrySet())
+      {
+         int run = 0;
+         for (long[] r : e.getValue())
+         {
+            System.out.println(String.format("%-20s %4d %10d %8d %10.1f %14s %14s", e.getKey(), ++run, r[0], r[1],
+                  r[0] > 0 ? r[1] * 1000.0 / r[0] : 0.0, megabytes(r[2]), megabytes(r[3])));
+         }
+      }
+   }
+
+   private static String megabytes(long kilobytes)
+   {
+      return kilobytes < 0 ? "n/a" : String.valueOf(kilobytes / 1024);
+   }
+
+   /**
+    * Samples the peak RSS of the descendant processes (i.e. the forked tool JVMs) through /proc
+    */
+   private static class RssSampler extends Thread
+   {
+      private volatile long peakChildRss = -1;
+
+      RssSampler()
+      {
+         super("rss-sampler");
+         setDaemon(true);
+      }
+
+      @Override
+      public void run()
+      {
+         if (!new File("/proc/self/status").isFile())
+         {
+            return;
+         }
+         String pid;
+         try
+         {
+            pid = new File("/proc/self").getCanonicalFile().getName();
+         }
+         catch (IOException ioe)
+         {
+            return;
+         }
+         peakChildRss = 0;
+         while (!isInterrupted())
+         {
+            for (String child : descendants(pid))
+            {
+               peakChildRss = Math.max(peakChildRss, peakRss(child));
+            }
+            try
+            {
+               Thread.sleep(20);
+            }
+            catch (InterruptedException ie)
+            {
+               return;
+            }
+         }
+      }
+
+      private static List<String> descendants(String pid)
+      {
+         Map<String, List<String>> children = new HashMap<String, List<String>>();
+         String[] pids = new File("/proc").list();
+         for (String p : pids != null ? pids : new String[0])
+         {
+            if (!p.isEmpty() && Character.isDigit(p.charAt(0)))
+            {
+               try
+               {
+                  String stat = FileUtils.fileRead(new File("/proc/" + p + "/stat"));
+                  //the command name (2nd field) is within parentheses and may contain spaces
+                  String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+                  List<String> siblings = children.get(fields[1]);
+                  if (siblings == null)
+                  {
+                     siblings = new ArrayList<String>();
+                     children.put(fields[1], siblings);
+                  }
+                  siblings.add(p);
+               }
+               catch (IOException ignored)
+               {
+                  //the process is gone
+               }
+            }
+         }
+         List<String> result = new ArrayList<String>();
+         List<String> pending = new ArrayList<String>(Arrays.asList(pid));
+         while (!pending.isEmpty())
+         {
+            List<String> c = children.get(pending.remove(pending.size() - 1));
+            if (c != null)
+            {
+               result.addAll(c);
+               pending.addAll(c);
+            }
+         }
+         return result;
+      }
+
+      /**
+       * @return the peak resident set size (kB) of the given process, -1 if unknown
+       */
+      static long peakRss(String pid)
+      {
+         try
+         {
+            for (String line : FileUtils.fileRead(new File("/proc/" + pid + "/status")).split("\n"))
+            {
+               if (line.startsWith("VmHWM:"))
+               {
+                  return Long.parseLong(line.substring("VmHWM:".length()).replace("kB", "").trim());
+               }
+            }
+         }
+         catch (IOException ignored)
+         {
+            //not on Linux or the process is gone
+         }
+         return -1;
+      }
+   }
+}
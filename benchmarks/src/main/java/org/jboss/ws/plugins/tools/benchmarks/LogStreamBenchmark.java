@@ -0,0 +1,195 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools.benchmarks;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.logging.Log;
+import org.jboss.ws.plugins.tools.BufferedLog;
+import org.jboss.ws.plugins.tools.LogOutputStream;
+import org.jboss.ws.plugins.tools.MavenLogStreamConsumer.Type;
+import org.jboss.ws.plugins.tools.MavenLogStreamConsumer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the line throughput of the tool output routing: {@link MavenLogStreamConsumer}
+ * (forked tools), the same behind a {@link BufferedLog} (concurrent jobs) and the
+ * {@link LogOutputStream} print stream handed to the in-process tools.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogStreamBenchmark
+{
+   private static final int LINES = 1000;
+
+   private final String[] lines = new String[LINES];
+   private CountingLog log;
+
+   @Setup
+   public void setUp()
+   {
+      for (int i = 0; i < LINES; i++)
+      {
+         lines[i] = i % 10 == 0 ? "parsing WSDL..." : "org/example/generated/service/Type" + i + ".java";
+      }
+      log = new CountingLog();
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(LINES)
+   public long consumer()
+   {
+      MavenLogStreamConsumer consumer = new MavenLogStreamConsumer(log, Type.OUTPUT);
+      for (String line : lines)
+      {
+         consumer.consumeLine(line);
+      }
+      return log.count;
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(LINES)
+   public long bufferedConsumer()
+   {
+      BufferedLog bufferedLog = new BufferedLog(log);
+      MavenLogStreamConsumer consumer = new MavenLogStreamConsumer(bufferedLog, Type.OUTPUT);
+      for (String line : lines)
+      {
+         consumer.consumeLine(line);
+      }
+      bufferedLog.flush();
+      return log.count;
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(LINES)
+   public long printStream()
+   {
+      PrintStream ps = new PrintStream(new LogOutputStream(new MavenLogStreamConsumer(log, Type.OUTPUT)), true);
+      for (String line : lines)
+      {
+         ps.println(line);
+      }
+      ps.close();
+      return log.count;
+   }
+
+   /**
+    * A Log counting the messages instead of printing them
+    */
+   private static class CountingLog implements Log
+   {
+      long count;
+
+      public boolean isDebugEnabled()
+      {
+         return false;
+      }
+
+      public void debug(CharSequence content)
+      {
+      }
+
+      public void debug(CharSequence content, Throwable error)
+      {
+      }
+
+      public void debug(Throwable error)
+      {
+      }
+
+      public boolean isInfoEnabled()
+      {
+         return true;
+      }
+
+      public void info(CharSequence content)
+      {
+         count += content.length();
+      }
+
+      public void info(CharSequence content, Throwable error)
+      {
+         count += content.length();
+      }
+
+      public void info(Throwable error)
+      {
+         count++;
+      }
+
+      public boolean isWarnEnabled()
+      {
+         return true;
+      }
+
+      public void warn(CharSequence content)
+      {
+         count += content.length();
+      }
+
+      public void warn(CharSequence content, Throwable error)
+      {
+         count += content.length();
+      }
+
+      public void warn(Throwable error)
+      {
+         count++;
+      }
+
+      public boolean isErrorEnabled()
+      {
+         return true;
+      }
+
+      public void error(CharSequence content)
+      {
+         count += content.length();
+      }
+
+      public void error(CharSequence content, Throwable error)
+      {
+         count += content.length();
+      }
+
+      public void error(Throwable error)
+      {
+         count++;
+      }
+   }
+}
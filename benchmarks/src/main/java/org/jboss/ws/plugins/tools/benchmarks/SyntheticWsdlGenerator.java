@@ -0,0 +1,254 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Generates a deterministic set of synthetic wsdl documents (document/literal wrapped)
+ * and of the schemas they import, for measuring how wsconsume scales with the size and
+ * the shape of the contracts:
+ * <ul>
+ * <li><code>operations</code>: the number of operations of each service</li>
+ * <li><code>types</code>: the number of top level complex types of each service</li>
+ * <li><code>depth</code>: the nesting depth of each top level type</li>
+ * <li><code>fanOut</code>: the number of schema documents (and namespaces) the types are spread over</li>
+ * </ul>
+ * The same settings (and seed) always produce the very same documents.
+ *
+ * Usage: <code>SyntheticWsdlGenerator &lt;directory&gt; [services] [operations] [types] [depth] [fanOut] [seed]</code>
+ */
+public class SyntheticWsdlGenerator
+{
+   private static final String NS = "http://example.org/synthetic/";
+   private static final String[] SIMPLE_TYPES = {"xsd:string", "xsd:int", "xsd:long", "xsd:boolean", "xsd:decimal", "xsd:dateTime", "xsd:base64Binary"};
+
+   private final int operations;
+   private final int types;
+   private final int depth;
+   private final int fanOut;
+   private final long seed;
+
+   public SyntheticWsdlGenerator(int operations, int types, int depth, int fanOut, long seed)
+   {
+      if (operations < 1 || types < 1 || depth < 0 || fanOut < 1)
+      {
+         throw new IllegalArgumentException("Invalid settings: operations=" + operations + ", types=" + types + ", depth=" + depth + ", fanOut=" + fanOut);
+      }
+      this.operations = operations;
+      this.types = types;
+      this.depth = depth;
+      this.fanOut = Math.min(fanOut, types);
+      this.seed = seed;
+   }
+
+   /**
+    * Generate the given number of services, each into its own subdirectory of the given directory
+    *
+    * @return the wsdl files
+    */
+   public List<File> generate(File directory, int services) throws IOException
+   {
+      List<File> wsdls = new ArrayList<File>(services);
+      for (int i = 0; i < services; i++)
+      {
+         wsdls.add(generateService(new File(directory, "service" + i), i));
+      }
+      return wsdls;
+   }
+
+   /**
+    * Generate a single service (the wsdl and its schemas) into the given directory
+    *
+    * @return the wsdl file
+    */
+   public File generateService(File directory, int index) throws IOException
+   {
+      directory.mkdirs();
+      final String ns = NS + "s" + index;
+      Random random = new Random(seed * 31 + index);
+      for (int f = 0; f < fanOut; f++)
+      {
+         write(new File(directory, "types" + f + ".xsd"), schema(ns, f, random));
+      }
+      File wsdl = new File(directory, "service" + index + ".wsdl");
+      write(wsdl, wsdl(ns, index));
+      return wsdl;
+   }
+
+   /**
+    * The schema file f holds the top level types t such that t % fanOut == f; types may refer
+    * to the types of the files having a lower index only, so that imports are not cyclic
+    */
+   private String schema(String ns, int f, Random random)
+   {
+      StringBuilder body = new StringBuilder();
+      TreeSet<Integer> imports = new TreeSet<Integer>();
+      for (int t = f; t < types; t += fanOut)
+      {
+         String name = "Type" + t;
+         for (int level = 0; level <= depth; level++)
+         {
+            String typeName = level == 0 ? name : name + "Level" + level;
+            body.append("  <xsd:complexType name=\"").append(typeName).append("\">\n");
+            body.append("    <xsd:sequence>\n");
+            final int fields = 2 + random.nextInt(4);
+            for (int i = 0; i < fields; i++)
+            {
+               body.append("      <xsd:element name=\"field").append(i).append("\" type=\"")
+                  .append(SIMPLE_TYPES[random.nextInt(SIMPLE_TYPES.length)]).append("\"")
+                  .append(random.nextInt(4) == 0 ? " minOccurs=\"0\" maxOccurs=\"unbounded\"" : "").append("/>\n");
+            }
+            if (level < depth)
+            {
+               body.append("      <xsd:element name=\"nested\" type=\"tns:").append(name).append("Level").append(level + 1).append("\"/>\n");
+            }
+            if (level == 0 && f > 0)
+            {
+               final int target = random.nextInt(f);
+               final int referenced = target + fanOut * random.nextInt(Math.max(1, (types - target + fanOut - 1) / fanOut));
+               imports.add(target);
+               body.append("      <xsd:element name=\"related\" type=\"t").append(target).append(":Type").append(referenced)
+                  .append("\" minOccurs=\"0\"/>\n");
+            }
+            body.append("    </xsd:sequence>\n");
+            body.append("  </xsd:complexType>\n");
+         }
+      }
+      StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+      sb.append("<xsd:schema xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\" targetNamespace=\"").append(ns).append("/types").append(f)
+         .append("\" xmlns:tns=\"").append(ns).append("/types").append(f).append("\"");
+      for (Integer i : imports)
+      {
+         sb.append(" xmlns:t").append(i).append("=\"").append(ns).append("/types").append(i).append("\"");
+      }
+      sb.append(" elementFormDefault=\"qualified\">\n");
+      for (Integer i : imports)
+      {
+         sb.append("  <xsd:import namespace=\"").append(ns).append("/types").append(i).append("\" schemaLocation=\"types").append(i).append(".xsd\"/>\n");
+      }
+      sb.append(body);
+      sb.append("</xsd:schema>\n");
+      return sb.toString();
+   }
+
+   private String wsdl(String ns, int index)
+   {
+      StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+      sb.append("<definitions name=\"Service").append(index).append("\" targetNamespace=\"").append(ns).append("\"\n");
+      sb.append("    xmlns=\"http://schemas.xmlsoap.org/wsdl/\" xmlns:soap=\"http://schemas.xmlsoap.org/wsdl/soap/\"\n");
+      sb.append("    xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\" xmlns:tns=\"").append(ns).append("\">\n");
+      sb.append("  <types>\n");
+      sb.append("    <xsd:schema targetNamespace=\"").append(ns).append("\" elementFormDefault=\"qualified\"");
+      for (int f = 0; f < fanOut; f++)
+      {
+         sb.append(" xmlns:t").append(f).append("=\"").append(ns).append("/types").append(f).append("\"");
+      }
+      sb.append(">\n");
+      for (int f = 0; f < fanOut; f++)
+      {
+         sb.append("      <xsd:import namespace=\"").append(ns).append("/types").append(f).append("\" schemaLocation=\"types").append(f).append(".xsd\"/>\n");
+      }
+      for (int o = 0; o < operations; o++)
+      {
+         wrapper(sb, "operation" + o, "arg0", o % types);
+         wrapper(sb, "operation" + o + "Response", "return", (o + 1) % types);
+      }
+      sb.append("    </xsd:schema>\n");
+      sb.append("  </types>\n");
+      for (int o = 0; o < operations; o++)
+      {
+         for (String suffix : new String[]{"", "Response"})
+         {
+            sb.append("  <message name=\"operation").append(o).append(suffix).append("\"><part name=\"parameters\" element=\"tns:operation")
+               .append(o).append(suffix).append("\"/></message>\n");
+         }
+      }
+      sb.append("  <portType name=\"Service").append(index).append("PortType\">\n");
+      for (int o = 0; o < operations; o++)
+      {
+         sb.append("    <operation name=\"operation").append(o).append("\"><input message=\"tns:operation").append(o)
+            .append("\"/><output message=\"tns:operation").append(o).append("Response\"/></operation>\n");
+      }
+      sb.append("  </portType>\n");
+      sb.append("  <binding name=\"Service").append(index).append("Binding\" type=\"tns:Service").append(index).append("PortType\">\n");
+      sb.append("    <soap:binding style=\"document\" transport=\"http://schemas.xmlsoap.org/soap/http\"/>\n");
+      for (int o = 0; o < operations; o++)
+      {
+         sb.append("    <operation name=\"operation").append(o).append("\"><soap:operation soapAction=\"\"/>")
+            .append("<input><soap:body use=\"literal\"/></input><output><soap:body use=\"literal\"/></output></operation>\n");
+      }
+      sb.append("  </binding>\n");
+      sb.append("  <service name=\"Service").append(index).append("\">\n");
+      sb.append("    <port name=\"Service").append(index).append("Port\" binding=\"tns:Service").append(index).append("Binding\">\n");
+      sb.append("      <soap:address location=\"http://localhost:8080/synthetic/s").append(index).append("\"/>\n");
+      sb.append("    </port>\n");
+      sb.append("  </service>\n");
+      sb.append("</definitions>\n");
+      return sb.toString();
+   }
+
+   private void wrapper(StringBuilder sb, String name, String child, int type)
+   {
+      sb.append("      <xsd:element name=\"").append(name).append("\"><xsd:complexType><xsd:sequence>")
+         .append("<xsd:element name=\"").append(child).append("\" type=\"t").append(type % fanOut).append(":Type").append(type)
+         .append("\"/></xsd:sequence></xsd:complexType></xsd:element>\n");
+   }
+
+   private static void write(File file, String content) throws IOException
+   {
+      Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+      try
+      {
+         writer.write(content);
+      }
+      finally
+      {
+         writer.close();
+      }
+   }
+
+   public static void main(String[] args) throws IOException
+   {
+      if (args.length < 1)
+      {
+         System.err.println("Usage: SyntheticWsdlGenerator <directory> [services] [operations] [types] [depth] [fanOut] [seed]");
+         System.exit(1);
+      }
+      final int services = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+      SyntheticWsdlGenerator generator = new SyntheticWsdlGenerator(args.length > 2 ? Integer.parseInt(args[2]) : 100,
+            args.length > 3 ? Integer.parseInt(args[3]) : 200, args.length > 4 ? Integer.parseInt(args[4]) : 3,
+            args.length > 5 ? Integer.parseInt(args[5]) : 4, args.length > 6 ? Long.parseLong(args[6]) : 0);
+      for (File wsdl : generator.generate(new File(args[0]), services))
+      {
+         System.out.println(wsdl.getAbsolutePath());
+      }
+   }
+}
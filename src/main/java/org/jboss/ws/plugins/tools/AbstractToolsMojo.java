@@ -24,17 +24,21 @@ package org.jboss.ws.plugins.tools;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.project.MavenProject;
 
 /**
@@ -46,6 +50,9 @@ import org.apache.maven.project.MavenProject;
  */
 abstract class AbstractToolsMojo extends AbstractMojo
 {
+   private static final String CLASSPATH_JAR_PREFIX = "jaxws-tools-maven-plugin-classpath-";
+   private static final long STALE_JAR_AGE = 24 * 60 * 60 * 1000L;
+
    /**
    * @parameter property="project"
    * @readonly
@@ -66,6 +73,33 @@ abstract class AbstractToolsMojo extends AbstractMojo
     * @parameter default-value="false"
     */
    protected Boolean verbose;
+
+   /**
+    * Whether or not to only log a summary line for each successful tool invocation, the tool
+    * output being kept in a bounded buffer and logged only if the invocation fails; tool warnings
+    * are always logged. Ignored in verbose mode.
+    * 
+    * @parameter default-value="false" property="jaxws.tools.quiet"
+    */
+   protected Boolean quiet;
+
+   /**
+    * Whether or not to normalize the generated outputs, so that identical inputs result in byte-identical
+    * files: generation timestamps are pinned to the outputTimestamp (or stripped when not set), lists whose
+    * order is not meaningful (schema declarations, @XmlSeeAlso classes) are sorted and line separators
+    * are turned into \n.
+    * 
+    * @parameter default-value="false" property="jaxws.tools.reproducible"
+    */
+   protected Boolean reproducible;
+
+   /**
+    * The timestamp to pin in the generated outputs in reproducible mode, either as an ISO-8601 date time
+    * with offset or as a number of seconds since the epoch; generation timestamps are stripped when not set.
+    * 
+    * @parameter default-value="${project.build.outputTimestamp}" property="jaxws.tools.outputTimestamp"
+    */
+   protected String outputTimestamp;
    
    /**
     * An optional additional argLine to be used when running in fork mode; can be used to set endorse dir, enable debugging, etc. 
@@ -78,6 +112,103 @@ abstract class AbstractToolsMojo extends AbstractMojo
     */
    protected Boolean fork;
 
+   /**
+    * Whether or not to run the tools in a long-lived JVM shared by all the executions
+    * (and reactor modules) having the same tool classpath within the Maven session.
+    * Implies fork mode.
+    * 
+    * @parameter default-value="false"
+    */
+   protected Boolean daemon;
+
+   /**
+    * The number of seconds after which an unused tool daemon shuts down.
+    * 
+    * @parameter default-value="300"
+    */
+   protected int daemonIdleTimeout;
+
+   /**
+    * Java Flight Recorder options (e.g. <code>settings=profile</code>, or <code>true</code> for
+    * the default ones) for recording the forked tool JVMs; unless a file name is specified,
+    * each recording is dumped into the build directory when the forked JVM exits.
+    * 
+    * @parameter property="jaxws.tools.forkFlightRecording"
+    */
+   protected String forkFlightRecording;
+
+   /**
+    * Whether or not to speed up the startup of the forked tool JVMs through a dynamic AppCDS
+    * archive (JDK 13 or later), created by the first fork and shared by the following ones.
+    * 
+    * @parameter default-value="false" property="jaxws.tools.forkClassDataSharing"
+    */
+   protected Boolean forkClassDataSharing;
+
+   /**
+    * The JVM option profile of the forked tool JVMs: <code>default</code> (the JVM defaults),
+    * <code>fast-start</code> (C1-only compilation, serial GC) or <code>throughput</code>
+    * (parallel GC). Options already set in the argLine are not overridden.
+    * 
+    * @parameter default-value="default" property="jaxws.tools.forkProfile"
+    */
+   protected String forkProfile;
+
+   /**
+    * The maximum execution time in seconds of a forked tool JVM (the whole batch in batch mode),
+    * after which the JVM and its child processes are killed; 0 for no limit. Daemons are not affected.
+    * 
+    * @parameter default-value="0" property="jaxws.tools.forkTimeout"
+    */
+   protected int forkTimeout;
+
+   /**
+    * The start time of the current Maven session, used for telling sessions apart.
+    * 
+    * @parameter default-value="${session.startTime}"
+    * @readonly
+    */
+   protected Date sessionStartTime;
+
+   /**
+    * Whether or not to share the tool outputs through a local cache, keyed by the tool
+    * inputs (contents and settings) and the tool stack version. When the cache already
+    * holds the outputs for the current inputs, they're restored without running the tool.
+    * 
+    * @parameter default-value="false" property="jaxws.tools.cache"
+    */
+   protected Boolean cache;
+
+   /**
+    * The directory of the local cache of tool outputs.
+    * 
+    * @parameter default-value="${user.home}/.m2/jaxws-tools-cache" property="jaxws.tools.cacheDirectory"
+    */
+   protected File cacheDirectory;
+
+   /**
+    * The maximum size (in MB) of the local cache of tool outputs; the least recently
+    * used entries are evicted when the cache grows beyond it.
+    * 
+    * @parameter default-value="512" property="jaxws.tools.cacheMaxSize"
+    */
+   protected int cacheMaxSize;
+
+   /**
+    * The base http(s) URL (supporting GET and PUT) or the shared directory of an optional
+    * remote cache of tool outputs, looked up on local cache misses; implies the local cache.
+    * 
+    * @parameter property="jaxws.tools.remoteCache"
+    */
+   protected String remoteCache;
+
+   /**
+    * Whether or not to only fetch outputs from the remote cache, without publishing new ones.
+    * 
+    * @parameter default-value="false" property="jaxws.tools.remoteCacheReadOnly"
+    */
+   protected Boolean remoteCacheReadOnly;
+
    /**
     * Either ${build.outputDirectory} or ${build.testOutputDirectory}.
     */
@@ -95,23 +226,13 @@ abstract class AbstractToolsMojo extends AbstractMojo
     */
    protected abstract void updateProjectSourceRoots();
    
+   /**
+    * Get the (session-scoped, shared) classloader for the Maven classpath; it must be
+    * released through {@link ClassLoaderCache#release(URLClassLoader)} once done with it.
+    */
    protected URLClassLoader getMavenClasspathAwareClassLoader()
    {
-      List<String> classpath = getClasspathElements();
-      final int size = classpath.size();
-      URL[] urls = new URL[size];
-      for (int i=0; i < size; i++)
-      {
-         try
-         {
-            urls[i] = new File(classpath.get(i)).toURI().toURL();
-         }
-         catch (MalformedURLException mue)
-         {
-            getLog().warn("Skipping invalid classpath element: " + classpath.get(i));
-         }
-      }
-      return new URLClassLoader(urls, null);
+      return ClassLoaderCache.acquire(sessionStartTime, getClasspathElements(), getLog());
    }
    
    /**
@@ -150,6 +271,114 @@ abstract class AbstractToolsMojo extends AbstractMojo
       return result;
    }
 
+   /**
+    * Return the location of the plugin classes, which are required in fork mode
+    * when the tools are driven by the plugin's own runner (batch mode).
+    * 
+    * @return the plugin jar (or classes directory) url
+    */
+   protected URL getPluginCodeSource()
+   {
+      return WSContractBatchRunner.class.getProtectionDomain().getCodeSource().getLocation();
+   }
+
+   /**
+    * Log the one line summary of the given execution metrics and write them to
+    * <code>jaxws-tools-metrics.json</code> in the build directory, along with the ones of
+    * the other executions of the current session
+    *
+    * @param metrics     the metrics of the current execution
+    * @param recordName  the name identifying the execution among the ones of the project
+    */
+   protected void reportMetrics(ExecutionMetrics metrics, String recordName)
+   {
+      metrics.stop();
+      getLog().info(metrics.getSummary());
+      try
+      {
+         String session = String.valueOf(sessionStartTime != null ? sessionStartTime.getTime() : 0);
+         metrics.write(new File(getWorkDirectory(), "metrics"), session, recordName,
+               new File(getOutputDirectory().getParentFile(), "jaxws-tools-metrics.json"));
+      }
+      catch (IOException ioe)
+      {
+         getLog().warn("Could not write the metrics report: " + ioe.getMessage());
+      }
+   }
+
+   /**
+    * @return the cache of tool outputs or null if caching is disabled
+    */
+   protected OutputCache createOutputCache()
+   {
+      if (!cache && remoteCache == null)
+      {
+         return null;
+      }
+      RemoteOutputCache remote = remoteCache != null ? new RemoteOutputCache(remoteCache, remoteCacheReadOnly, getLog()) : null;
+      return new OutputCache(cacheDirectory, cacheMaxSize * 1024L * 1024L, remote);
+   }
+
+   /**
+    * @return the normalizer of the generated outputs or null if the reproducible mode is disabled
+    */
+   protected ReproducibleOutput createReproducibleOutput() throws MojoExecutionException
+   {
+      if (!reproducible)
+      {
+         return null;
+      }
+      try
+      {
+         return new ReproducibleOutput(ReproducibleOutput.parseOutputTimestamp(outputTimestamp));
+      }
+      catch (IllegalArgumentException iae)
+      {
+         throw new MojoExecutionException(iae.getMessage(), iae);
+      }
+   }
+
+   /**
+    * Add the reproducible mode settings, which affect the outputs, to the given fingerprint;
+    * nothing is added when the mode is disabled, so that existing fingerprints stay valid.
+    */
+   protected void addReproducibleSettings(Fingerprint fingerprint)
+   {
+      if (reproducible)
+      {
+         fingerprint.add("outputTimestamp", ReproducibleOutput.parseOutputTimestamp(outputTimestamp));
+      }
+   }
+
+   /**
+    * @return the sorted names of the classpath jars and of the plugin, which identify the tool stack version
+    */
+   protected String getStackVersion()
+   {
+      List<String> names = new ArrayList<String>();
+      for (String element : getClasspathElements())
+      {
+         if (element.endsWith(".jar"))
+         {
+            names.add(new File(element).getName());
+         }
+      }
+      Collections.sort(names);
+      names.add(new File(getPluginCodeSource().getPath()).getName());
+      return names.toString();
+   }
+
+   /**
+    * Create a new directory for a tool to generate its outputs into, before they're
+    * cached and copied to their actual location.
+    */
+   protected File createStagingDirectory(String prefix) throws IOException
+   {
+      File stagingRoot = new File(getWorkDirectory(), "staging");
+      stagingRoot.mkdirs();
+      return Files.createTempDirectory(stagingRoot.toPath(), prefix).toFile();
+   }
+
    public Boolean getExtension()
    {
       return extension;
@@ -159,6 +388,21 @@ abstract class AbstractToolsMojo extends AbstractMojo
    {
       return verbose;
    }
+
+   public Boolean isQuiet()
+   {
+      return quiet;
+   }
+
+   public Boolean isReproducible()
+   {
+      return reproducible;
+   }
+
+   public String getOutputTimestamp()
+   {
+      return outputTimestamp;
+   }
    
    public String getArgLine()
    {
@@ -170,9 +414,90 @@ abstract class AbstractToolsMojo extends AbstractMojo
       return fork;
    }
 
+   public Boolean isDaemon()
+   {
+      return daemon;
+   }
+
+   public int getDaemonIdleTimeout()
+   {
+      return daemonIdleTimeout;
+   }
+
+   public String getForkFlightRecording()
+   {
+      return forkFlightRecording;
+   }
+
+   public Boolean isForkClassDataSharing()
+   {
+      return forkClassDataSharing;
+   }
+
+   public String getForkProfile()
+   {
+      return forkProfile;
+   }
+
+   public int getForkTimeout()
+   {
+      return forkTimeout;
+   }
+
+   /**
+    * @return the configured fork profile
+    * @throws MojoExecutionException if the profile is unknown
+    */
+   protected ForkProfile resolveForkProfile() throws MojoExecutionException
+   {
+      try
+      {
+         return ForkProfile.fromName(forkProfile);
+      }
+      catch (IllegalArgumentException iae)
+      {
+         throw new MojoExecutionException(iae.getMessage());
+      }
+   }
+
+   public Boolean isCache()
+   {
+      return cache;
+   }
+
+   public File getCacheDirectory()
+   {
+      return cacheDirectory;
+   }
+
+   public int getCacheMaxSize()
+   {
+      return cacheMaxSize;
+   }
+
+   public String getRemoteCache()
+   {
+      return remoteCache;
+   }
+
+   public Boolean isRemoteCacheReadOnly()
+   {
+      return remoteCacheReadOnly;
+   }
+
+   /**
+    * The directory where the plugin keeps its own working files (within the build directory)
+    */
+   protected File getWorkDirectory()
+   {
+      return new File(getOutputDirectory().getParentFile(), "jaxws-tools");
+   }
+
    /**
     * Create a jar with just a manifest containing a Main-Class entry and a Class-Path entry
-    * for all classpath elements.
+    * for all classpath elements. The jar is named after the hash of its manifest, so that
+    * it's reused as long as the classpath does not change; jars which have not been used
+    * for a while are deleted.
     *
     * @param classPath      List&lt;String> of all classpath elements.
     * @param startClassName  The classname to start (main-class)
@@ -181,16 +506,6 @@ abstract class AbstractToolsMojo extends AbstractMojo
     */
    public File createJar(List<String> classPath, String startClassName) throws IOException
    {
-      File tempDirectory = new File(getOutputDirectory().getParentFile(), "jaxws-tools");
-      tempDirectory.mkdirs();
-      File file = File.createTempFile("jaxws-tools-maven-plugin-classpath-", ".jar", tempDirectory);
-
-      FileOutputStream fos = new FileOutputStream(file);
-      JarOutputStream jos = new JarOutputStream(fos);
-      jos.setLevel(JarOutputStream.STORED);
-      JarEntry je = new JarEntry("META-INF/MANIFEST.MF");
-      jos.putNextEntry(je);
-
       Manifest man = new Manifest();
 
       StringBuilder cp = new StringBuilder();
@@ -204,14 +519,132 @@ abstract class AbstractToolsMojo extends AbstractMojo
           cp.append(f.toURI().toURL().toExternalForm());
           cp.append(" ");
       }
+      cp.append(getPluginCodeSource().toExternalForm());
 
       man.getMainAttributes().putValue("Manifest-Version", "1.0");
       man.getMainAttributes().putValue("Class-Path", cp.toString().trim());
       man.getMainAttributes().putValue("Main-Class", startClassName);
 
-      man.write(jos);
-      jos.close();
+      File tempDirectory = getWorkDirectory();
+      tempDirectory.mkdirs();
+      String hash = new Fingerprint().add("Class-Path", cp.toString().trim()).add("Main-Class", startClassName).getValue();
+      File file = new File(tempDirectory, CLASSPATH_JAR_PREFIX + hash + ".jar");
+      Object event = FlightRecorderEvents.beginManifestJarBuild();
+      final boolean reused = file.isFile();
+      if (reused)
+      {
+         file.setLastModified(System.currentTimeMillis());
+      }
+      else
+      {
+         //write a temporary file first, as concurrent executions might be creating the same jar
+         File tmp = File.createTempFile(CLASSPATH_JAR_PREFIX, ".tmp", tempDirectory);
+         FileOutputStream fos = new FileOutputStream(tmp);
+         JarOutputStream jos = new JarOutputStream(fos);
+         try
+         {
+            jos.setLevel(JarOutputStream.STORED);
+            JarEntry je = new JarEntry("META-INF/MANIFEST.MF");
+            jos.putNextEntry(je);
+            man.write(jos);
+         }
+         finally
+         {
+            jos.close();
+         }
+         if (!tmp.renameTo(file))
+         {
+            tmp.delete();
+            if (!file.isFile())
+            {
+               throw new IOException("Could not create " + file);
+            }
+         }
+      }
+      deleteStaleJars(tempDirectory, file);
+      FlightRecorderEvents.commitManifestJarBuild(event, file, reused);
 
       return file;
    }
+
+   /**
+    * Get the dynamic AppCDS archive of the forked JVMs started through the given manifest-only
+    * jar. The archive is keyed by the jar, the size and last modification time of the jars it
+    * references and the JDK, so that archives are never used with a different classpath or JDK;
+    * the ones not used anymore are removed along with the stale classpath jars.
+    * 
+    * @param manifestOnlyJar  the manifest-only jar of the forked JVMs
+    * @param forkArgLine      the argLine of the forked JVMs
+    * @return the archive (created by the first fork when missing), null if class data sharing is not enabled
+    */
+   protected File getClassDataArchive(File manifestOnlyJar, String forkArgLine) throws IOException
+   {
+      if (!forkClassDataSharing)
+      {
+         return null;
+      }
+      if (Util.getJVMMajorVersion() < 13)
+      {
+         getLog().warn("Class data sharing for the forked JVMs requires JDK 13 or later, ignoring it");
+         return null;
+      }
+      if (forkArgLine != null && (forkArgLine.contains("-Xshare") || forkArgLine.contains("SharedArchiveFile") || forkArgLine.contains("ArchiveClassesAtExit")))
+      {
+         getLog().info("Class data sharing configured in argLine, not managing an archive for the forked JVMs");
+         return null;
+      }
+      Fingerprint fingerprint = new Fingerprint();
+      fingerprint.add("jar", manifestOnlyJar.getName());
+      fingerprint.add("java.home", System.getProperty("java.home"));
+      fingerprint.add("java.vm.version", System.getProperty("java.vm.version"));
+      JarFile jar = new JarFile(manifestOnlyJar);
+      try
+      {
+         for (String element : jar.getManifest().getMainAttributes().getValue("Class-Path").split(" "))
+         {
+            File f = Util.toFile(new URL(element));
+            if (f.isFile())
+            {
+               fingerprint.add(element, f.length() + "@" + f.lastModified());
+            }
+         }
+      }
+      finally
+      {
+         jar.close();
+      }
+      File archive = new File(manifestOnlyJar.getParentFile(), CLASSPATH_JAR_PREFIX + "cds-" + fingerprint.getValue() + ".jsa");
+      if (archive.isFile())
+      {
+         archive.setLastModified(System.currentTimeMillis());
+      }
+      else
+      {
+         getLog().info("Creating the class data sharing archive of the forked JVMs: " + archive.getName());
+      }
+      return archive;
+   }
+
+   /**
+    * Delete the classpath jars (and leftover temporary files) which have not been used for a while
+    */
+   private void deleteStaleJars(File directory, File current)
+   {
+      File[] files = directory.listFiles();
+      if (files == null)
+      {
+         return;
+      }
+      long limit = System.currentTimeMillis() - STALE_JAR_AGE;
+      for (File f : files)
+      {
+         if (f.getName().startsWith(CLASSPATH_JAR_PREFIX) && !f.equals(current) && f.lastModified() < limit)
+         {
+            if (f.delete())
+            {
+               getLog().debug("Deleted stale classpath jar " + f);
+            }
+         }
+      }
+   }
 }
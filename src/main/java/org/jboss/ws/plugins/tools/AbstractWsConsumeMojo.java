@@ -22,13 +22,31 @@
 package org.jboss.ws.plugins.tools;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+import org.jboss.ws.plugins.tools.WSContractConsumerJob.Status;
 
 /**
  * Generic mojo for wsconsume tool
@@ -39,6 +57,9 @@ import org.apache.maven.plugin.logging.Log;
  */
 public abstract class AbstractWsConsumeMojo extends AbstractToolsMojo
 {
+   private static final String FILES_SUFFIX = "|files";
+   private static final int MIRROR_THREADS = 8;
+
    /**
     * The list of wsdl urls / files to consume
     * 
@@ -46,6 +67,39 @@ public abstract class AbstractWsConsumeMojo extends AbstractToolsMojo
     */
    private List<String> wsdls;
 
+   /**
+    * A directory to scan for wsdl files to consume, in addition to the listed wsdls.
+    * Only the wsdls whose inputs changed since the last successful run are consumed,
+    * and the sources generated from wsdls removed from the directory are deleted.
+    * 
+    * @parameter
+    */
+   private File wsdlDirectory;
+
+   /**
+    * The patterns (relative to wsdlDirectory) of the wsdl files to consume, e.g. <code>**&#47;*.wsdl</code>
+    * (the default).
+    * 
+    * @parameter
+    */
+   private List<String> includes;
+
+   /**
+    * The patterns (relative to wsdlDirectory) of the wsdl files not to consume.
+    * 
+    * @parameter
+    */
+   private List<String> excludes;
+
+   /**
+    * The per-wsdl settings (targetPackage, bindingFiles, wsdlLocation, catalog) overriding the
+    * execution ones; the wsdl of each option is consumed too, if not already listed or found
+    * in wsdlDirectory.
+    * 
+    * @parameter
+    */
+   private List<WsdlOption> wsdlOptions;
+
    /**
     * Specifies the JAX-WS and JAXB binding files to use on import operations.
     * 
@@ -107,15 +161,253 @@ public abstract class AbstractWsConsumeMojo extends AbstractToolsMojo
     */
    private String target;
 
+   /**
+    * Whether or not to consume all the wsdls within a single forked JVM (fork mode only),
+    * instead of starting a new JVM for each of them.
+    * 
+    * @parameter default-value="false"
+    */
+   protected Boolean batch;
+
+   /**
+    * The maximum number of wsdls to consume concurrently, either as an absolute number
+    * or as a multiple of the available cores when followed by 'C' (e.g. '1.5C').
+    * Running more than one thread implies fork mode. Ignored (with a warning) in daemon
+    * mode, as the tool daemon consumes the wsdls one at a time.
+    * 
+    * @parameter default-value="1"
+    */
+   protected String threads;
+
+   /**
+    * Whether or not to size the forked JVMs after the wsdls to consume: the heap is estimated
+    * from a scan of the local wsdl and schema documents, capped to the memory available to each
+    * concurrent fork (container limit or physical memory), and a matching GC is selected.
+    * Heap and GC settings provided in argLine are kept.
+    * 
+    * @parameter default-value="false" property="jaxws.tools.adaptiveForkMemory"
+    */
+   protected Boolean adaptiveForkMemory;
+
+   /**
+    * Whether or not to consume all the wsdls, including those whose inputs (wsdl and
+    * imported documents, binding files, catalog and settings) did not change since
+    * the last successful run.
+    * 
+    * @parameter default-value="false" property="jaxws.tools.force"
+    */
+   protected Boolean force;
+
+   /**
+    * Whether or not to consume the remote (http / https) wsdls from a local mirror: each wsdl and the
+    * documents it imports are downloaded concurrently into wsdlMirrorDirectory, revalidated with
+    * conditional requests by the following builds (or served from the mirror in offline mode), and
+    * the tool consumes the local copy through a generated XML catalog, keeping the original url as
+    * wsdl location. Mirrored wsdls get the same up-to-date checks as the local ones.
+    * 
+    * @parameter default-value="false" property="jaxws.tools.wsdlMirror"
+    */
+   protected Boolean wsdlMirror;
+
+   /**
+    * The directory of the local mirror of remote wsdls.
+    * 
+    * @parameter default-value="${user.home}/.m2/jaxws-tools-wsdl-mirror"
+    */
+   protected File wsdlMirrorDirectory;
+
+   /**
+    * Whether or not Maven runs in offline mode.
+    * 
+    * @parameter default-value="${settings.offline}"
+    * @readonly
+    */
+   protected Boolean offline;
+
+   /**
+    * The metrics of the current execution
+    */
+   private ExecutionMetrics metrics;
+   private ReproducibleOutput reproducibleOutput;
+   private int writtenSources;
+   private int unchangedSources;
+   private int deletedSources;
+
+   /**
+    * The effective settings of each wsdl to consume
+    */
+   private final Map<String, WsdlOption> wsdlSettings = new HashMap<String, WsdlOption>();
+
+   /**
+    * The mirrored closures of the remote wsdls to consume
+    */
+   private final Map<String, WsdlMirror.Closure> mirroredWsdls = new HashMap<String, WsdlMirror.Closure>();
+
    public void execute() throws MojoExecutionException
    {
-      Log log = getLog();
-      if (wsdls == null)
+      if (wsdls == null && wsdlDirectory == null && wsdlOptions == null)
       {
          getLog().info("No wsdl URL / file specified, nothing to do.");
          return;
       }
-      
+      metrics = new ExecutionMetrics(getClass().getSimpleName());
+      long start = System.nanoTime();
+      List<String> wsdlsToConsume = getWsdlsToConsume();
+      metrics.addPhase("scan", start);
+      resolveWsdlSettings(wsdlsToConsume);
+      start = System.nanoTime();
+      mirrorRemoteWsdls(wsdlsToConsume);
+      metrics.addPhase("mirror", start);
+      try
+      {
+         consume(wsdlsToConsume);
+      }
+      finally
+      {
+         reportMetrics(metrics, getClass().getSimpleName() + "-" + new Fingerprint().add("wsdls", wsdlsToConsume).getValue().substring(0, 8));
+      }
+   }
+
+   /**
+    * @return the listed wsdls followed by the ones found in wsdlDirectory (if any) and the ones
+    * of the wsdl options, without duplicates
+    */
+   private List<String> getWsdlsToConsume()
+   {
+      Set<String> result = new LinkedHashSet<String>();
+      if (wsdls != null)
+      {
+         result.addAll(wsdls);
+      }
+      if (wsdlDirectory != null)
+      {
+         List<File> files = new WsdlScanner(wsdlDirectory, includes, excludes).scan(Runtime.getRuntime().availableProcessors());
+         getLog().info("Found " + files.size() + " wsdl files in " + wsdlDirectory);
+         for (File file : files)
+         {
+            result.add(file.getAbsolutePath());
+         }
+      }
+      if (wsdlOptions != null)
+      {
+         for (WsdlOption option : wsdlOptions)
+         {
+            String wsdl = option.getWsdl();
+            if (wsdl != null && !result.contains(wsdl) && !result.contains(new File(wsdl).getAbsolutePath()))
+            {
+               result.add(wsdl);
+            }
+         }
+      }
+      return new ArrayList<String>(result);
+   }
+
+   /**
+    * Match the wsdl options with the wsdls to consume (wsdl files found in wsdlDirectory can also be
+    * referenced by a relative path) and complete them with the execution settings
+    */
+   private void resolveWsdlSettings(List<String> wsdlsToConsume) throws MojoExecutionException
+   {
+      Map<String, WsdlOption> options = new HashMap<String, WsdlOption>();
+      if (wsdlOptions != null)
+      {
+         for (WsdlOption option : wsdlOptions)
+         {
+            if (option.getWsdl() == null)
+            {
+               throw new MojoExecutionException("Missing wsdl in wsdlOption");
+            }
+            options.put(option.getWsdl(), option);
+            File file = new File(option.getWsdl());
+            if (file.isFile())
+            {
+               options.put(file.getAbsolutePath(), option);
+            }
+         }
+      }
+      wsdlSettings.clear();
+      for (String wsdl : wsdlsToConsume)
+      {
+         WsdlOption option = options.get(wsdl);
+         wsdlSettings.put(wsdl, (option != null ? option : new WsdlOption()).withDefaults(wsdl, targetPackage, bindingFiles,
+               wsdlLocation, catalog));
+      }
+   }
+
+   /**
+    * Fetch the closures of the remote wsdls into the local mirror; wsdls that can't be
+    * mirrored are consumed from their url, as when the mirror is disabled.
+    */
+   private void mirrorRemoteWsdls(List<String> wsdlsToConsume)
+   {
+      mirroredWsdls.clear();
+      if (!wsdlMirror)
+      {
+         return;
+      }
+      WsdlMirror mirror = new WsdlMirror(wsdlMirrorDirectory, offline != null && offline, MIRROR_THREADS, getLog());
+      for (String wsdl : wsdlsToConsume)
+      {
+         if (WsdlMirror.isRemote(wsdl))
+         {
+            try
+            {
+               mirroredWsdls.put(wsdl, mirror.mirror(wsdl));
+            }
+            catch (IOException ioe)
+            {
+               getLog().warn("Could not mirror " + wsdl + ", consuming it from its url: " + ioe.getMessage());
+            }
+         }
+      }
+      if (!mirroredWsdls.isEmpty())
+      {
+         getLog().info("Mirrored " + mirroredWsdls.size() + " remote wsdls (" + mirror + ")");
+      }
+   }
+
+   /**
+    * Have the tool consume the mirrored copy of the job wsdl, through a catalog resolving the
+    * remote references to the mirror; the generated sources keep referencing the original url.
+    */
+   private void useMirror(WSContractConsumerJob job, WsdlMirror.Closure mirrored) throws IOException
+   {
+      WSContractConsumerParams params = job.getParams();
+      File catalogFile = new File(getWorkDirectory(), "wsdl-catalog-"
+            + new Fingerprint().add("wsdl", job.getWsdl()).getValue().substring(0, 16) + ".xml");
+      mirrored.writeCatalog(catalogFile, params.getCatalog());
+      params.setCatalog(catalogFile);
+      if (params.getWsdlLocation() == null)
+      {
+         params.setWsdlLocation(job.getWsdl());
+      }
+      job.setLocation(mirrored.getWsdl().getAbsolutePath());
+   }
+
+   private int getThreadCount() throws MojoExecutionException
+   {
+      try
+      {
+         return Util.getThreadCount(threads);
+      }
+      catch (IllegalArgumentException iae)
+      {
+         throw new MojoExecutionException("Invalid value of the 'threads' parameter: " + iae.getMessage());
+      }
+   }
+
+   /**
+    * @return the effective settings of the given wsdl
+    */
+   private WsdlOption getWsdlSettings(String wsdl)
+   {
+      WsdlOption settings = wsdlSettings.get(wsdl);
+      return settings != null ? settings : new WsdlOption().withDefaults(wsdl, targetPackage, bindingFiles, wsdlLocation, catalog);
+   }
+
+   private void consume(List<String> wsdlsToConsume) throws MojoExecutionException
+   {
+      Log log = getLog();
       if (verbose)
       {
          log.info("Classpath:");
@@ -125,10 +417,65 @@ public abstract class AbstractWsConsumeMojo extends AbstractToolsMojo
          }
       }
       
+      int threadCount = getThreadCount();
+      if (daemon && threadCount > 1)
+      {
+         //the daemon serves one job at a time
+         log.warn("The 'threads' parameter (" + threads + ") is ignored in daemon mode, the wsdls are consumed one at a time");
+         threadCount = 1;
+      }
+      reproducibleOutput = createReproducibleOutput();
+      BuildState state = BuildState.load(new File(getWorkDirectory(), "wsconsume-state.properties"));
+      OutputCache outputCache = createOutputCache();
+      Map<String, String> fingerprints = new HashMap<String, String>();
+      Map<String, String> cacheKeys = new HashMap<String, String>();
+      List<String> staleWsdls = new LinkedList<String>();
+      final long inputsStart = System.nanoTime();
+      Map<String, String> inputKeys = getInputKeys(wsdlsToConsume);
+      metrics.addPhase("inputs", inputsStart);
+      deleteRemovedWsdlSources(wsdlsToConsume, state);
+      for (String wsdl : wsdlsToConsume)
+      {
+         String inputKey = inputKeys.get(wsdl);
+         String fingerprint = getFingerprint(wsdl, inputKey);
+         if (!force && fingerprint != null && fingerprint.equals(state.get(getStateKey(wsdl))) && hasGeneratedSources(wsdl, state))
+         {
+            log.info("Skipping up-to-date wsdl: " + wsdl);
+            metrics.getItem(wsdl).setOutcome(ExecutionMetrics.OUTCOME_UP_TO_DATE);
+            continue;
+         }
+         if (outputCache != null && inputKey != null)
+         {
+            long start = System.nanoTime();
+            boolean restored = !force && restore(outputCache, inputKey, wsdl, state);
+            metrics.addPhase("cacheRestore", start);
+            if (restored)
+            {
+               log.info("Restored sources generated from " + wsdl + " from cache");
+               metrics.getItem(wsdl).setOutcome(ExecutionMetrics.OUTCOME_CACHED);
+               updateState(state, wsdl, fingerprint);
+               continue;
+            }
+            cacheKeys.put(wsdl, inputKey);
+         }
+         fingerprints.put(wsdl, fingerprint);
+         staleWsdls.add(wsdl);
+      }
+      if (staleWsdls.isEmpty())
+      {
+         logPublishedSources();
+         updateProjectSourceRoots();
+         storeState(state);
+         return;
+      }
+      
       ClassLoader origLoader = Thread.currentThread().getContextClassLoader();
+      List<WSContractConsumerJob> jobs = new ArrayList<WSContractConsumerJob>(staleWsdls.size());
+      long start = System.nanoTime();
+      URLClassLoader loader = getMavenClasspathAwareClassLoader();
+      metrics.addPhase("classloader", start);
       try
       {
-         URLClassLoader loader = getMavenClasspathAwareClassLoader();
          Thread.currentThread().setContextClassLoader(loader);
          
          WSContractConsumerParams params = new WSContractConsumerParams();
@@ -147,37 +494,72 @@ public abstract class AbstractWsConsumeMojo extends AbstractToolsMojo
          params.setWsdlLocation(wsdlLocation);
          params.setEncoding(encoding);
          params.setArgLine(argLine);
-         if (fork || Util.getJVMMajorVersion() > 8) {
-        	 params.setFork(true);
-             File manifestOnlyJar = createJar(getClasspathElements(), "");
-             params.setManifestOnlyJar(manifestOnlyJar);
-             if (verbose)
-             {
-                log.info("Additional plugin classpath:");
-                for (File f : getRequiredPluginDependencyPaths())
-                {
-                   log.info(" " + f.getAbsolutePath());
-                }
-             }
-         }
-
-         WSContractDelegate delegate = new WSContractDelegate(getLog());
-         
-         for (String wsdl : wsdls)
+         String forkArgLine = null;
+         if (fork || daemon || threadCount > 1)
          {
-            try
+            forkArgLine = getForkArgLine(staleWsdls, threadCount);
+            setupFork(params, forkArgLine);
+            if (verbose)
             {
-               delegate.runConsumer(params, wsdl);
+               log.info("Additional plugin classpath:");
+               for (File f : getRequiredPluginDependencyPaths())
+               {
+                  log.info(" " + f.getAbsolutePath());
+               }
             }
-            catch (MalformedURLException mue)
+         }
+
+         for (String wsdl : staleWsdls)
+         {
+            //generate into a dedicated directory, for caching exactly the sources of this wsdl
+            //and publishing only the ones that actually changed
+            WSContractConsumerParams jobParams = params.copy();
+            getWsdlSettings(wsdl).applyTo(jobParams);
+            jobParams.setSourceDirectory(createStagingDirectory("wsconsume-"));
+            WSContractConsumerJob job = new WSContractConsumerJob(jobParams, wsdl);
+            if (mirroredWsdls.containsKey(wsdl))
+            {
+               useMirror(job, mirroredWsdls.get(wsdl));
+            }
+            jobs.add(job);
+         }
+
+         WSContractDelegate delegate = new WSContractDelegate(getLog(), metrics);
+         delegate.setQuiet(quiet && !verbose);
+         
+         start = System.nanoTime();
+         try
+         {
+            consume(delegate, params, threadCount, jobs, state, fingerprints, outputCache, cacheKeys);
+         }
+         catch (LinkageError le)
+         {
+            if (params.isFork())
             {
-               log.error("Skipping invalid wsdl reference: " + wsdl);
+               throw le;
             }
-            catch (Exception e)
+            //the stack does not work in-process with the current JDK
+            Throwable reason = le.getCause() != null ? Util.getLoaderFailure(le.getCause()) : null;
+            log.info("Could not load the tool stack in-process (" + (reason != null ? reason : le)
+                  + "), falling back to fork mode");
+            forkArgLine = getForkArgLine(staleWsdls, threadCount);
+            setupFork(params, forkArgLine);
+            List<WSContractConsumerJob> pending = new LinkedList<WSContractConsumerJob>();
+            for (WSContractConsumerJob job : jobs)
             {
-               throw new MojoExecutionException("Error while running wsconsume", e);
+               if (job.getStatus() == Status.PENDING)
+               {
+                  setupFork(job.getParams(), forkArgLine);
+                  pending.add(job);
+               }
             }
+            consume(delegate, params, threadCount, pending, state, fingerprints, outputCache, cacheKeys);
          }
+         finally
+         {
+            metrics.addPhase("tools", start);
+         }
+         logPublishedSources();
          updateProjectSourceRoots();
       }
       catch (java.io.IOException ioe)
@@ -187,14 +569,558 @@ public abstract class AbstractWsConsumeMojo extends AbstractToolsMojo
       finally
       {
          Thread.currentThread().setContextClassLoader(origLoader);
+         ClassLoaderCache.release(loader);
+         for (WSContractConsumerJob job : jobs)
+         {
+            deleteStagingDirectory(job);
+         }
+         storeState(state);
+      }
+   }
+
+   /**
+    * @return the argLine of the forked JVMs, tuned to the given wsdls in adaptive mode
+    */
+   private String getForkArgLine(List<String> wsdls, int threadCount)
+   {
+      if (!adaptiveForkMemory)
+      {
+         return argLine;
+      }
+      return AdaptiveForkSettings.tune(argLine, wsdls, Math.min(threadCount, wsdls.size()), getLog());
+   }
+
+   private void setupFork(WSContractConsumerParams params, String forkArgLine) throws IOException, MojoExecutionException
+   {
+      params.setFork(true);
+      params.setArgLine(forkArgLine);
+      params.setForkProfile(resolveForkProfile());
+      params.setForkTimeout(forkTimeout);
+      if (daemon)
+      {
+         WSContractDaemonClient.checkSession(sessionStartTime, getLog());
+         params.setDaemon(true);
+         params.setDaemonIdleTimeout(daemonIdleTimeout);
+      }
+      params.setFlightRecording(forkFlightRecording);
+      params.setFlightRecordingDirectory(getOutputDirectory().getParentFile());
+      final long start = System.nanoTime();
+      params.setManifestOnlyJar(createJar(getClasspathElements(), ""));
+      params.setClassDataArchive(getClassDataArchive(params.getManifestOnlyJar(), forkArgLine));
+      metrics.addPhase("manifestJar", start);
+   }
+
+   private void consume(WSContractDelegate delegate, WSContractConsumerParams params, int threadCount,
+         List<WSContractConsumerJob> jobs, BuildState state, Map<String, String> fingerprints,
+         OutputCache outputCache, Map<String, String> cacheKeys) throws MojoExecutionException, IOException
+   {
+      if ((batch && params.isFork()) || (threadCount > 1 && jobs.size() > 1))
+      {
+         runJobs(delegate, params, threadCount, jobs, state, fingerprints, outputCache, cacheKeys);
+         return;
+      }
+      for (WSContractConsumerJob job : jobs)
+      {
+         String wsdl = job.getWsdl();
+         try
+         {
+            delegate.runConsumer(job.getParams(), job.getLocation(), wsdl);
+         }
+         catch (MalformedURLException mue)
+         {
+            getLog().error("Skipping invalid wsdl reference: " + wsdl);
+            metrics.getItem(wsdl).setOutcome(ExecutionMetrics.OUTCOME_INVALID);
+            job.setStatus(Status.INVALID_WSDL);
+            continue;
+         }
+         catch (Exception e)
+         {
+            if (!job.getParams().isFork() && Util.isLoaderFailure(e))
+            {
+               //leave the job pending, to be retried in fork mode
+               throw new LinkageError("Could not run wsconsume in-process", e);
+            }
+            metrics.getItem(wsdl).setOutcome(ExecutionMetrics.OUTCOME_FAILED);
+            state.remove(getStateKey(wsdl));
+            throw new MojoExecutionException("Error while running wsconsume on " + wsdl + ": " + e.getMessage(), e);
+         }
+         catch (ServiceConfigurationError sce)
+         {
+            throw new LinkageError("Could not run wsconsume in-process", sce);
+         }
+         completeJob(job, state, fingerprints.get(wsdl), outputCache, cacheKeys.get(wsdl));
+         job.setStatus(Status.SUCCESS);
+      }
+   }
+
+   private void runJobs(WSContractDelegate delegate, WSContractConsumerParams params, int threadCount,
+         List<WSContractConsumerJob> jobs, BuildState state, Map<String, String> fingerprints,
+         OutputCache outputCache, Map<String, String> cacheKeys) throws MojoExecutionException, IOException
+   {
+      try
+      {
+         if (threadCount > 1)
+         {
+            delegate.runConsumerJobs(params, jobs, threadCount, batch);
+         }
+         else
+         {
+            delegate.runConsumerBatch(params, jobs);
+         }
+      }
+      catch (Exception e)
+      {
+         if (params.isFork() || !Util.isLoaderFailure(e))
+         {
+            throw new MojoExecutionException("Error while running wsconsume", e);
+         }
+         throw resetJobs(jobs, new LinkageError("Could not run wsconsume in-process", e));
+      }
+      catch (LinkageError le)
+      {
+         throw resetJobs(jobs, le);
+      }
+      catch (ServiceConfigurationError sce)
+      {
+         throw resetJobs(jobs, new LinkageError("Could not run wsconsume in-process", sce));
+      }
+      List<String> failures = new LinkedList<String>();
+      for (WSContractConsumerJob job : jobs)
+      {
+         switch (job.getStatus())
+         {
+            case SUCCESS :
+               completeJob(job, state, fingerprints.get(job.getWsdl()), outputCache, cacheKeys.get(job.getWsdl()));
+               break;
+            case INVALID_WSDL :
+               getLog().error("Skipping invalid wsdl reference: " + job.getWsdl());
+               metrics.getItem(job.getWsdl()).setOutcome(ExecutionMetrics.OUTCOME_INVALID);
+               break;
+            default :
+               getLog().error("Error while consuming " + job.getWsdl() + ": " + job.getMessage());
+               metrics.getItem(job.getWsdl()).setOutcome(ExecutionMetrics.OUTCOME_FAILED);
+               state.remove(getStateKey(job.getWsdl()));
+               failures.add(job.getWsdl());
+         }
+      }
+      if (!failures.isEmpty())
+      {
+         throw new MojoExecutionException("Error while running wsconsume on " + failures);
+      }
+   }
+
+   /**
+    * Mark all the given jobs as pending again, none of them having been completed yet
+    */
+   private static LinkageError resetJobs(List<WSContractConsumerJob> jobs, LinkageError le)
+   {
+      for (WSContractConsumerJob job : jobs)
+      {
+         job.setStatus(Status.PENDING);
+      }
+      return le;
+   }
+
+   /**
+    * Publish the outcome of a successful job: sources generated into a staging directory
+    * are normalized (in reproducible mode), cached (if enabled) and synchronized with the
+    * actual source directory.
+    */
+   private void completeJob(WSContractConsumerJob job, BuildState state, String fingerprint,
+         OutputCache outputCache, String cacheKey) throws IOException
+   {
+      ExecutionMetrics.Item item = metrics.getItem(job.getWsdl());
+      item.setOutcome(ExecutionMetrics.OUTCOME_GENERATED);
+      File staging = job.getParams().getSourceDirectory();
+      final long start = System.nanoTime();
+      if (reproducibleOutput != null)
+      {
+         int count = reproducibleOutput.normalize(staging);
+         getLog().debug("Normalized " + count + " files generated from " + job.getWsdl());
+      }
+      if (staging.isDirectory())
+      {
+         item.setBytes(FileUtils.sizeOfDirectory(staging));
+      }
+      if (cacheKey != null)
+      {
+         try
+         {
+            outputCache.store(cacheKey, staging);
+         }
+         catch (IOException ioe)
+         {
+            getLog().warn("Could not cache the sources generated from " + job.getWsdl() + ": " + ioe.getMessage());
+         }
+      }
+      publish(job.getWsdl(), staging, state);
+      metrics.addPhase("publish", start);
+      updateState(state, job.getWsdl(), fingerprint);
+   }
+
+   /**
+    * Restore the cached sources of the given wsdl through a staging directory
+    *
+    * @return true if the sources have been restored
+    */
+   private boolean restore(OutputCache outputCache, String inputKey, String wsdl, BuildState state) throws MojoExecutionException
+   {
+      try
+      {
+         File staging = createStagingDirectory("wsconsume-");
+         try
+         {
+            if (!outputCache.restore(inputKey, staging))
+            {
+               return false;
+            }
+            publish(wsdl, staging, state);
+            return true;
+         }
+         finally
+         {
+            FileUtils.deleteDirectory(staging);
+         }
+      }
+      catch (IOException ioe)
+      {
+         throw new MojoExecutionException("Error while restoring the sources generated from " + wsdl, ioe);
+      }
+   }
+
+   /**
+    * Move the sources of the given wsdl that changed from the staging directory to the source
+    * directory, then delete the ones generated by the previous run of the same wsdl that are
+    * not generated anymore (unless another wsdl also generates them). The generated files are
+    * recorded in the build state.
+    */
+   private void publish(String wsdl, File staging, BuildState state) throws IOException
+   {
+      publish(wsdl, getStateKey(wsdl), staging, state);
+   }
+
+   private void publish(String wsdl, String stateKey, File staging, BuildState state) throws IOException
+   {
+      OutputSync sync = OutputSync.sync(staging, sourceDirectory);
+      final String filesKey = stateKey + FILES_SUFFIX;
+      Set<String> obsolete = new HashSet<String>(OutputSync.split(state.get(filesKey)));
+      obsolete.removeAll(sync.getFiles());
+      if (!obsolete.isEmpty())
+      {
+         final String prefix = sourceDirectory.getAbsolutePath() + "|";
+         for (String key : state.getKeys())
+         {
+            if (key.startsWith(prefix) && key.endsWith(FILES_SUFFIX) && !key.equals(filesKey))
+            {
+               obsolete.removeAll(OutputSync.split(state.get(key)));
+            }
+         }
+         sync.delete(obsolete);
+      }
+      state.put(filesKey, OutputSync.join(sync.getFiles()));
+      writtenSources += sync.getWritten();
+      unchangedSources += sync.getUnchanged();
+      deletedSources += sync.getDeleted();
+      if (verbose)
+      {
+         getLog().info("Sources generated from " + wsdl + ": " + sync);
+      }
+   }
+
+   private void logPublishedSources()
+   {
+      if (writtenSources + unchangedSources + deletedSources > 0)
+      {
+         getLog().info("Generated sources: " + writtenSources + " written, " + unchangedSources + " unchanged, "
+               + deletedSources + " deleted");
+      }
+   }
+
+   private void deleteStagingDirectory(WSContractConsumerJob job)
+   {
+      File staging = job.getParams().getSourceDirectory();
+      try
+      {
+         FileUtils.deleteDirectory(staging);
+      }
+      catch (IOException ioe)
+      {
+         getLog().debug("Could not delete " + staging + ": " + ioe.getMessage());
+      }
+   }
+
+   private void storeState(BuildState state)
+   {
+      try
+      {
+         state.store();
+      }
+      catch (IOException ioe)
+      {
+         getLog().warn("Could not store the build state: " + ioe.getMessage());
+      }
+   }
+
+   /**
+    * Compute the input keys of the given wsdls concurrently, as resolving and hashing
+    * the wsdl closures dominates the up-to-date checks of large wsdl sets.
+    *
+    * @return the input keys by wsdl, null for the wsdls whose key can't be computed
+    */
+   private Map<String, String> getInputKeys(List<String> wsdls) throws MojoExecutionException
+   {
+      Map<String, String> inputKeys = new HashMap<String, String>();
+      final int threadCount = Math.min(Runtime.getRuntime().availableProcessors(), wsdls.size());
+      if (threadCount <= 1)
+      {
+         for (String wsdl : wsdls)
+         {
+            inputKeys.put(wsdl, getInputKey(wsdl));
+         }
+         return inputKeys;
+      }
+      ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+      try
+      {
+         Map<String, Future<String>> futures = new LinkedHashMap<String, Future<String>>();
+         for (final String wsdl : wsdls)
+         {
+            futures.put(wsdl, executor.submit(new Callable<String>()
+            {
+               public String call() throws Exception
+               {
+                  return getInputKey(wsdl);
+               }
+            }));
+         }
+         for (Map.Entry<String, Future<String>> e : futures.entrySet())
+         {
+            inputKeys.put(e.getKey(), e.getValue().get());
+         }
+         return inputKeys;
+      }
+      catch (InterruptedException ie)
+      {
+         Thread.currentThread().interrupt();
+         throw new MojoExecutionException("Interrupted while checking the wsdl inputs", ie);
+      }
+      catch (ExecutionException ee)
+      {
+         throw new MojoExecutionException("Error while checking the wsdl inputs", ee.getCause());
+      }
+      finally
+      {
+         executor.shutdownNow();
+      }
+   }
+
+   /**
+    * Delete the sources generated by previous runs from the wsdls that have been removed
+    * from wsdlDirectory, unless other wsdls also generate them.
+    */
+   private void deleteRemovedWsdlSources(List<String> wsdlsToConsume, BuildState state) throws MojoExecutionException
+   {
+      if (wsdlDirectory == null)
+      {
+         return;
+      }
+      final String prefix = sourceDirectory.getAbsolutePath() + "|";
+      final String directory = wsdlDirectory.getAbsolutePath() + File.separator;
+      Set<String> current = new HashSet<String>(wsdlsToConsume);
+      for (String key : state.getKeys())
+      {
+         if (key.startsWith(prefix) && key.endsWith(FILES_SUFFIX))
+         {
+            //the key is made of the source directory, the target package and the wsdl
+            String wsdl = key.substring(key.indexOf('|', prefix.length()) + 1, key.length() - FILES_SUFFIX.length());
+            if (wsdl.startsWith(directory) && !current.contains(wsdl) && !new File(wsdl).exists())
+            {
+               getLog().info("Deleting the sources generated from removed wsdl: " + wsdl);
+               try
+               {
+                  //publishing nothing for the wsdl deletes all of its files
+                  File staging = createStagingDirectory("wsconsume-");
+                  try
+                  {
+                     publish(wsdl, key.substring(0, key.length() - FILES_SUFFIX.length()), staging, state);
+                  }
+                  finally
+                  {
+                     FileUtils.deleteDirectory(staging);
+                  }
+               }
+               catch (IOException ioe)
+               {
+                  throw new MojoExecutionException("Error while deleting the sources generated from " + wsdl, ioe);
+               }
+               state.remove(key);
+               state.remove(key.substring(0, key.length() - FILES_SUFFIX.length()));
+            }
+         }
+      }
+   }
+
+   /**
+    * Compute a location independent key of all the inputs affecting the sources generated
+    * for the given wsdl (wsdl closure contents, settings and tool stack version), which
+    * is used for sharing the generated sources across modules and builds.
+    * 
+    * @param wsdl the wsdl reference
+    * @return the key or null if it can't be computed (e.g. remote wsdl)
+    */
+   private String getInputKey(String wsdl)
+   {
+      try
+      {
+         WsdlOption settings = getWsdlSettings(wsdl);
+         String wsdlLocation = settings.getWsdlLocation();
+         List<String> bindingFiles = settings.getBindingFiles();
+         File catalog = settings.getCatalog();
+         Fingerprint fingerprint = new Fingerprint();
+         WsdlMirror.Closure mirrored = mirroredWsdls.get(wsdl);
+         if (mirrored != null)
+         {
+            //the mirrored documents are what the tool actually consumes, the url is the wsdl location
+            fingerprint.add("wsdlLocation", wsdlLocation != null ? wsdlLocation : wsdl);
+            for (Map.Entry<String, File> document : mirrored.getDocuments().entrySet())
+            {
+               fingerprint.addContent(document.getKey(), document.getValue());
+            }
+         }
+         else
+         {
+            WsdlClosure closure = WsdlClosure.resolve(wsdl);
+            if (!closure.isLocal())
+            {
+               return null;
+            }
+            URI base = closure.getDocuments().get(0).toURI();
+            //the wsdl location ends up in the generated sources
+            fingerprint.add("wsdlLocation", wsdlLocation != null ? wsdlLocation : base.toString());
+            for (URL document : closure.getDocuments())
+            {
+               fingerprint.addContent(base.resolve(".").relativize(document.toURI()).toString(), document);
+            }
+         }
+         if (bindingFiles != null)
+         {
+            for (int i = 0; i < bindingFiles.size(); i++)
+            {
+               fingerprint.addContent("bindingFile" + i, new File(bindingFiles.get(i)));
+            }
+         }
+         if (catalog != null)
+         {
+            fingerprint.addContent("catalog", catalog);
+         }
+         fingerprint.add("additionalHeaders", additionalHeaders);
+         fingerprint.add("extension", extension);
+         fingerprint.add("generateSource", generateSource);
+         fingerprint.add("noCompile", noCompile);
+         fingerprint.add("target", target);
+         fingerprint.add("targetPackage", settings.getTargetPackage());
+         fingerprint.add("encoding", encoding);
+         fingerprint.add("stack", getStackVersion());
+         addReproducibleSettings(fingerprint);
+         return fingerprint.getValue();
+      }
+      catch (Exception e)
+      {
+         getLog().debug("Could not compute the fingerprint of " + wsdl + ": " + e.getMessage());
+         return null;
       }
    }
 
+   /**
+    * Compute the fingerprint of all the inputs affecting the sources generated for the given wsdl
+    * in this project, for telling whether the wsdl needs to be consumed again.
+    * 
+    * @param wsdl     the wsdl reference
+    * @param inputKey the location independent inputs key
+    * @return the fingerprint or null if it can't be computed (e.g. remote wsdl)
+    */
+   private String getFingerprint(String wsdl, String inputKey)
+   {
+      if (inputKey == null)
+      {
+         return null;
+      }
+      Fingerprint fingerprint = new Fingerprint();
+      fingerprint.add("inputs", inputKey);
+      fingerprint.add("wsdl", wsdl);
+      fingerprint.add("sourceDirectory", sourceDirectory);
+      fingerprint.add("classpath", getClasspathElements());
+      return fingerprint.getValue();
+   }
+
+   private String getStateKey(String wsdl)
+   {
+      return sourceDirectory.getAbsolutePath() + "|" + getWsdlSettings(wsdl).getTargetPackage() + "|" + wsdl;
+   }
+
+   private void updateState(BuildState state, String wsdl, String fingerprint)
+   {
+      if (fingerprint != null)
+      {
+         state.put(getStateKey(wsdl), fingerprint);
+      }
+   }
+
+   /**
+    * @return whether the sources generated from the given wsdl by the previous run are all still there
+    */
+   private boolean hasGeneratedSources(String wsdl, BuildState state)
+   {
+      List<String> files = OutputSync.split(state.get(getStateKey(wsdl) + FILES_SUFFIX));
+      if (files.isEmpty())
+      {
+         return false;
+      }
+      for (String file : files)
+      {
+         if (!new File(sourceDirectory, file.replace('/', File.separatorChar)).isFile())
+         {
+            return false;
+         }
+      }
+      return true;
+   }
+
    public List<String> getWsdls()
    {
       return wsdls;
    }
 
+   public List<WsdlOption> getWsdlOptions()
+   {
+      return wsdlOptions;
+   }
+
+   public Boolean isWsdlMirror()
+   {
+      return wsdlMirror;
+   }
+
+   public File getWsdlMirrorDirectory()
+   {
+      return wsdlMirrorDirectory;
+   }
+
+   public File getWsdlDirectory()
+   {
+      return wsdlDirectory;
+   }
+
+   public List<String> getIncludes()
+   {
+      return includes;
+   }
+
+   public List<String> getExcludes()
+   {
+      return excludes;
+   }
+
    public List<String> getBindingFiles()
    {
       return bindingFiles;
@@ -234,4 +1160,24 @@ public abstract class AbstractWsConsumeMojo extends AbstractToolsMojo
    {
       return additionalHeaders;
    }
+
+   public Boolean isBatch()
+   {
+      return batch;
+   }
+
+   public String getThreads()
+   {
+      return threads;
+   }
+
+   public Boolean isAdaptiveForkMemory()
+   {
+      return adaptiveForkMemory;
+   }
+
+   public Boolean isForce()
+   {
+      return force;
+   }
 }
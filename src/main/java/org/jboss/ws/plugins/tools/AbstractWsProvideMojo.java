@@ -22,10 +22,14 @@
 package org.jboss.ws.plugins.tools;
 
 import java.io.File;
+import java.io.IOException;
+import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.Map;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
 
 /**
  * Generic mojo for wsprovide tool
@@ -36,6 +40,10 @@ import org.apache.maven.plugin.logging.Log;
  */
 public abstract class AbstractWsProvideMojo extends AbstractToolsMojo 
 {
+   private static final String CLASSES = "classes";
+   private static final String RESOURCES = "resources";
+   private static final String SOURCES = "java";
+
    /**
     * Enables/Disables WSDL generation.
     * 
@@ -74,16 +82,35 @@ public abstract class AbstractWsProvideMojo extends AbstractToolsMojo
      */
    private String portSoapAddress;
 
+   /**
+    * Whether or not to run wsprovide even if the endpoint classes did not change
+    * since the last successful run.
+    * 
+    * @parameter default-value="false" property="jaxws.tools.force"
+    */
+   protected Boolean force;
 
    public void execute() throws MojoExecutionException
    {
-      Log log = getLog();
       if (endpointClass == null)
       {
          getLog().info("No service endpoint implementation class specified, nothing to do.");
          return;
       }
-      
+      ExecutionMetrics metrics = new ExecutionMetrics(getClass().getSimpleName());
+      try
+      {
+         provide(metrics);
+      }
+      finally
+      {
+         reportMetrics(metrics, getClass().getSimpleName() + "-" + endpointClass);
+      }
+   }
+
+   private void provide(ExecutionMetrics metrics) throws MojoExecutionException
+   {
+      Log log = getLog();
       if (verbose)
       {
          log.info("Classpath:");
@@ -93,11 +120,56 @@ public abstract class AbstractWsProvideMojo extends AbstractToolsMojo
          }
       }
 
+      ReproducibleOutput reproducibleOutput = createReproducibleOutput();
       ClassLoader origLoader = Thread.currentThread().getContextClassLoader();
+      long start = System.nanoTime();
       URLClassLoader loader = getMavenClasspathAwareClassLoader();
+      metrics.addPhase("classloader", start);
       Thread.currentThread().setContextClassLoader(loader);
+      BuildState state = BuildState.load(new File(getWorkDirectory(), "wsprovide-state.properties"));
+      final String stateKey = getOutputDirectory().getAbsolutePath() + "|" + endpointClass;
+      OutputCache outputCache = createOutputCache();
+      File staging = null;
+      ExecutionMetrics.Item item = metrics.getItem(endpointClass);
       try
       {
+         start = System.nanoTime();
+         String inputKey = getInputKey(loader);
+         String fingerprint = getFingerprint(inputKey);
+         metrics.addPhase("inputs", start);
+         if (!force && fingerprint != null && fingerprint.equals(state.get(stateKey)) && hasOutputs(state.get(stateKey + ".outputs")))
+         {
+            log.info("Skipping up-to-date endpoint: " + endpointClass);
+            item.setOutcome(ExecutionMetrics.OUTCOME_UP_TO_DATE);
+            updateProjectSourceRoots();
+            return;
+         }
+         state.remove(stateKey);
+
+         if (outputCache != null && inputKey != null)
+         {
+            staging = createStagingDirectory("wsprovide-");
+            start = System.nanoTime();
+            boolean restored = !force && outputCache.restore(inputKey, staging);
+            if (restored)
+            {
+               log.info("Restored outputs of " + endpointClass + " from cache");
+               item.setOutcome(ExecutionMetrics.OUTCOME_CACHED);
+               copyOutputs(staging);
+            }
+            metrics.addPhase("cacheRestore", start);
+            if (restored)
+            {
+               updateState(state, stateKey, fingerprint);
+               updateProjectSourceRoots();
+               return;
+            }
+         }
+         if (staging == null && reproducibleOutput != null)
+         {
+            staging = createStagingDirectory("wsprovide-");
+         }
+
          WSContractProviderParams params = new WSContractProviderParams();
          params.setEndpointClass(endpointClass);
          params.setExtension(extension);
@@ -107,28 +179,236 @@ public abstract class AbstractWsProvideMojo extends AbstractToolsMojo
          params.setOutputDirectory(getOutputDirectory());
          params.setResourceDirectory(resourceDirectory);
          params.setSourceDirectory(sourceDirectory);
-         params.setFork(fork);
+         if (staging != null)
+         {
+            //generate into dedicated directories, for normalizing and caching exactly the outputs of this endpoint
+            params.setOutputDirectory(new File(staging, CLASSES));
+            params.setResourceDirectory(new File(staging, RESOURCES));
+            params.setSourceDirectory(new File(staging, SOURCES));
+         }
+         params.setFork(fork || daemon);
+         if (daemon)
+         {
+            WSContractDaemonClient.checkSession(sessionStartTime, getLog());
+            params.setDaemon(true);
+            params.setDaemonIdleTimeout(daemonIdleTimeout);
+         }
          params.setArgLine(argLine);
          params.setPortSoapAddress(portSoapAddress);
 
-         File manifestOnlyJar = createJar(getClasspathElements(), endpointClass);
-         params.setManifestOnlyJar(manifestOnlyJar);
+         if (params.isFork())
+         {
+            start = System.nanoTime();
+            File manifestOnlyJar = createJar(getClasspathElements(), endpointClass);
+            params.setManifestOnlyJar(manifestOnlyJar);
+            params.setClassDataArchive(getClassDataArchive(manifestOnlyJar, argLine));
+            params.setForkProfile(resolveForkProfile());
+            params.setForkTimeout(forkTimeout);
+            params.setFlightRecording(forkFlightRecording);
+            params.setFlightRecordingDirectory(getOutputDirectory().getParentFile());
+            metrics.addPhase("manifestJar", start);
+         }
 
-         WSContractDelegate delegate = new WSContractDelegate(getLog());
+         WSContractDelegate delegate = new WSContractDelegate(getLog(), metrics);
+         delegate.setQuiet(quiet && !verbose);
+         start = System.nanoTime();
          delegate.runProvider(params);
+         metrics.addPhase("tools", start);
+         item.setOutcome(ExecutionMetrics.OUTCOME_GENERATED);
          
+         if (staging != null)
+         {
+            start = System.nanoTime();
+            if (reproducibleOutput != null)
+            {
+               int count = reproducibleOutput.normalize(staging);
+               log.debug("Normalized " + count + " files generated for " + endpointClass);
+            }
+            item.setBytes(FileUtils.sizeOfDirectory(staging));
+            if (outputCache != null && inputKey != null)
+            {
+               try
+               {
+                  outputCache.store(inputKey, staging);
+               }
+               catch (IOException ioe)
+               {
+                  log.warn("Could not cache the outputs of " + endpointClass + ": " + ioe.getMessage());
+               }
+            }
+            copyOutputs(staging);
+            metrics.addPhase("publish", start);
+         }
+         else if (item.getStartTime() > 0)
+         {
+            item.setBytes(ExecutionMetrics.sizeOfFilesModifiedSince(item.getStartTime() / 1000 * 1000,
+                  getOutputDirectory(), resourceDirectory, sourceDirectory));
+         }
+         updateState(state, stateKey, fingerprint);
          updateProjectSourceRoots();
       }
       catch (Exception e)
       {
+         item.setOutcome(ExecutionMetrics.OUTCOME_FAILED);
          throw new MojoExecutionException("Error while running wsprovide", e);
       }
       finally
       {
          Thread.currentThread().setContextClassLoader(origLoader);
+         ClassLoaderCache.release(loader);
+         if (staging != null)
+         {
+            try
+            {
+               FileUtils.deleteDirectory(staging);
+            }
+            catch (IOException ioe)
+            {
+               log.debug("Could not delete " + staging + ": " + ioe.getMessage());
+            }
+         }
+         try
+         {
+            state.store();
+         }
+         catch (java.io.IOException ioe)
+         {
+            log.warn("Could not store the build state: " + ioe.getMessage());
+         }
+      }
+   }
+
+   private void updateState(BuildState state, String stateKey, String fingerprint)
+   {
+      if (fingerprint != null)
+      {
+         state.put(stateKey, fingerprint);
+         state.put(stateKey + ".outputs", getOutputs());
+      }
+   }
+
+   /**
+    * Move the outputs generated into (or restored to) the given staging directory
+    * to their actual locations, leaving the unchanged files untouched
+    */
+   private void copyOutputs(File staging) throws IOException
+   {
+      copyIfExists(new File(staging, CLASSES), getOutputDirectory());
+      copyIfExists(new File(staging, RESOURCES), resourceDirectory);
+      copyIfExists(new File(staging, SOURCES), sourceDirectory);
+   }
+
+   private void copyIfExists(File from, File to) throws IOException
+   {
+      if (from.isDirectory())
+      {
+         OutputSync sync = OutputSync.sync(from, to);
+         if (verbose)
+         {
+            getLog().info("Outputs published to " + to + ": " + sync);
+         }
+      }
+   }
+
+   /**
+    * Compute a location independent key of the compiled endpoint classes (endpoint, SEI
+    * and the types reachable from the web method signatures), of the settings and of the
+    * tool stack version, which is used for sharing the outputs across modules and builds.
+    * 
+    * @param loader the Maven classpath aware classloader
+    * @return the key or null if it can't be computed
+    */
+   private String getInputKey(ClassLoader loader)
+   {
+      try
+      {
+         Map<String, URL> classFiles = EndpointClassScanner.scan(loader, endpointClass, getOutputDirectory());
+         if (classFiles.isEmpty())
+         {
+            return null;
+         }
+         Fingerprint fingerprint = new Fingerprint();
+         for (Map.Entry<String, URL> e : classFiles.entrySet())
+         {
+            fingerprint.addContent(e.getKey(), e.getValue());
+         }
+         fingerprint.add("endpointClass", endpointClass);
+         fingerprint.add("extension", extension);
+         fingerprint.add("generateSource", generateSource);
+         fingerprint.add("generateWsdl", generateWsdl);
+         fingerprint.add("portSoapAddress", portSoapAddress);
+         fingerprint.add("stack", getStackVersion());
+         addReproducibleSettings(fingerprint);
+         return fingerprint.getValue();
+      }
+      catch (Throwable t)
+      {
+         getLog().debug("Could not compute the fingerprint of " + endpointClass + ": " + t);
+         return null;
       }
    }
 
+   /**
+    * Compute the fingerprint of the inputs and of the output locations, for telling
+    * whether wsprovide needs to be run again in this project
+    * 
+    * @param inputKey the location independent inputs key
+    * @return the fingerprint or null if it can't be computed
+    */
+   private String getFingerprint(String inputKey)
+   {
+      if (inputKey == null)
+      {
+         return null;
+      }
+      Fingerprint fingerprint = new Fingerprint();
+      fingerprint.add("inputs", inputKey);
+      fingerprint.add("resourceDirectory", resourceDirectory);
+      fingerprint.add("sourceDirectory", sourceDirectory);
+      fingerprint.add("classpath", getClasspathElements());
+      return fingerprint.getValue();
+   }
+
+   /**
+    * @return the output directories which are not empty
+    */
+   private String getOutputs()
+   {
+      StringBuilder sb = new StringBuilder();
+      for (File dir : new File[]{resourceDirectory, sourceDirectory})
+      {
+         String[] children = dir.list();
+         if (children != null && children.length > 0)
+         {
+            sb.append(dir.getAbsolutePath()).append(File.pathSeparatorChar);
+         }
+      }
+      return sb.toString();
+   }
+
+   /**
+    * @return true if the output directories that were not empty after the last successful run are still not empty
+    */
+   private static boolean hasOutputs(String outputs)
+   {
+      if (outputs == null)
+      {
+         return false;
+      }
+      for (String dir : outputs.split(File.pathSeparator))
+      {
+         if (dir.length() > 0)
+         {
+            String[] children = new File(dir).list();
+            if (children == null || children.length == 0)
+            {
+               return false;
+            }
+         }
+      }
+      return true;
+   }
+
    public boolean isGenerateWsdl()
    {
       return generateWsdl;
@@ -153,4 +433,9 @@ public abstract class AbstractWsProvideMojo extends AbstractToolsMojo
    {
       return portSoapAddress;
    }
+
+   public Boolean isForce()
+   {
+      return force;
+   }
 }
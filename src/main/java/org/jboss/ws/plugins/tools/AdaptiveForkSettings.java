@@ -0,0 +1,324 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Picks the heap, GC and GC thread settings of the forked tool JVMs from the size of the wsdls
+ * to consume: the local documents of each wsdl closure are scanned (bytes, elements, schema
+ * type declarations), the heap needed by the largest wsdl is estimated and then capped to the
+ * share of the available memory (container limit if any, physical memory otherwise) each of
+ * the concurrent forks can get. Settings already provided in the argLine are never overridden.
+ */
+public class AdaptiveForkSettings
+{
+   private static final long MB = 1024 * 1024;
+   private static final long MIN_HEAP = 64 * MB;
+   private static final long BASE_HEAP = 128 * MB;
+   /** heap per byte of wsdl / schema, covering the DOM, the schema and JAXB models and the code model */
+   private static final long HEAP_PER_BYTE = 32;
+   /** heap per schema type declaration, covering the generated class model and its compilation */
+   private static final long HEAP_PER_TYPE = 128 * 1024;
+   /** heaps up to this size are better served by the serial collector */
+   private static final long SERIAL_GC_MAX_HEAP = 1024 * MB;
+   private static final int MAX_GC_THREADS = 8;
+   /** values from which a cgroup v1 memory limit actually means no limit */
+   private static final long UNLIMITED = 1L << 60;
+
+   private static final File CGROUP_ROOT = new File("/sys/fs/cgroup");
+
+   private static final Pattern HEAP_OPTION = Pattern.compile("-Xmx|-XX:MaxHeapSize|-XX:MaxRAM");
+   private static final Pattern GC_OPTION = Pattern.compile("-XX:\\+Use\\w*GC\\b");
+   private static final Pattern GC_THREADS_OPTION = Pattern.compile("-XX:(ParallelGCThreads|ConcGCThreads)");
+
+   private AdaptiveForkSettings()
+   {
+   }
+
+   /**
+    * The size of the local documents of a wsdl closure
+    */
+   static final class Footprint
+   {
+      int documents;
+      long bytes;
+      long elements;
+      long types;
+
+      long estimateHeap()
+      {
+         return BASE_HEAP + bytes * HEAP_PER_BYTE + types * HEAP_PER_TYPE;
+      }
+
+      @Override
+      public String toString()
+      {
+         return documents + " document(s), " + (bytes / 1024) + " kB, " + elements + " elements, " + types + " types";
+      }
+   }
+
+   /**
+    * Add the tuned settings to the given argLine
+    *
+    * @param argLine          the user provided argLine, if any
+    * @param wsdls            the wsdls that are going to be consumed
+    * @param concurrentForks  the number of forked JVMs that can run at the same time
+    * @param log              the log to report the decision to
+    * @return the argLine to start the forked JVMs with
+    */
+   public static String tune(String argLine, List<String> wsdls, int concurrentForks, Log log)
+   {
+      return tune(argLine, wsdls, concurrentForks, CGROUP_ROOT, log);
+   }
+
+   /**
+    * Add the tuned settings to the given argLine, reading the container memory limit
+    * from the given cgroup filesystem
+    *
+    * @param argLine          the user provided argLine, if any
+    * @param wsdls            the wsdls that are going to be consumed
+    * @param concurrentForks  the number of forked JVMs that can run at the same time
+    * @param cgroupRoot       the root of the cgroup (v2 or v1) filesystem
+    * @param log              the log to report the decision to
+    * @return the argLine to start the forked JVMs with
+    */
+   public static String tune(String argLine, List<String> wsdls, int concurrentForks, File cgroupRoot, Log log)
+   {
+      final String userArgs = argLine != null ? argLine : "";
+      Footprint largest = null;
+      for (String wsdl : wsdls)
+      {
+         try
+         {
+            Footprint footprint = scan(WsdlClosure.resolve(wsdl));
+            if (footprint.documents > 0 && (largest == null || footprint.estimateHeap() > largest.estimateHeap()))
+            {
+               largest = footprint;
+            }
+         }
+         catch (Exception e)
+         {
+            log.debug("Could not scan " + wsdl + ": " + e);
+         }
+      }
+
+      StringBuilder added = new StringBuilder();
+      StringBuilder decision = new StringBuilder("Adaptive fork settings");
+      final int forks = Math.max(1, concurrentForks);
+      long heap = -1;
+      if (HEAP_OPTION.matcher(userArgs).find())
+      {
+         decision.append(": heap set in argLine");
+      }
+      else if (largest == null)
+      {
+         decision.append(": no local wsdl to size the heap on");
+      }
+      else
+      {
+         StringBuilder limitSource = new StringBuilder();
+         final long available = getMemoryLimit(cgroupRoot, limitSource) - Runtime.getRuntime().maxMemory();
+         heap = roundUp(largest.estimateHeap());
+         decision.append(" for the largest wsdl (").append(largest).append("): estimated heap ").append(heap / MB).append(" MB");
+         if (available > 0)
+         {
+            final long budget = Math.max(MIN_HEAP, available * 8 / 10 / forks);
+            decision.append(", budget ").append(budget / MB).append(" MB per fork (").append(limitSource)
+               .append(" minus the Maven heap, ").append(forks).append(" concurrent fork(s))");
+            if (heap > budget)
+            {
+               heap = budget / MB * MB;
+               log.warn("The heap of the forked tool JVMs is capped to " + heap / MB
+                     + " MB by the available memory; consider reducing the threads or setting -Xmx in argLine");
+            }
+         }
+         append(added, "-Xmx" + heap / MB + "m");
+      }
+
+      final int cpus = Math.max(1, Runtime.getRuntime().availableProcessors() / forks);
+      if (GC_OPTION.matcher(userArgs).find())
+      {
+         decision.append(", GC set in argLine");
+      }
+      else if (heap < 0)
+      {
+         decision.append(", GC left to the JVM defaults");
+      }
+      else if (heap > SERIAL_GC_MAX_HEAP && cpus > 1)
+      {
+         append(added, "-XX:+UseParallelGC");
+         if (!GC_THREADS_OPTION.matcher(userArgs).find())
+         {
+            append(added, "-XX:ParallelGCThreads=" + Math.min(cpus, MAX_GC_THREADS));
+         }
+      }
+      else
+      {
+         append(added, "-XX:+UseSerialGC");
+      }
+      decision.append(" -> ").append(added.length() > 0 ? added : "no change");
+      log.info(decision.toString());
+      if (added.length() == 0)
+      {
+         return argLine;
+      }
+      return userArgs.trim().length() > 0 ? userArgs.trim() + " " + added : added.toString();
+   }
+
+   private static void append(StringBuilder sb, String option)
+   {
+      if (sb.length() > 0)
+      {
+         sb.append(' ');
+      }
+      sb.append(option);
+   }
+
+   private static long roundUp(long bytes)
+   {
+      final long unit = 64 * MB;
+      return (bytes + unit - 1) / unit * unit;
+   }
+
+   /**
+    * Stream the local documents of the given closure, counting elements and schema type declarations
+    */
+   static Footprint scan(WsdlClosure closure) throws IOException, XMLStreamException
+   {
+      XMLInputFactory factory = WsdlClosure.createInputFactory();
+      Footprint footprint = new Footprint();
+      for (URL url : closure.getDocuments())
+      {
+         File file = "file".equals(url.getProtocol()) ? Util.toFile(url) : null;
+         if (file == null || !file.isFile())
+         {
+            continue;
+         }
+         footprint.documents++;
+         footprint.bytes += file.length();
+         InputStream is = url.openStream();
+         try
+         {
+            XMLStreamReader reader = factory.createXMLStreamReader(url.toExternalForm(), is);
+            try
+            {
+               while (reader.hasNext())
+               {
+                  if (reader.next() == XMLStreamConstants.START_ELEMENT)
+                  {
+                     footprint.elements++;
+                     if (WsdlClosure.XSD_NS.equals(reader.getNamespaceURI())
+                           && ("complexType".equals(reader.getLocalName()) || "simpleType".equals(reader.getLocalName())))
+                     {
+                        footprint.types++;
+                     }
+                  }
+               }
+            }
+            finally
+            {
+               reader.close();
+            }
+         }
+         finally
+         {
+            is.close();
+         }
+      }
+      return footprint;
+   }
+
+   /**
+    * Get the memory available to this process: the cgroup (v2 or v1) limit when running
+    * within a memory limited container, the physical memory otherwise
+    *
+    * @param cgroupRoot  the root of the cgroup filesystem
+    * @param source      filled with a description of where the limit comes from
+    * @return the limit in bytes, -1 if unknown
+    */
+   static long getMemoryLimit(File cgroupRoot, StringBuilder source)
+   {
+      long limit = readLimit(new File(cgroupRoot, "memory.max"));
+      if (limit < 0)
+      {
+         limit = readLimit(new File(cgroupRoot, "memory" + File.separator + "memory.limit_in_bytes"));
+      }
+      if (limit > 0)
+      {
+         source.append("container limit ").append(limit / MB).append(" MB");
+         return limit;
+      }
+      try
+      {
+         Class<?> beanClass = Class.forName("com.sun.management.OperatingSystemMXBean");
+         Object bean = ManagementFactory.getOperatingSystemMXBean();
+         if (beanClass.isInstance(bean))
+         {
+            limit = (Long)beanClass.getMethod("getTotalPhysicalMemorySize").invoke(bean);
+            source.append("physical memory ").append(limit / MB).append(" MB");
+            return limit;
+         }
+      }
+      catch (Exception e)
+      {
+         //not available on this JVM
+      }
+      return -1;
+   }
+
+   private static long readLimit(File file)
+   {
+      if (!file.isFile())
+      {
+         return -1;
+      }
+      try
+      {
+         String value = FileUtils.fileRead(file).trim();
+         if ("max".equals(value))
+         {
+            return -1;
+         }
+         long limit = Long.parseLong(value);
+         return limit >= UNLIMITED ? -1 : limit;
+      }
+      catch (Exception e)
+      {
+         return -1;
+      }
+   }
+}
@@ -0,0 +1,220 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * A Log that keeps the messages in memory until they're flushed to the
+ * actual Maven log as a single block; used for keeping the output of
+ * concurrent tool invocations grouped.
+ */
+public class BufferedLog implements Log
+{
+   private static enum Level {
+      DEBUG, INFO, WARN, ERROR
+   }
+
+   private static final class Entry
+   {
+      private final Level level;
+      private final CharSequence message;
+      private final Throwable error;
+
+      Entry(Level level, CharSequence message, Throwable error)
+      {
+         this.level = level;
+         this.message = message;
+         this.error = error;
+      }
+
+      void writeTo(Log log)
+      {
+         switch (level)
+         {
+            case DEBUG :
+               if (error == null)
+               {
+                  log.debug(message);
+               }
+               else
+               {
+                  log.debug(message, error);
+               }
+               break;
+            case INFO :
+               if (error == null)
+               {
+                  log.info(message);
+               }
+               else
+               {
+                  log.info(message, error);
+               }
+               break;
+            case WARN :
+               if (error == null)
+               {
+                  log.warn(message);
+               }
+               else
+               {
+                  log.warn(message, error);
+               }
+               break;
+            default :
+               if (error == null)
+               {
+                  log.error(message);
+               }
+               else
+               {
+                  log.error(message, error);
+               }
+         }
+      }
+   }
+
+   private final Log target;
+   private final List<Entry> entries = new ArrayList<Entry>();
+
+   public BufferedLog(Log target)
+   {
+      this.target = target;
+   }
+
+   /**
+    * Write the buffered messages to the target log, without interleaving
+    * them with messages flushed by other buffered logs for the same target.
+    */
+   public void flush()
+   {
+      synchronized (target)
+      {
+         synchronized (this)
+         {
+            for (Entry e : entries)
+            {
+               e.writeTo(target);
+            }
+            entries.clear();
+         }
+      }
+   }
+
+   private synchronized void add(Level level, CharSequence message, Throwable error)
+   {
+      entries.add(new Entry(level, message, error));
+   }
+
+   public boolean isDebugEnabled()
+   {
+      return target.isDebugEnabled();
+   }
+
+   public void debug(CharSequence content)
+   {
+      if (isDebugEnabled())
+      {
+         add(Level.DEBUG, content, null);
+      }
+   }
+
+   public void debug(CharSequence content, Throwable error)
+   {
+      if (isDebugEnabled())
+      {
+         add(Level.DEBUG, content, error);
+      }
+   }
+
+   public void debug(Throwable error)
+   {
+      if (isDebugEnabled())
+      {
+         add(Level.DEBUG, "", error);
+      }
+   }
+
+   public boolean isInfoEnabled()
+   {
+      return target.isInfoEnabled();
+   }
+
+   public void info(CharSequence content)
+   {
+      add(Level.INFO, content, null);
+   }
+
+   public void info(CharSequence content, Throwable error)
+   {
+      add(Level.INFO, content, error);
+   }
+
+   public void info(Throwable error)
+   {
+      add(Level.INFO, "", error);
+   }
+
+   public boolean isWarnEnabled()
+   {
+      return target.isWarnEnabled();
+   }
+
+   public void warn(CharSequence content)
+   {
+      add(Level.WARN, content, null);
+   }
+
+   public void warn(CharSequence content, Throwable error)
+   {
+      add(Level.WARN, content, error);
+   }
+
+   public void warn(Throwable error)
+   {
+      add(Level.WARN, "", error);
+   }
+
+   public boolean isErrorEnabled()
+   {
+      return target.isErrorEnabled();
+   }
+
+   public void error(CharSequence content)
+   {
+      add(Level.ERROR, content, null);
+   }
+
+   public void error(CharSequence content, Throwable error)
+   {
+      add(Level.ERROR, content, error);
+   }
+
+   public void error(Throwable error)
+   {
+      add(Level.ERROR, "", error);
+   }
+}
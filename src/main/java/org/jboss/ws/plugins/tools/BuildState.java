@@ -0,0 +1,128 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Key / value state persisted between builds (e.g. the fingerprints of the
+ * inputs of the last successful tool invocations), stored in a properties
+ * file in the build directory.
+ */
+public class BuildState
+{
+   private final File file;
+   private final Properties props = new Properties();
+   private boolean dirty;
+
+   private BuildState(File file)
+   {
+      this.file = file;
+   }
+
+   /**
+    * Load the state from the given file; a missing or unreadable file results in an empty state.
+    */
+   public static BuildState load(File file)
+   {
+      BuildState state = new BuildState(file);
+      if (file.isFile())
+      {
+         try
+         {
+            InputStream is = new FileInputStream(file);
+            try
+            {
+               state.props.load(is);
+            }
+            finally
+            {
+               is.close();
+            }
+         }
+         catch (IOException ioe)
+         {
+            state.props.clear();
+         }
+      }
+      return state;
+   }
+
+   public synchronized String get(String key)
+   {
+      return props.getProperty(key);
+   }
+
+   /**
+    * @return a snapshot of the keys of the state
+    */
+   public synchronized Set<String> getKeys()
+   {
+      return new HashSet<String>(props.stringPropertyNames());
+   }
+
+   public synchronized void put(String key, String value)
+   {
+      if (!value.equals(props.setProperty(key, value)))
+      {
+         dirty = true;
+      }
+   }
+
+   public synchronized void remove(String key)
+   {
+      if (props.remove(key) != null)
+      {
+         dirty = true;
+      }
+   }
+
+   /**
+    * Persist the state, if it has been modified
+    */
+   public synchronized void store() throws IOException
+   {
+      if (!dirty)
+      {
+         return;
+      }
+      file.getParentFile().mkdirs();
+      OutputStream os = new FileOutputStream(file);
+      try
+      {
+         props.store(os, "jaxws-tools-maven-plugin build state");
+      }
+      finally
+      {
+         os.close();
+      }
+      dirty = false;
+   }
+}
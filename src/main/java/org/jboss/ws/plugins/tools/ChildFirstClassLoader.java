@@ -0,0 +1,142 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * A classloader looking up classes and resources in its own urls before delegating to
+ * its parent, except for the JDK APIs which must be shared with the parent (e.g. the
+ * java.compiler and java.xml ones).
+ *
+ * On JDK 9+ the tool stack is loaded with this loader on top of the platform loader,
+ * so that it's isolated from the Maven / plugin classes while still seeing the JDK
+ * modules that are not visible from the bootstrap loader.
+ */
+public class ChildFirstClassLoader extends URLClassLoader
+{
+   private static final String[] PARENT_FIRST_PREFIXES = new String[] {
+      "java.", "jdk.", "sun.", "com.sun.source.", "com.sun.tools.javac.",
+      "javax.tools.", "javax.lang.model.", "javax.annotation.processing.",
+      "javax.xml.parsers.", "javax.xml.transform.", "javax.xml.stream.", "javax.xml.namespace.",
+      "javax.xml.xpath.", "javax.xml.validation.", "javax.xml.datatype.", "javax.xml.catalog.",
+      "org.w3c.dom.", "org.xml.sax."
+   };
+
+   static
+   {
+      registerAsParallelCapable();
+   }
+
+   public ChildFirstClassLoader(URL[] urls, ClassLoader parent)
+   {
+      super(urls, parent);
+   }
+
+   /**
+    * @return a child first loader on top of the platform classloader (JDK 9+ only)
+    */
+   public static ChildFirstClassLoader newPlatformChild(URL[] urls)
+   {
+      try
+      {
+         ClassLoader platform = (ClassLoader)ClassLoader.class.getMethod("getPlatformClassLoader").invoke(null);
+         return new ChildFirstClassLoader(urls, platform);
+      }
+      catch (Exception e)
+      {
+         throw new IllegalStateException("Platform classloader not available", e);
+      }
+   }
+
+   @Override
+   protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException
+   {
+      synchronized (getClassLoadingLock(name))
+      {
+         Class<?> c = findLoadedClass(name);
+         if (c == null)
+         {
+            if (isParentFirst(name))
+            {
+               try
+               {
+                  c = getParent().loadClass(name);
+               }
+               catch (ClassNotFoundException cnfe)
+               {
+                  c = findClass(name);
+               }
+            }
+            else
+            {
+               try
+               {
+                  c = findClass(name);
+               }
+               catch (ClassNotFoundException cnfe)
+               {
+                  c = getParent().loadClass(name);
+               }
+            }
+         }
+         if (resolve)
+         {
+            resolveClass(c);
+         }
+         return c;
+      }
+   }
+
+   @Override
+   public URL getResource(String name)
+   {
+      URL url = findResource(name);
+      return url != null ? url : getParent().getResource(name);
+   }
+
+   @Override
+   public Enumeration<URL> getResources(String name) throws IOException
+   {
+      List<URL> urls = new ArrayList<URL>(Collections.list(findResources(name)));
+      urls.addAll(Collections.list(getParent().getResources(name)));
+      return Collections.enumeration(urls);
+   }
+
+   private static boolean isParentFirst(String className)
+   {
+      for (String prefix : PARENT_FIRST_PREFIXES)
+      {
+         if (className.startsWith(prefix))
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+}
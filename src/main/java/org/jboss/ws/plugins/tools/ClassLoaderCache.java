@@ -0,0 +1,210 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Cache of the Maven classpath aware classloaders, shared by the executions having
+ * the same classpath within a Maven session, so that the tool stack is loaded once.
+ * The loaders are isolated from the Maven and plugin classes (see {@link ChildFirstClassLoader}).
+ *
+ * Loaders are reference counted: the ones created within a previous Maven session are
+ * closed as soon as a new session is detected (or, when still in use, once released),
+ * and all of them are closed when the Maven JVM exits.
+ */
+public class ClassLoaderCache
+{
+   private static final Map<List<String>, Entry> LOADERS = new HashMap<List<String>, Entry>();
+   private static final Map<URLClassLoader, Entry> ACQUIRED = new IdentityHashMap<URLClassLoader, Entry>();
+   private static Object currentSession;
+   private static boolean shutdownHookRegistered;
+
+   private ClassLoaderCache()
+   {
+   }
+
+   /**
+    * Get a parent-less loader for the given classpath, which must be released through
+    * {@link #release(URLClassLoader)} once done with it.
+    *
+    * @param session    an object identifying the current Maven session, null for not caching the loader
+    * @param classpath  the classpath elements
+    * @param log        the log for reporting invalid classpath elements
+    * @return the loader
+    */
+   public static synchronized URLClassLoader acquire(Object session, List<String> classpath, Log log)
+   {
+      if (session == null || !session.equals(currentSession))
+      {
+         closeSession();
+         currentSession = session;
+      }
+      List<String> key = new ArrayList<String>(classpath);
+      Entry entry = session != null ? LOADERS.get(key) : null;
+      if (entry == null)
+      {
+         entry = new Entry(create(key, log));
+         if (session != null)
+         {
+            LOADERS.put(key, entry);
+         }
+         else
+         {
+            entry.stale = true;
+         }
+         registerShutdownHook();
+      }
+      else if (log.isDebugEnabled())
+      {
+         log.debug("Reusing the classloader of a previous execution");
+      }
+      entry.references++;
+      ACQUIRED.put(entry.loader, entry);
+      return entry.loader;
+   }
+
+   /**
+    * Release a loader obtained through {@link #acquire(Object, List, Log)}; the loader is closed
+    * if it's not going to be handed out anymore and it's not used by other executions.
+    *
+    * @param loader the loader to release
+    */
+   public static synchronized void release(URLClassLoader loader)
+   {
+      Entry entry = ACQUIRED.get(loader);
+      if (entry == null)
+      {
+         return;
+      }
+      entry.references--;
+      if (entry.references == 0 && entry.stale)
+      {
+         close(entry);
+      }
+   }
+
+   private static URLClassLoader create(List<String> classpath, Log log)
+   {
+      final int size = classpath.size();
+      List<URL> urls = new ArrayList<URL>(size);
+      for (int i = 0; i < size; i++)
+      {
+         try
+         {
+            urls.add(new File(classpath.get(i)).toURI().toURL());
+         }
+         catch (MalformedURLException mue)
+         {
+            log.warn("Skipping invalid classpath element: " + classpath.get(i));
+         }
+      }
+      URL[] array = urls.toArray(new URL[urls.size()]);
+      if (Util.getJVMMajorVersion() > 8)
+      {
+         //the bootstrap loader does not see the JDK modules (e.g. java.compiler) the tools need
+         return ChildFirstClassLoader.newPlatformChild(array);
+      }
+      return new URLClassLoader(array, null);
+   }
+
+   /**
+    * Stop handing out the loaders of the current session, closing the ones which are not in use
+    */
+   private static void closeSession()
+   {
+      for (Entry entry : LOADERS.values())
+      {
+         entry.stale = true;
+         if (entry.references == 0)
+         {
+            close(entry);
+         }
+      }
+      LOADERS.clear();
+   }
+
+   private static void close(Entry entry)
+   {
+      ACQUIRED.remove(entry.loader);
+      try
+      {
+         entry.loader.close();
+      }
+      catch (IOException ignored)
+      {
+         //ignore
+      }
+   }
+
+   private static synchronized void closeAll()
+   {
+      for (Entry entry : new ArrayList<Entry>(ACQUIRED.values()))
+      {
+         close(entry);
+      }
+      for (Entry entry : LOADERS.values())
+      {
+         close(entry);
+      }
+      LOADERS.clear();
+   }
+
+   private static void registerShutdownHook()
+   {
+      if (!shutdownHookRegistered)
+      {
+         Runtime.getRuntime().addShutdownHook(new Thread("jaxws-tools-classloader-shutdown")
+         {
+            @Override
+            public void run()
+            {
+               closeAll();
+            }
+         });
+         shutdownHookRegistered = true;
+      }
+   }
+
+   private static class Entry
+   {
+      private final URLClassLoader loader;
+      private int references;
+      private boolean stale;
+
+      private Entry(URLClassLoader loader)
+      {
+         this.loader = loader;
+      }
+   }
+}
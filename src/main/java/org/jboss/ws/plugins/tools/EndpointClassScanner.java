@@ -0,0 +1,267 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools;
+
+import java.io.File;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.net.URL;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects the compiled classes an endpoint implementation is made of: the endpoint class,
+ * its SEI, super types and the types reachable from the web method signatures (and, recursively,
+ * from the fields and properties of those types, including the ones only referenced by the
+ * JAXB @XmlSeeAlso, @XmlElements and @XmlElementRef annotations), along with the package-info
+ * of their packages (e.g. carrying @XmlSchema). Only the classes coming from the given classes
+ * directory are collected, as those are the only ones that can change between builds without
+ * the classpath changing.
+ */
+public final class EndpointClassScanner
+{
+   private static final String[] WEB_SERVICE_ANNOTATIONS = {"javax.jws.WebService", "jakarta.jws.WebService"};
+   private static final String[] JAXB_ANNOTATION_PACKAGES = {"javax.xml.bind.annotation.", "jakarta.xml.bind.annotation."};
+   private static final String[] JAXB_TYPE_ANNOTATIONS = {"XmlSeeAlso", "XmlElements", "XmlElement", "XmlElementRefs", "XmlElementRef"};
+   private static final String PACKAGE_INFO = "package-info";
+
+   private final ClassLoader loader;
+   private final String classesDirectory;
+   private final Map<String, URL> classFiles = new TreeMap<String, URL>();
+   private final LinkedList<Class<?>> queue = new LinkedList<Class<?>>();
+
+   private EndpointClassScanner(ClassLoader loader, File classesDirectory)
+   {
+      this.loader = loader;
+      this.classesDirectory = classesDirectory.getAbsoluteFile().toURI().toString();
+   }
+
+   /**
+    * @param loader            the classloader to load the classes with
+    * @param endpointClass     the endpoint implementation class name
+    * @param classesDirectory  the classes directory
+    * @return the class files of the collected classes, sorted by class name
+    * @throws ClassNotFoundException if the endpoint class (or its SEI) can't be found
+    */
+   public static Map<String, URL> scan(ClassLoader loader, String endpointClass, File classesDirectory) throws ClassNotFoundException
+   {
+      EndpointClassScanner scanner = new EndpointClassScanner(loader, classesDirectory);
+      scanner.add(Class.forName(endpointClass, false, loader));
+      while (!scanner.queue.isEmpty())
+      {
+         scanner.visit(scanner.queue.removeFirst());
+      }
+      return scanner.classFiles;
+   }
+
+   private void visit(Class<?> clazz) throws ClassNotFoundException
+   {
+      add(clazz.getSuperclass());
+      for (Class<?> itf : clazz.getInterfaces())
+      {
+         add(itf);
+      }
+      add(clazz.getEnclosingClass());
+      addAnnotatedTypes(clazz.getAnnotations());
+      String sei = getEndpointInterface(clazz);
+      if (sei != null && sei.length() > 0)
+      {
+         add(Class.forName(sei, false, loader));
+      }
+      for (Method m : clazz.getDeclaredMethods())
+      {
+         addAnnotatedTypes(m.getAnnotations());
+         if (Modifier.isPublic(m.getModifiers()))
+         {
+            add(m.getGenericReturnType());
+            for (Type t : m.getGenericParameterTypes())
+            {
+               add(t);
+            }
+            for (Type t : m.getGenericExceptionTypes())
+            {
+               add(t);
+            }
+         }
+      }
+      for (Field f : clazz.getDeclaredFields())
+      {
+         add(f.getGenericType());
+         addAnnotatedTypes(f.getAnnotations());
+      }
+   }
+
+   /**
+    * Add the types referenced by the JAXB annotations among the given ones
+    */
+   private void addAnnotatedTypes(Annotation[] annotations)
+   {
+      for (Annotation a : annotations)
+      {
+         if (isJaxbTypeAnnotation(a.annotationType().getName()))
+         {
+            addAnnotationMember(a, "value");
+            addAnnotationMember(a, "type");
+         }
+      }
+   }
+
+   private void addAnnotationMember(Annotation annotation, String member)
+   {
+      Object value;
+      try
+      {
+         value = annotation.annotationType().getMethod(member).invoke(annotation);
+      }
+      catch (Exception e)
+      {
+         return;
+      }
+      if (value instanceof Class<?>)
+      {
+         add((Class<?>)value);
+      }
+      else if (value instanceof Class<?>[])
+      {
+         for (Class<?> c : (Class<?>[])value)
+         {
+            add(c);
+         }
+      }
+      else if (value instanceof Annotation[])
+      {
+         addAnnotatedTypes((Annotation[])value);
+      }
+   }
+
+   private static boolean isJaxbTypeAnnotation(String name)
+   {
+      for (String pkg : JAXB_ANNOTATION_PACKAGES)
+      {
+         if (name.startsWith(pkg))
+         {
+            for (String type : JAXB_TYPE_ANNOTATIONS)
+            {
+               if (name.length() == pkg.length() + type.length() && name.endsWith(type))
+               {
+                  return true;
+               }
+            }
+         }
+      }
+      return false;
+   }
+
+   private void add(Type type)
+   {
+      if (type instanceof Class<?>)
+      {
+         add((Class<?>)type);
+      }
+      else if (type instanceof ParameterizedType)
+      {
+         ParameterizedType pt = (ParameterizedType)type;
+         add(pt.getRawType());
+         for (Type arg : pt.getActualTypeArguments())
+         {
+            add(arg);
+         }
+      }
+      else if (type instanceof GenericArrayType)
+      {
+         add(((GenericArrayType)type).getGenericComponentType());
+      }
+      else if (type instanceof WildcardType)
+      {
+         for (Type bound : ((WildcardType)type).getUpperBounds())
+         {
+            add(bound);
+         }
+      }
+   }
+
+   private void add(Class<?> clazz)
+   {
+      while (clazz != null && clazz.isArray())
+      {
+         clazz = clazz.getComponentType();
+      }
+      if (clazz == null || clazz.isPrimitive() || classFiles.containsKey(clazz.getName()))
+      {
+         return;
+      }
+      URL url = getClassFile(clazz.getName());
+      if (url != null)
+      {
+         classFiles.put(clazz.getName(), url);
+         queue.add(clazz);
+         int dot = clazz.getName().lastIndexOf('.');
+         String packageInfo = (dot < 0 ? "" : clazz.getName().substring(0, dot + 1)) + PACKAGE_INFO;
+         if (!classFiles.containsKey(packageInfo))
+         {
+            URL packageInfoUrl = getClassFile(packageInfo);
+            if (packageInfoUrl != null)
+            {
+               classFiles.put(packageInfo, packageInfoUrl);
+            }
+         }
+      }
+   }
+
+   /**
+    * @return the class file of the given class if it comes from the classes directory, null otherwise
+    */
+   private URL getClassFile(String className)
+   {
+      URL url = loader.getResource(className.replace('.', '/') + ".class");
+      return url != null && url.toString().startsWith(classesDirectory) ? url : null;
+   }
+
+   private static String getEndpointInterface(Class<?> clazz)
+   {
+      for (Annotation a : clazz.getAnnotations())
+      {
+         for (String name : WEB_SERVICE_ANNOTATIONS)
+         {
+            if (name.equals(a.annotationType().getName()))
+            {
+               try
+               {
+                  return (String)a.annotationType().getMethod("endpointInterface").invoke(a);
+               }
+               catch (Exception e)
+               {
+                  return null;
+               }
+            }
+         }
+      }
+      return null;
+   }
+}
@@ -0,0 +1,354 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Timing metrics of a tool execution: the wall time of each stage of the execution
+ * and, for each wsdl / endpoint, the tool wall time, the CPU time (when known: in-process,
+ * batch and daemon runs, forks on JDK 9+), the number of bytes written and the outcome.
+ *
+ * Metrics are recorded concurrently by the mojo and the {@link WSContractDelegate}
+ * threads; they're written as a JSON record per execution and the records of the
+ * current build session are aggregated into a single JSON array per project.
+ */
+public class ExecutionMetrics
+{
+   public static final String OUTCOME_GENERATED = "generated";
+   public static final String OUTCOME_UP_TO_DATE = "up-to-date";
+   public static final String OUTCOME_CACHED = "cached";
+   public static final String OUTCOME_INVALID = "invalid";
+   public static final String OUTCOME_FAILED = "failed";
+   public static final String MODE_IN_PROCESS = "in-process";
+   public static final String MODE_FORK = "fork";
+   public static final String MODE_BATCH = "batch";
+   public static final String MODE_DAEMON = "daemon";
+
+   private final String execution;
+   private final long startTime = System.currentTimeMillis();
+   private final long start = System.nanoTime();
+   private final Map<String, Long> phases = new LinkedHashMap<String, Long>();
+   private final Map<String, Item> items = new LinkedHashMap<String, Item>();
+   private long totalTime = -1;
+
+   /**
+    * @param execution the name of the execution (e.g. the mojo goal)
+    */
+   public ExecutionMetrics(String execution)
+   {
+      this.execution = execution;
+   }
+
+   /**
+    * Add the time elapsed since the given start (as returned by System.nanoTime())
+    * to the given stage
+    */
+   public synchronized void addPhase(String phase, long startNanos)
+   {
+      addPhaseTime(phase, System.nanoTime() - startNanos);
+   }
+
+   /**
+    * Add the given time (in nanoseconds) to the given stage
+    */
+   public synchronized void addPhaseTime(String phase, long nanos)
+   {
+      Long previous = phases.get(phase);
+      phases.put(phase, previous == null ? nanos : previous + nanos);
+   }
+
+   /**
+    * @return the metrics of the given wsdl / endpoint, created if needed
+    */
+   public synchronized Item getItem(String name)
+   {
+      Item item = items.get(name);
+      if (item == null)
+      {
+         item = new Item(name);
+         items.put(name, item);
+      }
+      return item;
+   }
+
+   /**
+    * Mark the end of the execution
+    */
+   public synchronized void stop()
+   {
+      totalTime = System.nanoTime() - start;
+   }
+
+   /**
+    * @return a one line summary, for the Maven log
+    */
+   public synchronized String getSummary()
+   {
+      Map<String, Integer> outcomes = new LinkedHashMap<String, Integer>();
+      long cpu = -1;
+      long bytes = 0;
+      for (Item item : items.values())
+      {
+         String outcome = item.outcome != null ? item.outcome : "unknown";
+         Integer count = outcomes.get(outcome);
+         outcomes.put(outcome, count == null ? 1 : count + 1);
+         if (item.cpuTime >= 0)
+         {
+            cpu = Math.max(cpu, 0) + item.cpuTime;
+         }
+         bytes += Math.max(item.bytes, 0);
+      }
+      StringBuilder sb = new StringBuilder(execution).append(": ");
+      sb.append(items.size()).append(items.size() == 1 ? " item" : " items");
+      if (!outcomes.isEmpty())
+      {
+         sb.append(' ').append(outcomes.toString().replace('=', ' ').replace('{', '(').replace('}', ')'));
+      }
+      sb.append(" in ").append(millis(totalTime)).append(" ms [");
+      for (Map.Entry<String, Long> e : phases.entrySet())
+      {
+         sb.append(e.getKey()).append(' ').append(millis(e.getValue())).append(" ms, ");
+      }
+      sb.append("cpu ").append(cpu < 0 ? "n/a" : millis(cpu) + " ms").append(", ").append(bytes).append(" bytes written]");
+      return sb.toString();
+   }
+
+   /**
+    * Write the JSON record of this execution into the given records directory, then
+    * aggregate the records of the current build session into the given report file;
+    * the records left by previous sessions are deleted
+    *
+    * @param recordsDir  the directory of the execution records
+    * @param session     the identifier of the current build session, e.g. its start time
+    * @param recordName  the name of the record of this execution
+    * @param report      the aggregated report file
+    */
+   public void write(File recordsDir, String session, String recordName, File report) throws IOException
+   {
+      recordsDir.mkdirs();
+      String prefix = session + "-";
+      write(new File(recordsDir, prefix + recordName + ".json"), toJson());
+      List<File> records = new ArrayList<File>();
+      for (File record : recordsDir.listFiles())
+      {
+         if (record.getName().startsWith(prefix))
+         {
+            records.add(record);
+         }
+         else
+         {
+            record.delete();
+         }
+      }
+      Collections.sort(records);
+      StringBuilder sb = new StringBuilder("[\n");
+      for (int i = 0; i < records.size(); i++)
+      {
+         sb.append(FileUtils.fileRead(records.get(i).getAbsolutePath(), "UTF-8").trim());
+         sb.append(i < records.size() - 1 ? ",\n" : "\n");
+      }
+      sb.append("]\n");
+      write(report, sb.toString());
+   }
+
+   synchronized String toJson()
+   {
+      StringBuilder sb = new StringBuilder("{\n");
+      sb.append("  \"execution\": ").append(quote(execution)).append(",\n");
+      sb.append("  \"startTime\": ").append(startTime).append(",\n");
+      sb.append("  \"totalTimeMillis\": ").append(millis(totalTime)).append(",\n");
+      sb.append("  \"phasesMillis\": {");
+      String separator = "";
+      for (Map.Entry<String, Long> e : phases.entrySet())
+      {
+         sb.append(separator).append(quote(e.getKey())).append(": ").append(millis(e.getValue()));
+         separator = ", ";
+      }
+      sb.append("},\n");
+      sb.append("  \"items\": [");
+      separator = "\n";
+      for (Item item : items.values())
+      {
+         sb.append(separator).append("    ").append(item.toJson());
+         separator = ",\n";
+      }
+      sb.append(items.isEmpty() ? "]\n" : "\n  ]\n");
+      sb.append("}");
+      return sb.toString();
+   }
+
+   /**
+    * @return the total size of the files within the given directories which have been modified since the given time
+    */
+   public static long sizeOfFilesModifiedSince(long since, File... dirs)
+   {
+      long size = 0;
+      List<File> pending = new ArrayList<File>();
+      for (File dir : dirs)
+      {
+         if (dir != null)
+         {
+            pending.add(dir);
+         }
+      }
+      while (!pending.isEmpty())
+      {
+         File[] children = pending.remove(pending.size() - 1).listFiles();
+         if (children == null)
+         {
+            continue;
+         }
+         for (File child : children)
+         {
+            if (child.isDirectory())
+            {
+               pending.add(child);
+            }
+            else if (child.lastModified() >= since)
+            {
+               size += child.length();
+            }
+         }
+      }
+      return size;
+   }
+
+   private static void write(File file, String content) throws IOException
+   {
+      Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+      try
+      {
+         writer.write(content);
+      }
+      finally
+      {
+         writer.close();
+      }
+   }
+
+   private static long millis(long nanos)
+   {
+      return nanos < 0 ? -1 : nanos / 1000000L;
+   }
+
+   private static String quote(String s)
+   {
+      if (s == null)
+      {
+         return "null";
+      }
+      StringBuilder sb = new StringBuilder("\"");
+      for (int i = 0; i < s.length(); i++)
+      {
+         char c = s.charAt(i);
+         if (c == '"' || c == '\\')
+         {
+            sb.append('\\').append(c);
+         }
+         else if (c < 0x20)
+         {
+            sb.append(String.format("\\u%04x", (int)c));
+         }
+         else
+         {
+            sb.append(c);
+         }
+      }
+      return sb.append('"').toString();
+   }
+
+   /**
+    * The metrics of a single wsdl / endpoint; times are in nanoseconds, -1 when unknown
+    */
+   public static class Item
+   {
+      private final String name;
+      private String mode;
+      private String outcome;
+      private long startTime = -1;
+      private long wallTime = -1;
+      private long cpuTime = -1;
+      private long bytes = -1;
+
+      private Item(String name)
+      {
+         this.name = name;
+      }
+
+      /**
+       * Record a tool run
+       *
+       * @param mode        the execution mode (in-process, fork, batch, daemon)
+       * @param startNanos  the run start, as returned by System.nanoTime()
+       * @param cpuTime     the CPU time of the run, -1 if unknown
+       */
+      public synchronized void recordRun(String mode, long startNanos, long cpuTime)
+      {
+         this.mode = mode;
+         this.startTime = System.currentTimeMillis() - (System.nanoTime() - startNanos) / 1000000L;
+         this.wallTime = System.nanoTime() - startNanos;
+         this.cpuTime = cpuTime;
+      }
+
+      public synchronized void setWallTime(long wallTime)
+      {
+         this.wallTime = wallTime;
+      }
+
+      /**
+       * @return the time (in ms since the epoch) the last tool run started, -1 if the tool has not been run
+       */
+      public synchronized long getStartTime()
+      {
+         return startTime;
+      }
+
+      public synchronized void setBytes(long bytes)
+      {
+         this.bytes = bytes;
+      }
+
+      public synchronized void setOutcome(String outcome)
+      {
+         this.outcome = outcome;
+      }
+
+      synchronized String toJson()
+      {
+         return "{\"name\": " + quote(name) + ", \"mode\": " + quote(mode) + ", \"outcome\": " + quote(outcome)
+               + ", \"wallTimeMillis\": " + millis(wallTime) + ", \"cpuTimeMillis\": " + (cpuTime < 0 ? "null" : String.valueOf(millis(cpuTime)))
+               + ", \"bytesWritten\": " + bytes + "}";
+      }
+   }
+}
@@ -0,0 +1,143 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes a SHA-256 fingerprint of a set of named values and file contents,
+ * used for telling whether the inputs of a tool invocation changed.
+ */
+public class Fingerprint
+{
+   private static final Charset UTF_8 = Charset.forName("UTF-8");
+   private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+   private final MessageDigest digest;
+
+   public Fingerprint()
+   {
+      try
+      {
+         digest = MessageDigest.getInstance("SHA-256");
+      }
+      catch (NoSuchAlgorithmException e)
+      {
+         throw new IllegalStateException(e);
+      }
+   }
+
+   public Fingerprint add(String name, Object value)
+   {
+      update(name);
+      update("=");
+      update(String.valueOf(value));
+      update("\n");
+      return this;
+   }
+
+   public Fingerprint addContent(String name, File file) throws IOException
+   {
+      update(name);
+      update(":");
+      if (file.isFile())
+      {
+         InputStream is = new FileInputStream(file);
+         try
+         {
+            update(is);
+         }
+         finally
+         {
+            is.close();
+         }
+      }
+      else
+      {
+         update("<missing>");
+      }
+      update("\n");
+      return this;
+   }
+
+   public Fingerprint addContent(String name, URL url) throws IOException
+   {
+      if ("file".equals(url.getProtocol()))
+      {
+         return addContent(name, Util.toFile(url));
+      }
+      update(name);
+      update(":");
+      InputStream is = url.openStream();
+      try
+      {
+         update(is);
+      }
+      finally
+      {
+         is.close();
+      }
+      update("\n");
+      return this;
+   }
+
+   /**
+    * @return the hex encoded fingerprint; the instance must not be used afterwards
+    */
+   public String getValue()
+   {
+      return toHex(digest.digest());
+   }
+
+   public static String toHex(byte[] bytes)
+   {
+      char[] chars = new char[bytes.length * 2];
+      for (int i = 0; i < bytes.length; i++)
+      {
+         chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+         chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+      }
+      return new String(chars);
+   }
+
+   private void update(String s)
+   {
+      digest.update(s.getBytes(UTF_8));
+   }
+
+   private void update(InputStream is) throws IOException
+   {
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = is.read(buffer)) != -1)
+      {
+         digest.update(buffer, 0, read);
+      }
+   }
+}
@@ -0,0 +1,169 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools;
+
+import java.io.File;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The Java Flight Recorder events of the plugin. This class must only be used
+ * through {@link FlightRecorderEvents}, which checks that JFR is available first.
+ */
+final class FlightRecorderEventTypes
+{
+   private FlightRecorderEventTypes()
+   {
+   }
+
+   @Name("org.jboss.ws.plugins.tools.WsConsumeInvocation")
+   @Label("wsconsume Invocation")
+   @Description("A run of wsconsume on a wsdl")
+   @Category({"JBossWS", "Tools"})
+   static class WsConsumeInvocation extends Event
+   {
+      @Label("WSDL")
+      String wsdl;
+
+      @Label("Mode")
+      @Description("in-process, fork or daemon")
+      String mode;
+   }
+
+   @Name("org.jboss.ws.plugins.tools.WsProvideInvocation")
+   @Label("wsprovide Invocation")
+   @Description("A run of wsprovide on an endpoint class")
+   @Category({"JBossWS", "Tools"})
+   static class WsProvideInvocation extends Event
+   {
+      @Label("Endpoint Class")
+      String endpointClass;
+
+      @Label("Mode")
+      @Description("in-process, fork or daemon")
+      String mode;
+   }
+
+   @Name("org.jboss.ws.plugins.tools.ForkSpawn")
+   @Label("Fork Spawn")
+   @Description("A tool JVM forked by the plugin, from its start to its exit (or to its readiness for daemons)")
+   @Category({"JBossWS", "Tools"})
+   static class ForkSpawn extends Event
+   {
+      @Label("Main Class")
+      String mainClass;
+
+      @Label("Subject")
+      @Description("The wsdl(s) or endpoint class the JVM is forked for")
+      String subject;
+
+      @Label("Mode")
+      @Description("fork, batch or daemon")
+      String mode;
+
+      @Label("Exit Code")
+      @Description("-1 if the JVM is still running (daemons) or could not be started")
+      int exitCode;
+   }
+
+   @Name("org.jboss.ws.plugins.tools.ManifestJarBuild")
+   @Label("Manifest Jar Build")
+   @Description("The creation (or reuse) of the manifest-only classpath jar of the forked JVMs")
+   @Category({"JBossWS", "Tools"})
+   static class ManifestJarBuild extends Event
+   {
+      @Label("Jar")
+      String jar;
+
+      @Label("Reused")
+      boolean reused;
+   }
+
+   static Object beginInvocation(boolean consume, String subject)
+   {
+      Event event;
+      if (consume)
+      {
+         WsConsumeInvocation e = new WsConsumeInvocation();
+         e.wsdl = subject;
+         event = e;
+      }
+      else
+      {
+         WsProvideInvocation e = new WsProvideInvocation();
+         e.endpointClass = subject;
+         event = e;
+      }
+      event.begin();
+      return event;
+   }
+
+   static void commitInvocation(Object event, String mode)
+   {
+      if (event instanceof WsConsumeInvocation)
+      {
+         ((WsConsumeInvocation)event).mode = mode;
+      }
+      else
+      {
+         ((WsProvideInvocation)event).mode = mode;
+      }
+      ((Event)event).commit();
+   }
+
+   static Object beginForkSpawn(String mainClass, String subject, String mode)
+   {
+      ForkSpawn event = new ForkSpawn();
+      event.mainClass = mainClass;
+      event.subject = subject;
+      event.mode = mode;
+      event.exitCode = -1;
+      event.begin();
+      return event;
+   }
+
+   static void commitForkSpawn(Object event, int exitCode)
+   {
+      ForkSpawn e = (ForkSpawn)event;
+      e.exitCode = exitCode;
+      e.commit();
+   }
+
+   static Object beginManifestJarBuild()
+   {
+      ManifestJarBuild event = new ManifestJarBuild();
+      event.begin();
+      return event;
+   }
+
+   static void commitManifestJarBuild(Object event, File jar, boolean reused)
+   {
+      ManifestJarBuild e = (ManifestJarBuild)event;
+      e.jar = jar.getName();
+      e.reused = reused;
+      e.commit();
+   }
+}
@@ -0,0 +1,111 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools;
+
+import java.io.File;
+
+/**
+ * Facade to the Java Flight Recorder events of the plugin (see {@link FlightRecorderEventTypes}).
+ * The event classes are only loaded when the running JVM provides the JFR API, the methods
+ * of this class being no-ops otherwise; events are handed around as plain objects for the
+ * same reason.
+ *
+ * This class only depends on the JDK, like {@link WSContractInvoker}.
+ */
+final class FlightRecorderEvents
+{
+   private static final boolean AVAILABLE = isAvailable();
+
+   private FlightRecorderEvents()
+   {
+   }
+
+   private static boolean isAvailable()
+   {
+      try
+      {
+         Class.forName("jdk.jfr.Event", false, FlightRecorderEvents.class.getClassLoader());
+         return true;
+      }
+      catch (Throwable t)
+      {
+         return false;
+      }
+   }
+
+   /**
+    * Begin a wsconsume or wsprovide invocation event
+    *
+    * @param consume  true for wsconsume, false for wsprovide
+    * @param subject  the wsdl or the endpoint class
+    * @return the event, null if JFR is not available
+    */
+   static Object beginInvocation(boolean consume, String subject)
+   {
+      return AVAILABLE ? FlightRecorderEventTypes.beginInvocation(consume, subject) : null;
+   }
+
+   static void commitInvocation(Object event, String mode)
+   {
+      if (event != null)
+      {
+         FlightRecorderEventTypes.commitInvocation(event, mode);
+      }
+   }
+
+   /**
+    * Begin a fork spawn event
+    *
+    * @param mainClass  the main class of the forked JVM
+    * @param subject    the wsdl(s) or endpoint class the JVM is forked for
+    * @param mode       the fork mode
+    * @return the event, null if JFR is not available
+    */
+   static Object beginForkSpawn(String mainClass, String subject, String mode)
+   {
+      return AVAILABLE ? FlightRecorderEventTypes.beginForkSpawn(mainClass, subject, mode) : null;
+   }
+
+   static void commitForkSpawn(Object event, int exitCode)
+   {
+      if (event != null)
+      {
+         FlightRecorderEventTypes.commitForkSpawn(event, exitCode);
+      }
+   }
+
+   /**
+    * @return a new manifest jar build event, null if JFR is not available
+    */
+   static Object beginManifestJarBuild()
+   {
+      return AVAILABLE ? FlightRecorderEventTypes.beginManifestJarBuild() : null;
+   }
+
+   static void commitManifestJarBuild(Object event, File jar, boolean reused)
+   {
+      if (event != null)
+      {
+         FlightRecorderEventTypes.commitManifestJarBuild(event, jar, reused);
+      }
+   }
+}
@@ -0,0 +1,137 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Predefined JVM option sets for the forked tool JVMs. The tool runs are short batch jobs,
+ * for which the server JVM defaults (full tiered compilation, a GC sized for long-running
+ * applications) mostly add startup and warm-up time. Options conflicting with the ones
+ * already provided in the argLine are skipped, so that the user settings always win.
+ *
+ * This class only depends on the JDK, as the params referencing it also go to the forked JVMs.
+ */
+public enum ForkProfile
+{
+   /**
+    * The JVM defaults
+    */
+   DEFAULT("default"),
+   /**
+    * C1-only compilation, serial GC and no perf data file, for forks consuming a few wsdls
+    */
+   FAST_START("fast-start", "-XX:TieredStopAtLevel=1", "-XX:+UseSerialGC", "-Xshare:auto", "-XX:-UsePerfData"),
+   /**
+    * Full tiered compilation and parallel GC, for large batches and daemons
+    */
+   THROUGHPUT("throughput", "-XX:+UseParallelGC", "-Xshare:auto");
+
+   private static final Pattern COMPILER_OPTION = Pattern.compile("TieredStopAtLevel|TieredCompilation|-Xint\\b|-Xcomp\\b");
+   private static final Pattern GC_OPTION = Pattern.compile("-XX:\\+Use\\w*GC\\b");
+   private static final Pattern SHARE_OPTION = Pattern.compile("-Xshare|SharedArchiveFile|ArchiveClassesAtExit");
+   private static final Pattern PERF_DATA_OPTION = Pattern.compile("UsePerfData");
+
+   private final String name;
+   private final List<String> options;
+
+   private ForkProfile(String name, String... options)
+   {
+      this.name = name;
+      this.options = Arrays.asList(options);
+   }
+
+   public String getName()
+   {
+      return name;
+   }
+
+   /**
+    * @param argLine  the argLine of the forked JVMs, possibly null
+    * @return the options of this profile that are not already configured in the argLine
+    */
+   public List<String> getOptions(String argLine)
+   {
+      final String userArgs = argLine != null ? argLine : "";
+      List<String> result = new ArrayList<String>(options.size());
+      for (String option : options)
+      {
+         if (!getConflictingOption(option).matcher(userArgs).find())
+         {
+            result.add(option);
+         }
+      }
+      return result;
+   }
+
+   private static Pattern getConflictingOption(String option)
+   {
+      if (option.startsWith("-XX:TieredStopAtLevel"))
+      {
+         return COMPILER_OPTION;
+      }
+      if (option.startsWith("-Xshare"))
+      {
+         return SHARE_OPTION;
+      }
+      if (option.contains("PerfData"))
+      {
+         return PERF_DATA_OPTION;
+      }
+      return GC_OPTION;
+   }
+
+   /**
+    * @param name  the profile name, null or empty for the default profile
+    * @return the profile
+    * @throws IllegalArgumentException if there's no profile with the given name
+    */
+   public static ForkProfile fromName(String name)
+   {
+      if (name == null || name.trim().length() == 0)
+      {
+         return DEFAULT;
+      }
+      for (ForkProfile profile : values())
+      {
+         if (profile.name.equalsIgnoreCase(name.trim()))
+         {
+            return profile;
+         }
+      }
+      List<String> names = new ArrayList<String>();
+      for (ForkProfile profile : values())
+      {
+         names.add(profile.name);
+      }
+      throw new IllegalArgumentException("Unknown fork profile: " + name + ", expected one of " + names);
+   }
+
+   @Override
+   public String toString()
+   {
+      return name;
+   }
+}
@@ -0,0 +1,326 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * Runs a forked tool JVM straight from its argument list through a {@link ProcessBuilder},
+ * with no shell nor command line parsing in between (so that paths with spaces are fine).
+ * The output and error streams are pumped on dedicated threads; the process is killed along
+ * with its descendants when it exceeds the timeout, when the running thread is interrupted
+ * and when the Maven JVM is being shut down (e.g. on Ctrl-C), so that no tool JVM is left behind.
+ */
+public class ForkedProcess
+{
+   private static final Set<Process> RUNNING = Collections.newSetFromMap(new ConcurrentHashMap<Process, Boolean>());
+   private static final AtomicBoolean SHUTDOWN_HOOK_REGISTERED = new AtomicBoolean();
+   private static final long PUMP_JOIN_TIMEOUT = 5000;
+   private static final long MIN_CPU_SAMPLE_INTERVAL = 100;
+   private static final long MAX_CPU_SAMPLE_INTERVAL = 1000;
+
+   private final List<String> command;
+   private final int timeout;
+   private int exitCode = -1;
+   private long wallTime = -1;
+   private long cpuTime = -1;
+
+   /**
+    * @param command  the command and its arguments
+    * @param timeout  the maximum execution time in seconds, 0 for no limit
+    */
+   public ForkedProcess(List<String> command, int timeout)
+   {
+      this.command = command;
+      this.timeout = timeout;
+   }
+
+   /**
+    * Run the process until it exits
+    *
+    * @param out  the consumer of the output lines
+    * @param err  the consumer of the error lines
+    * @return the exit code of the process
+    * @throws IOException if the process can't be started or exceeds the timeout
+    * @throws InterruptedException if the current thread is interrupted, the process being killed
+    */
+   public int execute(StreamConsumer out, StreamConsumer err) throws IOException, InterruptedException
+   {
+      registerShutdownHook();
+      final long start = System.nanoTime();
+      Process process = new ProcessBuilder(command).start();
+      RUNNING.add(process);
+      try
+      {
+         process.getOutputStream().close();
+         Thread outPumper = pump(process.getInputStream(), out, "jaxws-tools-fork-output");
+         Thread errPumper = pump(process.getErrorStream(), err, "jaxws-tools-fork-error");
+         boolean exited = true;
+         try
+         {
+            exited = waitFor(process);
+         }
+         catch (InterruptedException ie)
+         {
+            destroy(process);
+            throw ie;
+         }
+         if (!exited)
+         {
+            destroy(process);
+            process.waitFor();
+         }
+         outPumper.join(PUMP_JOIN_TIMEOUT);
+         errPumper.join(PUMP_JOIN_TIMEOUT);
+         if (!exited)
+         {
+            throw new IOException("The forked process did not complete within " + timeout + " s and has been killed");
+         }
+         exitCode = process.exitValue();
+         return exitCode;
+      }
+      finally
+      {
+         RUNNING.remove(process);
+         wallTime = System.nanoTime() - start;
+      }
+   }
+
+   /**
+    * Wait for the process to exit or to exceed the timeout. On JDK 9+ the CPU time of the
+    * process is sampled meanwhile, as it's not available anymore once the process is gone;
+    * the sampling interval grows from 100 ms to 1 s, so that long runs are barely polled.
+    *
+    * @return false if the process did not exit within the timeout
+    */
+   private boolean waitFor(Process process) throws InterruptedException
+   {
+      final boolean sampled = Util.getJVMMajorVersion() > 8;
+      if (!sampled)
+      {
+         if (timeout > 0)
+         {
+            return process.waitFor(timeout, TimeUnit.SECONDS);
+         }
+         process.waitFor();
+         return true;
+      }
+      final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+      long interval = MIN_CPU_SAMPLE_INTERVAL;
+      while (true)
+      {
+         long wait = interval;
+         if (timeout > 0)
+         {
+            wait = Math.min(wait, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+            if (wait <= 0)
+            {
+               return !process.isAlive();
+            }
+         }
+         long sample = ProcessTree.getCpuTime(process);
+         if (sample >= 0)
+         {
+            cpuTime = sample;
+         }
+         if (process.waitFor(wait, TimeUnit.MILLISECONDS))
+         {
+            return true;
+         }
+         interval = Math.min(interval * 2, MAX_CPU_SAMPLE_INTERVAL);
+      }
+   }
+
+   /**
+    * @return the exit code of the last execution, -1 if it did not complete
+    */
+   public int getExitCode()
+   {
+      return exitCode;
+   }
+
+   /**
+    * @return the wall time of the last execution in nanoseconds, -1 if it never ran
+    */
+   public long getWallTime()
+   {
+      return wallTime;
+   }
+
+   /**
+    * @return the CPU time of the last execution in nanoseconds, as last sampled before the
+    *         process exited (hence a lower bound); -1 if unknown (e.g. on JDK 8)
+    */
+   public long getCpuTime()
+   {
+      return cpuTime;
+   }
+
+   /**
+    * Start a thread consuming the lines of the given stream until its end
+    */
+   static Thread pump(final InputStream is, final StreamConsumer consumer, String name)
+   {
+      Thread pumper = new Thread(name)
+      {
+         @Override
+         public void run()
+         {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(is));
+            try
+            {
+               String line;
+               while ((line = reader.readLine()) != null)
+               {
+                  consumer.consumeLine(line);
+               }
+            }
+            catch (IOException ignored)
+            {
+               //the process is gone
+            }
+            finally
+            {
+               try
+               {
+                  reader.close();
+               }
+               catch (IOException ignored)
+               {
+                  //NOOP
+               }
+            }
+         }
+      };
+      pumper.setDaemon(true);
+      pumper.start();
+      return pumper;
+   }
+
+   /**
+    * Forcibly kill the given process and, where the JDK allows for that, its descendants
+    */
+   static void destroy(Process process)
+   {
+      if (Util.getJVMMajorVersion() > 8)
+      {
+         ProcessTree.destroyDescendants(process);
+      }
+      process.destroyForcibly();
+   }
+
+   private static void registerShutdownHook()
+   {
+      if (SHUTDOWN_HOOK_REGISTERED.compareAndSet(false, true))
+      {
+         Runtime.getRuntime().addShutdownHook(new Thread("jaxws-tools-fork-shutdown")
+         {
+            @Override
+            public void run()
+            {
+               for (Process process : RUNNING)
+               {
+                  ForkedProcess.destroy(process);
+               }
+            }
+         });
+      }
+   }
+
+   /**
+    * Access to the JDK 9+ process API, through reflection as the plugin is built for Java 8;
+    * kept apart for not looking it up on older JDKs
+    */
+   private static final class ProcessTree
+   {
+      private static final Method TO_HANDLE;
+      private static final Method DESCENDANTS;
+      private static final Method DESTROY_FORCIBLY;
+      private static final Method INFO;
+      private static final Method TOTAL_CPU_DURATION;
+      private static final Method TO_ARRAY;
+
+      static
+      {
+         try
+         {
+            Class<?> handle = Class.forName("java.lang.ProcessHandle");
+            Class<?> info = Class.forName("java.lang.ProcessHandle$Info");
+            TO_HANDLE = Process.class.getMethod("toHandle");
+            DESCENDANTS = handle.getMethod("descendants");
+            DESTROY_FORCIBLY = handle.getMethod("destroyForcibly");
+            INFO = handle.getMethod("info");
+            TOTAL_CPU_DURATION = info.getMethod("totalCpuDuration");
+            TO_ARRAY = Class.forName("java.util.stream.Stream").getMethod("toArray");
+         }
+         catch (Exception e)
+         {
+            throw new IllegalStateException(e);
+         }
+      }
+
+      static void destroyDescendants(Process process)
+      {
+         try
+         {
+            Object handle = TO_HANDLE.invoke(process);
+            for (Object descendant : (Object[])TO_ARRAY.invoke(DESCENDANTS.invoke(handle)))
+            {
+               DESTROY_FORCIBLY.invoke(descendant);
+            }
+         }
+         catch (Exception e)
+         {
+            //descendants not reachable, the process itself is still killed
+         }
+      }
+
+      @SuppressWarnings("unchecked")
+      static long getCpuTime(Process process)
+      {
+         try
+         {
+            Object info = INFO.invoke(TO_HANDLE.invoke(process));
+            Optional<Duration> cpu = (Optional<Duration>)TOTAL_CPU_DURATION.invoke(info);
+            return cpu.isPresent() ? cpu.get().toNanos() : -1;
+         }
+         catch (Exception e)
+         {
+            return -1;
+         }
+      }
+   }
+}
@@ -0,0 +1,97 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * An OutputStream splitting what's written to it into lines, which are passed to a
+ * StreamConsumer (e.g. a {@link MavenLogStreamConsumer}); used for routing the tool
+ * messages of a single execution to its own Maven log.
+ */
+public class LogOutputStream extends OutputStream
+{
+   private final StreamConsumer consumer;
+   private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+
+   public LogOutputStream(StreamConsumer consumer)
+   {
+      this.consumer = consumer;
+   }
+
+   @Override
+   public synchronized void write(int b)
+   {
+      if (b == '\n')
+      {
+         flushLine();
+      }
+      else
+      {
+         buffer.write(b);
+      }
+   }
+
+   @Override
+   public synchronized void write(byte[] b, int off, int len)
+   {
+      int start = off;
+      final int end = off + len;
+      for (int i = off; i < end; i++)
+      {
+         if (b[i] == '\n')
+         {
+            buffer.write(b, start, i - start);
+            flushLine();
+            start = i + 1;
+         }
+      }
+      buffer.write(b, start, end - start);
+   }
+
+   /**
+    * Pass the last (incomplete) line, if any, to the consumer
+    */
+   @Override
+   public synchronized void close()
+   {
+      if (buffer.size() > 0)
+      {
+         flushLine();
+      }
+   }
+
+   private void flushLine()
+   {
+      int size = buffer.size();
+      byte[] bytes = buffer.toByteArray();
+      if (size > 0 && bytes[size - 1] == '\r')
+      {
+         size--;
+      }
+      buffer.reset();
+      consumer.consumeLine(new String(bytes, 0, size));
+   }
+}
@@ -21,11 +21,14 @@
  */
 package org.jboss.ws.plugins.tools;
 
+import java.util.regex.Pattern;
+
 import org.apache.maven.plugin.logging.Log;
 import org.codehaus.plexus.util.cli.StreamConsumer;
 
 /**
- * A StreamConsumer that redirects logs to the maven log system
+ * A StreamConsumer that redirects logs to the maven log system;
+ * the tool warnings, on either stream, are logged as warnings.
  * 
  * @author alessio.soldano@jboss.com
  * @since 22-Sep-2010
@@ -36,6 +39,7 @@ public class MavenLogStreamConsumer implements StreamConsumer
    public static enum Type {
       OUTPUT, ERROR
    }
+   private static final Pattern WARNING = Pattern.compile("^\\s*(\\[WARNING\\]|\\[WARN\\]|WARNING:|WARN\\s|warning:)");
    private final Type type;
    private final Log log;
 
@@ -52,7 +56,11 @@ public class MavenLogStreamConsumer implements StreamConsumer
     */
    public void consumeLine(String line)
    {
-      if (Type.ERROR.equals(type))
+      if (WARNING.matcher(line).find())
+      {
+         log.warn(line);
+      }
+      else if (Type.ERROR.equals(type))
       {
          log.error(line);
       }
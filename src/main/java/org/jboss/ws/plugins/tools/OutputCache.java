@@ -0,0 +1,336 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Content-addressable cache of generated output trees, shared by all the builds
+ * running on the same machine.
+ *
+ * Each entry is a directory named after its key, containing the cached tree and
+ * a properties file describing it. Entries are published through an atomic
+ * rename and are never modified afterwards; the least recently used ones are
+ * evicted once the cache grows beyond its maximum size. An optional
+ * {@link RemoteOutputCache} can be used as a second tier shared by several machines.
+ */
+public class OutputCache
+{
+   private static final String CONTENT = "content";
+   private static final String ENTRY = "entry.properties";
+   private static final String SIZE = "size";
+   private static final String LOCK = ".lock";
+   private static final String TMP_PREFIX = "tmp-";
+   private static final long STALE_TMP_AGE = 60 * 60 * 1000L;
+
+   private final File root;
+   private final long maxSize;
+   private final RemoteOutputCache remote;
+
+   /**
+    * @param root     the cache directory
+    * @param maxSize  the maximum size of the cache in bytes
+    */
+   public OutputCache(File root, long maxSize)
+   {
+      this(root, maxSize, null);
+   }
+
+   /**
+    * @param root     the cache directory
+    * @param maxSize  the maximum size of the cache in bytes
+    * @param remote   the optional remote tier, looked up on local misses
+    */
+   public OutputCache(File root, long maxSize, RemoteOutputCache remote)
+   {
+      this.root = root;
+      this.maxSize = maxSize;
+      this.remote = remote;
+   }
+
+   /**
+    * Copy the tree cached with the given key into the target directory, fetching
+    * it from the remote tier (if any) when missing locally.
+    *
+    * @param key        the entry key
+    * @param targetDir  the directory to restore the cached tree into
+    * @return true if the tree has been restored, false if there's no usable entry for the given key
+    */
+   public boolean restore(String key, File targetDir)
+   {
+      if (restoreLocal(key, targetDir))
+      {
+         return true;
+      }
+      if (remote == null)
+      {
+         return false;
+      }
+      File tmp = new File(root, TMP_PREFIX + UUID.randomUUID());
+      try
+      {
+         if (!remote.fetch(key, new File(tmp, CONTENT)))
+         {
+            return false;
+         }
+         publish(key, tmp);
+      }
+      catch (IOException ioe)
+      {
+         return false;
+      }
+      finally
+      {
+         deleteQuietly(tmp);
+      }
+      return restoreLocal(key, targetDir);
+   }
+
+   private boolean restoreLocal(String key, File targetDir)
+   {
+      File entry = new File(root, key);
+      if (!isComplete(entry))
+      {
+         return false;
+      }
+      try
+      {
+         FileUtils.copyDirectoryStructure(new File(entry, CONTENT), targetDir);
+      }
+      catch (IOException ioe)
+      {
+         return false;
+      }
+      //an entry evicted while being copied might have been restored partially only
+      return new File(entry, ENTRY).setLastModified(System.currentTimeMillis());
+   }
+
+   /**
+    * @return true if the given entry has both its descriptor and its content
+    */
+   private static boolean isComplete(File entry)
+   {
+      return new File(entry, ENTRY).isFile() && new File(entry, CONTENT).isDirectory();
+   }
+
+   /**
+    * Add the given tree to the cache (and to the remote tier, if any), unless an entry
+    * with the same key already exists, and evict the least recently used entries if
+    * the cache is full.
+    *
+    * @param key        the entry key
+    * @param sourceDir  the tree to cache
+    */
+   public void store(String key, File sourceDir) throws IOException
+   {
+      if (isComplete(new File(root, key)))
+      {
+         return;
+      }
+      File tmp = new File(root, TMP_PREFIX + UUID.randomUUID());
+      try
+      {
+         File content = new File(tmp, CONTENT);
+         content.mkdirs();
+         FileUtils.copyDirectoryStructure(sourceDir, content);
+         publish(key, tmp);
+      }
+      finally
+      {
+         deleteQuietly(tmp);
+      }
+      if (remote != null)
+      {
+         remote.publish(key, sourceDir);
+      }
+   }
+
+   /**
+    * Publish the entry prepared in the given temporary directory and evict
+    * the least recently used entries if the cache is full.
+    */
+   private void publish(String key, File tmp) throws IOException
+   {
+      File entry = new File(root, key);
+      if (entry.exists() && !isComplete(entry))
+      {
+         //leftover of an interrupted eviction or corrupted entry
+         delete(entry);
+      }
+      File content = new File(tmp, CONTENT);
+      content.mkdirs();
+      Properties props = new Properties();
+      props.setProperty(SIZE, String.valueOf(FileUtils.sizeOfDirectory(content)));
+      OutputStream os = new FileOutputStream(new File(tmp, ENTRY));
+      try
+      {
+         props.store(os, null);
+      }
+      finally
+      {
+         os.close();
+      }
+      //fails if a concurrent build stored the same entry meanwhile, which is fine
+      tmp.renameTo(entry);
+      evict();
+   }
+
+   private static void deleteQuietly(File dir)
+   {
+      try
+      {
+         if (dir.exists())
+         {
+            FileUtils.deleteDirectory(dir);
+         }
+      }
+      catch (IOException ignored)
+      {
+         //cleaned up by the next eviction
+      }
+   }
+
+   /**
+    * Remove the least recently used entries until the cache fits its maximum size;
+    * the cache directory is locked meanwhile to prevent concurrent evictions.
+    */
+   private void evict() throws IOException
+   {
+      synchronized (OutputCache.class)
+      {
+         RandomAccessFile raf = new RandomAccessFile(new File(root, LOCK), "rw");
+         try
+         {
+            FileLock lock = raf.getChannel().lock();
+            try
+            {
+               evictUnlocked();
+            }
+            finally
+            {
+               lock.release();
+            }
+         }
+         finally
+         {
+            raf.close();
+         }
+      }
+   }
+
+   private void evictUnlocked() throws IOException
+   {
+      File[] children = root.listFiles();
+      if (children == null)
+      {
+         return;
+      }
+      List<File> markers = new ArrayList<File>();
+      long now = System.currentTimeMillis();
+      for (File child : children)
+      {
+         if (!child.isDirectory())
+         {
+            continue;
+         }
+         if (child.getName().startsWith(TMP_PREFIX))
+         {
+            if (now - child.lastModified() > STALE_TMP_AGE)
+            {
+               FileUtils.deleteDirectory(child);
+            }
+            continue;
+         }
+         File marker = new File(child, ENTRY);
+         if (marker.isFile())
+         {
+            markers.add(marker);
+         }
+      }
+      Collections.sort(markers, new Comparator<File>()
+      {
+         public int compare(File f1, File f2)
+         {
+            long l1 = f1.lastModified();
+            long l2 = f2.lastModified();
+            return l1 > l2 ? -1 : (l1 == l2 ? 0 : 1);
+         }
+      });
+      long size = 0;
+      for (File marker : markers)
+      {
+         size += getSize(marker);
+         if (size > maxSize)
+         {
+            delete(marker.getParentFile());
+         }
+      }
+   }
+
+   private static long getSize(File marker)
+   {
+      try
+      {
+         Properties props = new Properties();
+         InputStream is = new FileInputStream(marker);
+         try
+         {
+            props.load(is);
+         }
+         finally
+         {
+            is.close();
+         }
+         return Long.parseLong(props.getProperty(SIZE, "0"));
+      }
+      catch (Exception e)
+      {
+         return 0;
+      }
+   }
+
+   /**
+    * Delete the given entry; the entry is moved away first, so that restores
+    * in progress fail instead of silently copying a partial tree.
+    */
+   private void delete(File entry) throws IOException
+   {
+      new File(entry, ENTRY).delete();
+      File tmp = new File(root, TMP_PREFIX + UUID.randomUUID());
+      FileUtils.deleteDirectory(entry.renameTo(tmp) ? tmp : entry);
+   }
+}
@@ -0,0 +1,175 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Publishes the files generated into a staging directory to the actual target directory,
+ * writing only the files whose content changed: the unchanged ones keep their timestamp,
+ * so that the incremental compilation only recompiles what actually changed. The files
+ * generated by a previous run and not generated anymore can then be deleted.
+ */
+public class OutputSync
+{
+   private static final String SEPARATOR = "\n";
+
+   private final File target;
+   private final List<String> files = new ArrayList<String>();
+   private int written;
+   private int unchanged;
+   private int deleted;
+
+   private OutputSync(File target)
+   {
+      this.target = target;
+   }
+
+   /**
+    * Move the files of the staging directory whose content differs from the one of the
+    * corresponding target file (if any) to the target directory.
+    *
+    * @param staging  the staging directory, whose content is consumed
+    * @param target   the target directory
+    * @return the outcome, for deleting obsolete files
+    */
+   public static OutputSync sync(File staging, File target) throws IOException
+   {
+      OutputSync sync = new OutputSync(target);
+      if (!staging.isDirectory())
+      {
+         return sync;
+      }
+      @SuppressWarnings("unchecked")
+      List<String> names = FileUtils.getFileNames(staging, "**", null, false);
+      Collections.sort(names);
+      for (String name : names)
+      {
+         File from = new File(staging, name);
+         File to = new File(target, name);
+         if (to.isFile() && to.length() == from.length() && FileUtils.contentEquals(from, to))
+         {
+            sync.unchanged++;
+         }
+         else
+         {
+            to.getParentFile().mkdirs();
+            to.delete();
+            if (!from.renameTo(to))
+            {
+               FileUtils.copyFile(from, to);
+            }
+            sync.written++;
+         }
+         sync.files.add(name.replace(File.separatorChar, '/'));
+      }
+      return sync;
+   }
+
+   /**
+    * Delete the given files of the target directory, pruning the directories left empty
+    *
+    * @param obsolete  the paths of the files to delete, relative to the target directory
+    */
+   public void delete(Collection<String> obsolete)
+   {
+      for (String name : obsolete)
+      {
+         File file = new File(target, name);
+         if (file.isFile() && file.delete())
+         {
+            deleted++;
+            File dir = file.getParentFile();
+            while (!dir.equals(target) && dir.delete())
+            {
+               dir = dir.getParentFile();
+            }
+         }
+      }
+   }
+
+   /**
+    * @return the paths of the published files, relative to the target directory and '/' separated
+    */
+   public List<String> getFiles()
+   {
+      return files;
+   }
+
+   public int getWritten()
+   {
+      return written;
+   }
+
+   public int getUnchanged()
+   {
+      return unchanged;
+   }
+
+   public int getDeleted()
+   {
+      return deleted;
+   }
+
+   /**
+    * @return the given file list as a single string, e.g. for storing it in the {@link BuildState}
+    */
+   public static String join(List<String> files)
+   {
+      StringBuilder sb = new StringBuilder();
+      for (String f : files)
+      {
+         if (sb.length() > 0)
+         {
+            sb.append(SEPARATOR);
+         }
+         sb.append(f);
+      }
+      return sb.toString();
+   }
+
+   /**
+    * @return the file list stored through {@link #join(List)}
+    */
+   public static List<String> split(String files)
+   {
+      if (files == null || files.length() == 0)
+      {
+         return Collections.emptyList();
+      }
+      return Arrays.asList(files.split(SEPARATOR));
+   }
+
+   @Override
+   public String toString()
+   {
+      return written + " file(s) written, " + unchanged + " unchanged, " + deleted + " deleted";
+   }
+}
@@ -0,0 +1,253 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * A Log for a single tool invocation in quiet mode: the info and error messages are kept in a
+ * bounded ring buffer instead of being logged. When the invocation succeeds only a summary line
+ * is logged; when it fails, the buffer is written to the actual log along with the tail of the
+ * error messages that did not fit in it. Warnings and debug messages go straight to the actual log.
+ */
+public class QuietLog implements Log
+{
+   /** the number of (most recent) lines replayed on failure */
+   public static final int MAX_LINES = 1000;
+   /** the number of (most recent) error lines replayed on failure, even when older than the replayed lines */
+   public static final int MAX_ERROR_LINES = 100;
+
+   private static final class Entry
+   {
+      private final long index;
+      private final boolean error;
+      private final CharSequence message;
+      private final Throwable throwable;
+
+      Entry(long index, boolean error, CharSequence message, Throwable throwable)
+      {
+         this.index = index;
+         this.error = error;
+         this.message = message;
+         this.throwable = throwable;
+      }
+
+      void writeTo(Log log)
+      {
+         if (error)
+         {
+            if (throwable == null)
+            {
+               log.error(message);
+            }
+            else
+            {
+               log.error(message, throwable);
+            }
+         }
+         else
+         {
+            if (throwable == null)
+            {
+               log.info(message);
+            }
+            else
+            {
+               log.info(message, throwable);
+            }
+         }
+      }
+   }
+
+   private final Log target;
+   private final String subject;
+   private final Deque<Entry> entries = new ArrayDeque<Entry>();
+   private final Deque<Entry> errorTail = new ArrayDeque<Entry>();
+   private long lines;
+   private int warnings;
+
+   /**
+    * @param target   the actual log
+    * @param subject  what's being run, for the summary line (e.g. "wsconsume of service.wsdl")
+    */
+   public QuietLog(Log target, String subject)
+   {
+      this.target = target;
+      this.subject = subject;
+   }
+
+   /**
+    * Complete the invocation, logging the summary line or the buffered messages
+    *
+    * @param success  whether the invocation succeeded
+    */
+   public synchronized void complete(boolean success)
+   {
+      final String counts = lines + " line(s) of tool output" + (warnings > 0 ? ", " + warnings + " warning(s)" : "");
+      if (success)
+      {
+         target.info("Completed " + subject + " (" + counts + ")");
+      }
+      else
+      {
+         synchronized (target)
+         {
+            target.error("Failed " + subject + " (" + counts + "), tool output follows:");
+            final long first = entries.isEmpty() ? lines : entries.peekFirst().index;
+            if (first > 0)
+            {
+               target.error("[" + first + " earlier line(s) not kept]");
+            }
+            for (Entry e : entries)
+            {
+               e.writeTo(target);
+            }
+            boolean header = false;
+            for (Entry e : errorTail)
+            {
+               if (e.index < first)
+               {
+                  if (!header)
+                  {
+                     target.error("Last error lines:");
+                     header = true;
+                  }
+                  e.writeTo(target);
+               }
+            }
+         }
+      }
+      entries.clear();
+      errorTail.clear();
+      lines = 0;
+      warnings = 0;
+   }
+
+   private synchronized void add(boolean error, CharSequence message, Throwable throwable)
+   {
+      Entry entry = new Entry(lines++, error, message, throwable);
+      if (entries.size() == MAX_LINES)
+      {
+         entries.removeFirst();
+      }
+      entries.addLast(entry);
+      if (error)
+      {
+         if (errorTail.size() == MAX_ERROR_LINES)
+         {
+            errorTail.removeFirst();
+         }
+         errorTail.addLast(entry);
+      }
+   }
+
+   private synchronized void countWarning()
+   {
+      warnings++;
+   }
+
+   public boolean isDebugEnabled()
+   {
+      return target.isDebugEnabled();
+   }
+
+   public void debug(CharSequence content)
+   {
+      target.debug(content);
+   }
+
+   public void debug(CharSequence content, Throwable error)
+   {
+      target.debug(content, error);
+   }
+
+   public void debug(Throwable error)
+   {
+      target.debug(error);
+   }
+
+   public boolean isInfoEnabled()
+   {
+      return target.isInfoEnabled();
+   }
+
+   public void info(CharSequence content)
+   {
+      add(false, content, null);
+   }
+
+   public void info(CharSequence content, Throwable error)
+   {
+      add(false, content, error);
+   }
+
+   public void info(Throwable error)
+   {
+      add(false, "", error);
+   }
+
+   public boolean isWarnEnabled()
+   {
+      return target.isWarnEnabled();
+   }
+
+   public void warn(CharSequence content)
+   {
+      countWarning();
+      target.warn(content);
+   }
+
+   public void warn(CharSequence content, Throwable error)
+   {
+      countWarning();
+      target.warn(content, error);
+   }
+
+   public void warn(Throwable error)
+   {
+      countWarning();
+      target.warn(error);
+   }
+
+   public boolean isErrorEnabled()
+   {
+      return target.isErrorEnabled();
+   }
+
+   public void error(CharSequence content)
+   {
+      add(true, content, null);
+   }
+
+   public void error(CharSequence content, Throwable error)
+   {
+      add(true, content, error);
+   }
+
+   public void error(Throwable error)
+   {
+      add(true, "", error);
+   }
+}
@@ -0,0 +1,465 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Remote tier of the {@link OutputCache}, shared by several machines (e.g. CI agents)
+ * either through a plain HTTP server supporting GET / PUT or through a shared directory.
+ *
+ * Each entry is stored as a zip blob named after the entry key and the SHA-256 hash of
+ * its content, and a small <code>&lt;key&gt;.sha256</code> pointer holding the hash, which
+ * is published last and verified when fetching the blob. Any failure is logged and
+ * disables the remote cache for the rest of the execution, so that a dead cache never
+ * fails (nor slows down) the build.
+ */
+public class RemoteOutputCache
+{
+   private static final Charset UTF_8 = Charset.forName("UTF-8");
+   private static final int CONNECT_TIMEOUT = 5000;
+   private static final int READ_TIMEOUT = 30000;
+   //fixed zip entries time, for the same tree to always result in the same blob
+   private static final long ZIP_TIME = 315532800000L;
+
+   private final String location;
+   private final File directory;
+   private final boolean readOnly;
+   private final Log log;
+   private volatile boolean disabled;
+
+   /**
+    * @param location  the base http(s) URL or the path / file URL of the shared directory
+    * @param readOnly  whether or not to only fetch entries, without publishing new ones
+    * @param log       the log for reporting failures
+    */
+   public RemoteOutputCache(String location, boolean readOnly, Log log)
+   {
+      String l = location.endsWith("/") ? location.substring(0, location.length() - 1) : location;
+      this.location = l;
+      if (l.startsWith("http://") || l.startsWith("https://"))
+      {
+         this.directory = null;
+      }
+      else
+      {
+         this.directory = l.startsWith("file:") ? new File(URI.create(l)) : new File(l);
+      }
+      this.readOnly = readOnly;
+      this.log = log;
+   }
+
+   /**
+    * Fetch the entry with the given key and extract it into the target directory
+    *
+    * @param key        the entry key
+    * @param targetDir  the directory to extract the cached tree into
+    * @return true if the entry has been fetched, false if it's missing, corrupted or the cache is not available
+    */
+   public boolean fetch(String key, File targetDir)
+   {
+      if (disabled)
+      {
+         return false;
+      }
+      File blob = null;
+      try
+      {
+         String hash = readPointer(key);
+         if (hash == null)
+         {
+            log.debug("Remote cache miss: " + key);
+            return false;
+         }
+         blob = File.createTempFile("jaxws-tools-cache-", ".zip");
+         InputStream is = get(key + "-" + hash + ".zip");
+         if (is == null)
+         {
+            log.debug("Remote cache miss: " + key);
+            return false;
+         }
+         MessageDigest digest = newDigest();
+         copy(new DigestInputStream(is, digest), blob);
+         if (!hash.equals(Fingerprint.toHex(digest.digest())))
+         {
+            log.warn("Ignoring corrupted remote cache entry " + key);
+            return false;
+         }
+         unzip(blob, targetDir);
+         return true;
+      }
+      catch (IOException ioe)
+      {
+         disable(ioe);
+         return false;
+      }
+      finally
+      {
+         if (blob != null)
+         {
+            blob.delete();
+         }
+      }
+   }
+
+   /**
+    * Publish the given tree with the given key, unless the cache is read-only
+    *
+    * @param key        the entry key
+    * @param sourceDir  the tree to publish
+    */
+   public void publish(String key, File sourceDir)
+   {
+      if (disabled || readOnly)
+      {
+         return;
+      }
+      File blob = null;
+      try
+      {
+         blob = File.createTempFile("jaxws-tools-cache-", ".zip");
+         MessageDigest digest = newDigest();
+         zip(sourceDir, blob, digest);
+         String hash = Fingerprint.toHex(digest.digest());
+         put(key + "-" + hash + ".zip", blob);
+         File pointer = File.createTempFile("jaxws-tools-cache-", ".sha256");
+         try
+         {
+            FileUtils.fileWrite(pointer.getAbsolutePath(), "UTF-8", hash);
+            put(key + ".sha256", pointer);
+         }
+         finally
+         {
+            pointer.delete();
+         }
+      }
+      catch (IOException ioe)
+      {
+         disable(ioe);
+      }
+      finally
+      {
+         if (blob != null)
+         {
+            blob.delete();
+         }
+      }
+   }
+
+   public boolean isDisabled()
+   {
+      return disabled;
+   }
+
+   private void disable(IOException ioe)
+   {
+      if (!disabled)
+      {
+         disabled = true;
+         log.warn("Remote cache " + location + " not available, disabling it: " + ioe);
+      }
+   }
+
+   private String readPointer(String key) throws IOException
+   {
+      InputStream is = get(key + ".sha256");
+      if (is == null)
+      {
+         return null;
+      }
+      try
+      {
+         BufferedReader reader = new BufferedReader(new InputStreamReader(is, UTF_8));
+         String hash = reader.readLine();
+         return hash == null || !hash.trim().matches("[0-9a-f]{64}") ? null : hash.trim();
+      }
+      finally
+      {
+         is.close();
+      }
+   }
+
+   /**
+    * @return the stream of the given resource or null if it does not exist
+    */
+   private InputStream get(String name) throws IOException
+   {
+      if (directory != null)
+      {
+         File file = new File(directory, name);
+         return file.isFile() ? new FileInputStream(file) : null;
+      }
+      HttpURLConnection conn = openConnection(name);
+      int status = conn.getResponseCode();
+      if (status == HttpURLConnection.HTTP_OK)
+      {
+         return conn.getInputStream();
+      }
+      release(conn);
+      if (status == HttpURLConnection.HTTP_NOT_FOUND)
+      {
+         return null;
+      }
+      throw new IOException("GET " + name + " returned " + status);
+   }
+
+   private void put(String name, File file) throws IOException
+   {
+      if (directory != null)
+      {
+         //write to a temporary file first, for readers to never see partial content
+         directory.mkdirs();
+         File tmp = new File(directory, "." + UUID.randomUUID() + ".tmp");
+         try
+         {
+            FileUtils.copyFile(file, tmp);
+            File target = new File(directory, name);
+            if (!tmp.renameTo(target) && !target.isFile())
+            {
+               throw new IOException("Could not create " + target);
+            }
+         }
+         finally
+         {
+            tmp.delete();
+         }
+         return;
+      }
+      try
+      {
+         httpPut(name, file);
+      }
+      catch (SocketException se)
+      {
+         //the server might have closed a pooled keep-alive connection, which is not retried automatically
+         httpPut(name, file);
+      }
+   }
+
+   private void httpPut(String name, File file) throws IOException
+   {
+      HttpURLConnection conn = openConnection(name);
+      conn.setRequestMethod("PUT");
+      conn.setDoOutput(true);
+      conn.setFixedLengthStreamingMode((int)file.length());
+      conn.setRequestProperty("Content-Type", "application/octet-stream");
+      OutputStream os = conn.getOutputStream();
+      try
+      {
+         InputStream is = new FileInputStream(file);
+         try
+         {
+            copy(is, os);
+         }
+         finally
+         {
+            is.close();
+         }
+      }
+      finally
+      {
+         os.close();
+      }
+      int status = conn.getResponseCode();
+      release(conn);
+      if (status / 100 != 2)
+      {
+         throw new IOException("PUT " + name + " returned " + status);
+      }
+   }
+
+   /**
+    * Consume the response body (if any), for the connection to be reused
+    */
+   private static void release(HttpURLConnection conn) throws IOException
+   {
+      InputStream is = conn.getResponseCode() < 400 ? conn.getInputStream() : conn.getErrorStream();
+      if (is != null)
+      {
+         try
+         {
+            byte[] buffer = new byte[1024];
+            while (is.read(buffer) != -1)
+            {
+               //discard
+            }
+         }
+         finally
+         {
+            is.close();
+         }
+      }
+   }
+
+   private HttpURLConnection openConnection(String name) throws IOException
+   {
+      URL url = new URL(location + "/" + name);
+      HttpURLConnection conn = (HttpURLConnection)url.openConnection();
+      conn.setConnectTimeout(CONNECT_TIMEOUT);
+      conn.setReadTimeout(READ_TIMEOUT);
+      conn.setUseCaches(false);
+      if (url.getUserInfo() != null)
+      {
+         String credentials = Base64.getEncoder().encodeToString(url.getUserInfo().getBytes(UTF_8));
+         conn.setRequestProperty("Authorization", "Basic " + credentials);
+      }
+      return conn;
+   }
+
+   @SuppressWarnings("unchecked")
+   private static void zip(File sourceDir, File zip, MessageDigest digest) throws IOException
+   {
+      //sorted entries with a fixed time
+      List<String> names = FileUtils.getFileNames(sourceDir, null, null, false);
+      Collections.sort(names);
+      OutputStream os = new DigestOutputStream(new FileOutputStream(zip), digest);
+      ZipOutputStream zos = new ZipOutputStream(os);
+      try
+      {
+         for (String name : names)
+         {
+            ZipEntry entry = new ZipEntry(name.replace(File.separatorChar, '/'));
+            entry.setTime(ZIP_TIME);
+            zos.putNextEntry(entry);
+            InputStream is = new FileInputStream(new File(sourceDir, name));
+            try
+            {
+               copy(is, zos);
+            }
+            finally
+            {
+               is.close();
+            }
+            zos.closeEntry();
+         }
+      }
+      finally
+      {
+         zos.close();
+      }
+   }
+
+   private static void unzip(File zip, File targetDir) throws IOException
+   {
+      String targetPath = targetDir.getCanonicalPath() + File.separator;
+      ZipInputStream zis = new ZipInputStream(new FileInputStream(zip));
+      try
+      {
+         ZipEntry entry;
+         while ((entry = zis.getNextEntry()) != null)
+         {
+            File file = new File(targetDir, entry.getName());
+            if (!file.getCanonicalPath().startsWith(targetPath))
+            {
+               throw new IOException("Invalid cache entry " + entry.getName());
+            }
+            if (entry.isDirectory())
+            {
+               file.mkdirs();
+               continue;
+            }
+            file.getParentFile().mkdirs();
+            OutputStream os = new FileOutputStream(file);
+            try
+            {
+               copy(zis, os);
+            }
+            finally
+            {
+               os.close();
+            }
+         }
+      }
+      finally
+      {
+         zis.close();
+      }
+   }
+
+   private static void copy(InputStream is, File file) throws IOException
+   {
+      try
+      {
+         OutputStream os = new FileOutputStream(file);
+         try
+         {
+            copy(is, os);
+         }
+         finally
+         {
+            os.close();
+         }
+      }
+      finally
+      {
+         is.close();
+      }
+   }
+
+   private static void copy(InputStream is, OutputStream os) throws IOException
+   {
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = is.read(buffer)) != -1)
+      {
+         os.write(buffer, 0, read);
+      }
+   }
+
+   private static MessageDigest newDigest()
+   {
+      try
+      {
+         return MessageDigest.getInstance("SHA-256");
+      }
+      catch (NoSuchAlgorithmException e)
+      {
+         throw new IllegalStateException(e);
+      }
+   }
+}
@@ -0,0 +1,327 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Normalizes generated outputs, so that identical inputs result in byte-identical files
+ * and the content-hash based caches downstream get hits:
+ * <ul>
+ * <li>the generation timestamps in sources (JAXB and CXF header comments, <code>@Generated</code>
+ * dates) are pinned to the configured output timestamp, or stripped when there's none;</li>
+ * <li>the classes listed in <code>@XmlSeeAlso</code> are sorted;</li>
+ * <li>the top-level declarations of the XML schemas (in xsd files and wsdl types) are sorted
+ * by kind and name, imports and includes staying first;</li>
+ * <li>line separators are turned into <code>\n</code>.</li>
+ * </ul>
+ * Members of the generated classes are left untouched, as their order is meaningful to JAXB.
+ */
+public class ReproducibleOutput
+{
+   private static final String XSD_NS = XMLConstants.W3C_XML_SCHEMA_NS_URI;
+   private static final List<String> XSD_DECLARATIONS = Arrays.asList("attribute", "attributeGroup", "complexType", "element",
+         "group", "notation", "simpleType");
+   private static final Pattern ISO_TIMESTAMP_LINE = Pattern.compile("(?m)^([ \\t]*\\*[ \\t]*)\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}(\\.\\d+)?(Z|[+-]\\d{2}:?\\d{2})?[ \\t]*\\n");
+   private static final Pattern JAXB_TIMESTAMP_LINE = Pattern.compile("(?m)^([ \\t]*// Generated on: ).*\\n");
+   private static final Pattern GENERATED_DATE = Pattern.compile("(@(?:javax\\.annotation\\.|jakarta\\.annotation\\.|javax\\.annotation\\.processing\\.)?Generated\\s*\\([^)]*?)(,\\s*)?date\\s*=\\s*\"[^\"]*\"(\\s*,)?");
+   private static final Pattern XML_SEE_ALSO = Pattern.compile("@XmlSeeAlso\\(\\{([^}]*)\\}\\)");
+
+   private final String timestamp;
+
+   /**
+    * @param outputTimestamp  the timestamp to pin in the outputs, null for stripping timestamps
+    */
+   public ReproducibleOutput(Instant outputTimestamp)
+   {
+      this.timestamp = outputTimestamp != null ? DateTimeFormatter.ISO_INSTANT.format(outputTimestamp) : null;
+   }
+
+   /**
+    * Parse an output timestamp the way Maven does for <code>project.build.outputTimestamp</code>:
+    * either an ISO-8601 date time with offset or a number of seconds since the epoch.
+    *
+    * @param value  the configured value
+    * @return the timestamp, null if the value is not set or disables the timestamp (single character)
+    * @throws IllegalArgumentException if the value can't be parsed
+    */
+   public static Instant parseOutputTimestamp(String value)
+   {
+      if (value == null || value.trim().length() < 2 || value.startsWith("${"))
+      {
+         return null;
+      }
+      final String v = value.trim();
+      try
+      {
+         if (v.matches("\\d+"))
+         {
+            return Instant.ofEpochSecond(Long.parseLong(v));
+         }
+         return OffsetDateTime.parse(v).toInstant();
+      }
+      catch (DateTimeParseException dtpe)
+      {
+         throw new IllegalArgumentException("Invalid output timestamp: " + value + ", expected an ISO-8601 date time with offset"
+               + " (e.g. 2023-01-01T00:00:00Z) or a number of seconds since the epoch");
+      }
+   }
+
+   /**
+    * Normalize the files of the given directory in place
+    *
+    * @param directory  the directory, e.g. a staging directory
+    * @return the number of rewritten files
+    */
+   public int normalize(File directory) throws IOException
+   {
+      if (!directory.isDirectory())
+      {
+         return 0;
+      }
+      int count = 0;
+      @SuppressWarnings("unchecked")
+      List<String> names = FileUtils.getFileNames(directory, "**/*.java,**/*.wsdl,**/*.xsd,**/*.xml", null, false);
+      Collections.sort(names);
+      for (String name : names)
+      {
+         File file = new File(directory, name);
+         byte[] original = Files.readAllBytes(file.toPath());
+         byte[] normalized = name.endsWith(".java") ? normalizeJava(original) : normalizeXml(original);
+         if (!Arrays.equals(original, normalized))
+         {
+            Files.write(file.toPath(), normalized);
+            count++;
+         }
+      }
+      return count;
+   }
+
+   byte[] normalizeJava(byte[] content)
+   {
+      //sources are ASCII compatible, whatever the encoding; ISO-8859-1 round-trips any byte
+      final Charset charset = Charset.forName("ISO-8859-1");
+      String s = new String(content, charset).replace("\r\n", "\n");
+      s = replaceLines(ISO_TIMESTAMP_LINE, s);
+      s = replaceLines(JAXB_TIMESTAMP_LINE, s);
+      Matcher m = GENERATED_DATE.matcher(s);
+      StringBuffer sb = new StringBuffer();
+      while (m.find())
+      {
+         String replacement;
+         if (timestamp != null)
+         {
+            replacement = m.group(1) + (m.group(2) != null ? m.group(2) : "") + "date = \"" + timestamp + "\"" + (m.group(3) != null ? m.group(3) : "");
+         }
+         else
+         {
+            //drop the attribute along with one of its separators
+            replacement = m.group(1) + (m.group(2) != null && m.group(3) != null ? m.group(2) : "");
+         }
+         m.appendReplacement(sb, Matcher.quoteReplacement(replacement));
+      }
+      m.appendTail(sb);
+      s = sb.toString();
+      m = XML_SEE_ALSO.matcher(s);
+      sb = new StringBuffer();
+      while (m.find())
+      {
+         List<String> classes = new ArrayList<String>();
+         for (String c : m.group(1).split(","))
+         {
+            if (c.trim().length() > 0)
+            {
+               classes.add(c.trim());
+            }
+         }
+         Collections.sort(classes);
+         StringBuilder list = new StringBuilder();
+         for (String c : classes)
+         {
+            list.append(list.length() > 0 ? ", " : "").append(c);
+         }
+         m.appendReplacement(sb, Matcher.quoteReplacement("@XmlSeeAlso({" + list + "})"));
+      }
+      m.appendTail(sb);
+      return sb.toString().getBytes(charset);
+   }
+
+   private String replaceLines(Pattern pattern, String s)
+   {
+      Matcher m = pattern.matcher(s);
+      StringBuffer sb = new StringBuffer();
+      while (m.find())
+      {
+         m.appendReplacement(sb, timestamp != null ? Matcher.quoteReplacement(m.group(1) + timestamp + "\n") : "");
+      }
+      m.appendTail(sb);
+      return sb.toString();
+   }
+
+   byte[] normalizeXml(byte[] content) throws IOException
+   {
+      byte[] data = normalizeLineSeparators(content);
+      Document doc;
+      try
+      {
+         DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+         factory.setNamespaceAware(true);
+         factory.setExpandEntityReferences(false);
+         factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+         DocumentBuilder builder = factory.newDocumentBuilder();
+         doc = builder.parse(new ByteArrayInputStream(data));
+      }
+      catch (Exception e)
+      {
+         //not well-formed, nothing to sort
+         return data;
+      }
+      boolean changed = false;
+      NodeList schemas = doc.getElementsByTagNameNS(XSD_NS, "schema");
+      for (int i = 0; i < schemas.getLength(); i++)
+      {
+         changed |= sortDeclarations((Element)schemas.item(i));
+      }
+      if (!changed)
+      {
+         return data;
+      }
+      try
+      {
+         Transformer transformer = TransformerFactory.newInstance().newTransformer();
+         String encoding = doc.getXmlEncoding() != null ? doc.getXmlEncoding() : "UTF-8";
+         transformer.setOutputProperty(OutputKeys.ENCODING, encoding);
+         //the declaration is written here, as the transformer doesn't end it with a line separator
+         transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+         StringWriter writer = new StringWriter();
+         if (new String(data, 0, Math.min(5, data.length), "ISO-8859-1").equals("<?xml"))
+         {
+            writer.write("<?xml version=\"1.0\" encoding=\"" + encoding + "\"?>\n");
+         }
+         transformer.transform(new DOMSource(doc), new StreamResult(writer));
+         return normalizeLineSeparators(writer.toString().getBytes(encoding));
+      }
+      catch (Exception e)
+      {
+         throw new IOException("Could not write the normalized document", e);
+      }
+   }
+
+   private static byte[] normalizeLineSeparators(byte[] content)
+   {
+      final Charset charset = Charset.forName("ISO-8859-1");
+      String s = new String(content, charset);
+      return s.indexOf('\r') < 0 ? content : s.replace("\r\n", "\n").getBytes(charset);
+   }
+
+   /**
+    * Sort the top-level declarations of the given schema, each of them along with the
+    * whitespace and comments preceding it
+    *
+    * @return true if the order changed
+    */
+   private static boolean sortDeclarations(Element schema)
+   {
+      List<List<Node>> chunks = new ArrayList<List<Node>>();
+      List<Node> pending = new ArrayList<Node>();
+      for (Node n = schema.getFirstChild(); n != null; n = n.getNextSibling())
+      {
+         pending.add(n);
+         if (n.getNodeType() == Node.ELEMENT_NODE)
+         {
+            chunks.add(pending);
+            pending = new ArrayList<Node>();
+         }
+      }
+      List<List<Node>> sorted = new ArrayList<List<Node>>(chunks);
+      Collections.sort(sorted, new Comparator<List<Node>>()
+      {
+         public int compare(List<Node> c1, List<Node> c2)
+         {
+            Element e1 = (Element)c1.get(c1.size() - 1);
+            Element e2 = (Element)c2.get(c2.size() - 1);
+            boolean d1 = isDeclaration(e1);
+            boolean d2 = isDeclaration(e2);
+            if (d1 != d2)
+            {
+               return d1 ? 1 : -1;
+            }
+            if (!d1)
+            {
+               //keep imports, includes and annotations in their original order
+               return 0;
+            }
+            int result = e1.getLocalName().compareTo(e2.getLocalName());
+            return result != 0 ? result : e1.getAttribute("name").compareTo(e2.getAttribute("name"));
+         }
+      });
+      if (sorted.equals(chunks))
+      {
+         return false;
+      }
+      Node trailing = pending.isEmpty() ? null : pending.get(0);
+      for (List<Node> chunk : sorted)
+      {
+         for (Node n : chunk)
+         {
+            schema.insertBefore(n, trailing);
+         }
+      }
+      return true;
+   }
+
+   private static boolean isDeclaration(Element e)
+   {
+      return XSD_NS.equals(e.getNamespaceURI()) && XSD_DECLARATIONS.contains(e.getLocalName());
+   }
+}
@@ -32,6 +32,7 @@ import org.apache.maven.artifact.Artifact;
  * @goal wsconsume-test
  * @phase generate-test-sources
  * @requiresDependencyResolution test
+ * @threadSafe
  * @description JBossWS WSConsume (Test) Maven Plugin.
  *
  * @author alessio.soldano@jboss.com
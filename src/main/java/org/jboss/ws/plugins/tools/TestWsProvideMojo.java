@@ -32,6 +32,7 @@ import org.apache.maven.artifact.Artifact;
  * @goal wsprovide-test
  * @phase process-test-classes
  * @requiresDependencyResolution test
+ * @threadSafe
  * @description JBossWS WSProvide (Test) Maven Plugin.
  * 
  * @author alessio.soldano@jboss.com
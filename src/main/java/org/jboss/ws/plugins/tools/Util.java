@@ -1,9 +1,20 @@
 package org.jboss.ws.plugins.tools;
 
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ServiceConfigurationError;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class Util {
+
+    /**
+     * The packages of the JAX-WS / JAXB stack classes the tools load
+     */
+    private static final String[] STACK_PACKAGES = {"javax.xml.ws.", "javax.xml.bind.", "javax.jws.",
+            "jakarta.xml.ws.", "jakarta.xml.bind.", "jakarta.jws.", "org.apache.cxf.", "com.sun.xml.",
+            "com.sun.tools.ws.", "com.sun.tools.xjc.", "org.glassfish.jaxb.", "org.jboss.ws.", "org.jboss.wsf."};
 	
 	public static int getJVMMajorVersion() {
         try {
@@ -18,4 +29,110 @@ public class Util {
             return 8;
         }
    }
+
+    /**
+     * Parse a thread count specification, either an absolute number ("4") or
+     * a multiple of the available processors ("1C", "0.5C").
+     *
+     * @param threads the thread count specification
+     * @return the number of threads, at least 1
+     * @throws IllegalArgumentException if the specification is not a positive number, optionally followed by 'C'
+     */
+    public static int getThreadCount(String threads) {
+        if (threads == null || threads.trim().length() == 0) {
+            return 1;
+        }
+        String spec = threads.trim();
+        try {
+            if (spec.endsWith("C") || spec.endsWith("c")) {
+                float factor = Float.parseFloat(spec.substring(0, spec.length() - 1));
+                if (!(factor > 0) || Float.isInfinite(factor)) {
+                    throw new IllegalArgumentException("'" + spec + "' is not a positive multiple of the available cores");
+                }
+                return Math.max(1, (int)(factor * Runtime.getRuntime().availableProcessors()));
+            }
+            int count = Integer.parseInt(spec);
+            if (count <= 0) {
+                throw new IllegalArgumentException("'" + spec + "' is not a positive number of threads");
+            }
+            return count;
+        } catch (NumberFormatException nfe) {
+            throw new IllegalArgumentException("'" + spec + "' is neither a number of threads nor a multiple of the available cores (e.g. '4' or '1.5C')");
+        }
+    }
+
+    /**
+     * Turn a wsdl reference, either a URL or a file path, into a URL
+     * the same way the tools do.
+     *
+     * @param wsdl the wsdl reference
+     * @return the wsdl URL
+     * @throws MalformedURLException if the reference is neither a URL nor a path
+     */
+    public static URL toURL(String wsdl) throws MalformedURLException {
+        try {
+            return new URL(wsdl);
+        } catch (MalformedURLException e) {
+            return new File(wsdl).toURI().toURL();
+        }
+    }
+
+    /**
+     * @param url a file URL
+     * @return the corresponding file
+     */
+    public static File toFile(URL url) {
+        try {
+            return new File(url.toURI());
+        } catch (Exception e) {
+            return new File(url.getPath());
+        }
+    }
+
+    /**
+     * Tell whether a failure of the tools denotes that the stack could not be loaded
+     * in-process (missing or clashing classes, broken JAXB / JAX-WS providers), which
+     * is worth retrying in a forked JVM.
+     *
+     * @param t the failure
+     * @return true if the failure, or any of its causes, is a class loading or provider failure
+     */
+    public static boolean isLoaderFailure(Throwable t) {
+        return getLoaderFailure(t) != null;
+    }
+
+    /**
+     * Get the class loading or provider failure among the given failure and its causes:
+     * a linkage error, a service configuration error or a class not found within the
+     * JAX-WS / JAXB stack packages (other missing classes, e.g. user classes, being
+     * failures of the tools run rather than of the stack loading).
+     *
+     * @param t the failure
+     * @return the loader failure, null if none
+     */
+    public static Throwable getLoaderFailure(Throwable t) {
+        for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+            if (cause instanceof LinkageError || cause instanceof ServiceConfigurationError
+                    || (cause instanceof ClassNotFoundException && isStackClass(cause.getMessage()))) {
+                return cause;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isStackClass(String className) {
+        if (className == null) {
+            return false;
+        }
+        String name = className.trim().replace('/', '.');
+        for (String pkg : STACK_PACKAGES) {
+            if (name.startsWith(pkg)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
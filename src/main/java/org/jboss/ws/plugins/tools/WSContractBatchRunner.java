@@ -0,0 +1,139 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.util.Properties;
+
+/**
+ * Entry point of the forked tool JVM in batch mode: consumes all the wsdl
+ * references listed in the provided batch file in turn, hence paying the JVM
+ * startup and the JAX-WS / JAXB warm-up only once.
+ *
+ * The outcome of each job is written to the provided result file.
+ *
+ * Only JDK classes and the JBossWS tools API (loaded reflectively) are
+ * available on the forked classpath, so Maven classes must not be used here.
+ */
+public final class WSContractBatchRunner
+{
+   static final String JOBS = "jobs";
+   static final String JOB_PREFIX = "job.";
+   static final String WSDL_SUFFIX = ".wsdl";
+   static final String STATUS_SUFFIX = ".status";
+   static final String MESSAGE_SUFFIX = ".message";
+   static final String TIME_SUFFIX = ".time";
+   static final String CPU_SUFFIX = ".cpu";
+
+   private WSContractBatchRunner()
+   {
+   }
+
+   /**
+    * @param args the batch file to read the jobs from and the result file to write the outcomes to
+    */
+   public static void main(String[] args) throws Exception
+   {
+      if (args.length != 2)
+      {
+         System.err.println("Usage: " + WSContractBatchRunner.class.getName() + " <batch file> <result file>");
+         System.exit(1);
+      }
+      Properties batch = load(new File(args[0]));
+      Properties results = new Properties();
+      boolean failures = false;
+      ClassLoader loader = Thread.currentThread().getContextClassLoader();
+      final int count = Integer.parseInt(batch.getProperty(JOBS, "0"));
+      for (int i = 0; i < count; i++)
+      {
+         final String prefix = JOB_PREFIX + i;
+         WSContractConsumerParams params = WSContractConsumerParams.load(batch, prefix);
+         String wsdl = batch.getProperty(prefix + WSDL_SUFFIX);
+         WSContractConsumerJob.Status status;
+         String message = null;
+         final long start = System.nanoTime();
+         final long startCpu = WSContractInvoker.getProcessCpuTime();
+         try
+         {
+            WSContractInvoker.consume(loader, params, wsdl, System.out);
+            status = WSContractConsumerJob.Status.SUCCESS;
+         }
+         catch (MalformedURLException mue)
+         {
+            status = WSContractConsumerJob.Status.INVALID_WSDL;
+            message = mue.getMessage();
+         }
+         catch (Throwable t)
+         {
+            t.printStackTrace();
+            status = WSContractConsumerJob.Status.FAILED;
+            message = String.valueOf(t);
+            failures = true;
+         }
+         results.setProperty(prefix + STATUS_SUFFIX, status.name());
+         results.setProperty(prefix + TIME_SUFFIX, String.valueOf(System.nanoTime() - start));
+         results.setProperty(prefix + CPU_SUFFIX, String.valueOf(WSContractInvoker.elapsed(startCpu, WSContractInvoker.getProcessCpuTime())));
+         if (message != null)
+         {
+            results.setProperty(prefix + MESSAGE_SUFFIX, message);
+         }
+         //store after each job, so that partial results survive a JVM crash
+         store(results, new File(args[1]));
+      }
+      System.out.flush();
+      System.exit(failures ? 2 : 0);
+   }
+
+   static Properties load(File file) throws IOException
+   {
+      Properties props = new Properties();
+      InputStream is = new FileInputStream(file);
+      try
+      {
+         props.load(is);
+      }
+      finally
+      {
+         is.close();
+      }
+      return props;
+   }
+
+   static void store(Properties props, File file) throws IOException
+   {
+      OutputStream os = new FileOutputStream(file);
+      try
+      {
+         props.store(os, null);
+      }
+      finally
+      {
+         os.close();
+      }
+   }
+}
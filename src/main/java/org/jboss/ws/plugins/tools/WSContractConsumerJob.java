@@ -0,0 +1,89 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools;
+
+/**
+ * A single wsconsume invocation, i.e. a wsdl reference together with the
+ * settings to consume it with, plus the outcome of the invocation.
+ */
+public class WSContractConsumerJob
+{
+   public static enum Status {
+      PENDING, SUCCESS, INVALID_WSDL, FAILED
+   }
+
+   private final WSContractConsumerParams params;
+   private final String wsdl;
+   private String location;
+   private Status status = Status.PENDING;
+   private String message;
+
+   public WSContractConsumerJob(WSContractConsumerParams params, String wsdl)
+   {
+      this.params = params;
+      this.wsdl = wsdl;
+   }
+
+   public WSContractConsumerParams getParams()
+   {
+      return params;
+   }
+
+   public String getWsdl()
+   {
+      return wsdl;
+   }
+
+   /**
+    * @return the location of the wsdl to hand to the tool, which is the wsdl reference
+    * unless a local copy of it is used
+    */
+   public String getLocation()
+   {
+      return location != null ? location : wsdl;
+   }
+
+   public void setLocation(String location)
+   {
+      this.location = location;
+   }
+
+   public Status getStatus()
+   {
+      return status;
+   }
+
+   public void setStatus(Status status)
+   {
+      this.status = status;
+   }
+
+   public String getMessage()
+   {
+      return message;
+   }
+
+   public void setMessage(String message)
+   {
+      this.message = message;
+   }
+}
@@ -23,11 +23,15 @@ package org.jboss.ws.plugins.tools;
 
 import java.io.File;
 import java.net.URLClassLoader;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Properties;
 
 public class WSContractConsumerParams
 {
    private boolean fork;
+   private boolean daemon;
+   private int daemonIdleTimeout;
    private URLClassLoader loader;
    private List<String> additionalCompilerClassPath;
    private List<String> bindingFiles;
@@ -44,6 +48,11 @@ public class WSContractConsumerParams
    private String encoding;
    private String argLine;
    private File manifestOnlyJar;
+   private String flightRecording;
+   private File flightRecordingDirectory;
+   private File classDataArchive;
+   private ForkProfile forkProfile;
+   private int forkTimeout;
    
    public boolean isAdditionalHeaders()
    {
@@ -69,6 +78,22 @@ public class WSContractConsumerParams
    {
       return fork;
    }
+   public boolean isDaemon()
+   {
+      return daemon;
+   }
+   public void setDaemon(boolean daemon)
+   {
+      this.daemon = daemon;
+   }
+   public int getDaemonIdleTimeout()
+   {
+      return daemonIdleTimeout;
+   }
+   public void setDaemonIdleTimeout(int daemonIdleTimeout)
+   {
+      this.daemonIdleTimeout = daemonIdleTimeout;
+   }
    public void setLoader(URLClassLoader loader)
    {
       this.loader = loader;
@@ -183,4 +208,187 @@ public class WSContractConsumerParams
    {
       this.manifestOnlyJar = manifestOnlyJar;
    }
+
+   public String getFlightRecording()
+   {
+      return flightRecording;
+   }
+
+   public void setFlightRecording(String flightRecording)
+   {
+      this.flightRecording = flightRecording;
+   }
+
+   public File getFlightRecordingDirectory()
+   {
+      return flightRecordingDirectory;
+   }
+
+   public void setFlightRecordingDirectory(File flightRecordingDirectory)
+   {
+      this.flightRecordingDirectory = flightRecordingDirectory;
+   }
+
+   public File getClassDataArchive()
+   {
+      return classDataArchive;
+   }
+
+   public void setClassDataArchive(File classDataArchive)
+   {
+      this.classDataArchive = classDataArchive;
+   }
+
+   public ForkProfile getForkProfile()
+   {
+      return forkProfile;
+   }
+
+   public void setForkProfile(ForkProfile forkProfile)
+   {
+      this.forkProfile = forkProfile;
+   }
+
+   public int getForkTimeout()
+   {
+      return forkTimeout;
+   }
+
+   public void setForkTimeout(int forkTimeout)
+   {
+      this.forkTimeout = forkTimeout;
+   }
+
+   /**
+    * @return a shallow copy of these params, e.g. for tweaking the settings of a single wsdl
+    */
+   public WSContractConsumerParams copy()
+   {
+      WSContractConsumerParams copy = new WSContractConsumerParams();
+      copy.fork = fork;
+      copy.daemon = daemon;
+      copy.daemonIdleTimeout = daemonIdleTimeout;
+      copy.loader = loader;
+      copy.additionalCompilerClassPath = additionalCompilerClassPath;
+      copy.bindingFiles = bindingFiles;
+      copy.catalog = catalog;
+      copy.additionalHeaders = additionalHeaders;
+      copy.extension = extension;
+      copy.generateSource = generateSource;
+      copy.noCompile = noCompile;
+      copy.outputDirectory = outputDirectory;
+      copy.sourceDirectory = sourceDirectory;
+      copy.target = target;
+      copy.targetPackage = targetPackage;
+      copy.wsdlLocation = wsdlLocation;
+      copy.encoding = encoding;
+      copy.argLine = argLine;
+      copy.manifestOnlyJar = manifestOnlyJar;
+      copy.flightRecording = flightRecording;
+      copy.flightRecordingDirectory = flightRecordingDirectory;
+      copy.classDataArchive = classDataArchive;
+      copy.forkProfile = forkProfile;
+      copy.forkTimeout = forkTimeout;
+      return copy;
+   }
+
+   /**
+    * Store the settings that are relevant to the tool invocation in the given properties,
+    * so that they can be passed to a forked JVM.
+    *
+    * @param props   the properties to store the settings in
+    * @param prefix  the key prefix to use
+    */
+   public void store(Properties props, String prefix)
+   {
+      storeList(props, prefix + ".additionalCompilerClassPath", additionalCompilerClassPath);
+      storeList(props, prefix + ".bindingFiles", bindingFiles);
+      storeFile(props, prefix + ".catalog", catalog);
+      props.setProperty(prefix + ".additionalHeaders", String.valueOf(additionalHeaders));
+      props.setProperty(prefix + ".extension", String.valueOf(extension));
+      props.setProperty(prefix + ".generateSource", String.valueOf(generateSource));
+      props.setProperty(prefix + ".noCompile", String.valueOf(noCompile));
+      storeFile(props, prefix + ".outputDirectory", outputDirectory);
+      storeFile(props, prefix + ".sourceDirectory", sourceDirectory);
+      storeString(props, prefix + ".target", target);
+      storeString(props, prefix + ".targetPackage", targetPackage);
+      storeString(props, prefix + ".wsdlLocation", wsdlLocation);
+      storeString(props, prefix + ".encoding", encoding);
+   }
+
+   /**
+    * Load the settings previously saved through {@link #store(Properties, String)}
+    *
+    * @param props   the properties to read the settings from
+    * @param prefix  the key prefix to use
+    * @return the loaded params
+    */
+   public static WSContractConsumerParams load(Properties props, String prefix)
+   {
+      WSContractConsumerParams params = new WSContractConsumerParams();
+      params.setAdditionalCompilerClassPath(loadList(props, prefix + ".additionalCompilerClassPath"));
+      params.setBindingFiles(loadList(props, prefix + ".bindingFiles"));
+      params.setCatalog(loadFile(props, prefix + ".catalog"));
+      params.setAdditionalHeaders(Boolean.parseBoolean(props.getProperty(prefix + ".additionalHeaders")));
+      params.setExtension(Boolean.parseBoolean(props.getProperty(prefix + ".extension")));
+      params.setGenerateSource(Boolean.parseBoolean(props.getProperty(prefix + ".generateSource")));
+      params.setNoCompile(Boolean.parseBoolean(props.getProperty(prefix + ".noCompile")));
+      params.setOutputDirectory(loadFile(props, prefix + ".outputDirectory"));
+      params.setSourceDirectory(loadFile(props, prefix + ".sourceDirectory"));
+      params.setTarget(props.getProperty(prefix + ".target"));
+      params.setTargetPackage(props.getProperty(prefix + ".targetPackage"));
+      params.setWsdlLocation(props.getProperty(prefix + ".wsdlLocation"));
+      params.setEncoding(props.getProperty(prefix + ".encoding"));
+      return params;
+   }
+
+   private static void storeString(Properties props, String key, String value)
+   {
+      if (value != null)
+      {
+         props.setProperty(key, value);
+      }
+   }
+
+   private static void storeFile(Properties props, String key, File file)
+   {
+      if (file != null)
+      {
+         props.setProperty(key, file.getAbsolutePath());
+      }
+   }
+
+   private static void storeList(Properties props, String key, List<String> list)
+   {
+      if (list != null)
+      {
+         props.setProperty(key + ".size", String.valueOf(list.size()));
+         for (int i = 0; i < list.size(); i++)
+         {
+            props.setProperty(key + "." + i, list.get(i));
+         }
+      }
+   }
+
+   private static File loadFile(Properties props, String key)
+   {
+      String value = props.getProperty(key);
+      return value != null ? new File(value) : null;
+   }
+
+   private static List<String> loadList(Properties props, String key)
+   {
+      String size = props.getProperty(key + ".size");
+      if (size == null)
+      {
+         return null;
+      }
+      final int count = Integer.parseInt(size);
+      List<String> list = new ArrayList<String>(count);
+      for (int i = 0; i < count; i++)
+      {
+         list.add(props.getProperty(key + "." + i));
+      }
+      return list;
+   }
 }
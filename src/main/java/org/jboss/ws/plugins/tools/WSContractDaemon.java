@@ -0,0 +1,267 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Properties;
+
+import org.jboss.ws.plugins.tools.WSContractConsumerJob.Status;
+
+/**
+ * Entry point of the long-lived tool JVM in daemon mode: serves wsconsume / wsprovide
+ * requests coming from the plugin over a loopback socket, one at a time, keeping the
+ * JAX-WS / JAXB stack loaded and warmed-up between requests.
+ *
+ * Protocol (see {@link WSContractDaemonClient}):
+ * <ul>
+ * <li>at startup the daemon reads the access token from its standard input and prints
+ * the listening port on its standard output</li>
+ * <li>a request is made of the token, the request kind and the serialized job properties</li>
+ * <li>the response is a sequence of output / error log lines followed by the job result
+ * (status, message and CPU time)</li>
+ * </ul>
+ *
+ * The daemon exits when asked to, when its standard input is closed (i.e. the owning
+ * Maven JVM is gone) or after the given idle timeout.
+ *
+ * Only JDK classes and the JBossWS tools API (loaded reflectively) are
+ * available on the forked classpath, so Maven classes must not be used here.
+ */
+public final class WSContractDaemon
+{
+   static final String PORT_PREFIX = "jaxws-tools-daemon-port:";
+   static final String CONSUME = "consume";
+   static final String PROVIDE = "provide";
+   static final String SHUTDOWN = "shutdown";
+   static final String JOB = "job";
+   static final String WSDL = "wsdl";
+   static final byte OUTPUT = 'O';
+   static final byte ERROR = 'E';
+   static final byte RESULT = 'R';
+
+   private final String token;
+   private final ServerSocket serverSocket;
+
+   private WSContractDaemon(String token, ServerSocket serverSocket)
+   {
+      this.token = token;
+      this.serverSocket = serverSocket;
+   }
+
+   /**
+    * @param args the idle timeout in seconds
+    */
+   public static void main(String[] args) throws Exception
+   {
+      final int idleTimeout = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+      final BufferedReader in = new BufferedReader(new InputStreamReader(System.in, "UTF-8"));
+      final String token = in.readLine();
+      ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getByName(null));
+      serverSocket.setSoTimeout(idleTimeout * 1000);
+      //exit as soon as the plugin side is gone
+      Thread watchdog = new Thread("jaxws-tools-daemon-watchdog")
+      {
+         @Override
+         public void run()
+         {
+            try
+            {
+               while (in.read() != -1)
+               {
+                  //NOOP
+               }
+            }
+            catch (IOException ignored)
+            {
+               //NOOP
+            }
+            System.exit(0);
+         }
+      };
+      watchdog.setDaemon(true);
+      watchdog.start();
+      System.out.println(PORT_PREFIX + serverSocket.getLocalPort());
+      System.out.flush();
+      new WSContractDaemon(token, serverSocket).serve();
+      System.exit(0);
+   }
+
+   private void serve() throws IOException
+   {
+      final PrintStream origOut = System.out;
+      final PrintStream origErr = System.err;
+      while (true)
+      {
+         Socket socket;
+         try
+         {
+            socket = serverSocket.accept();
+         }
+         catch (SocketTimeoutException ste)
+         {
+            origOut.println("Idle timeout reached, shutting down");
+            return;
+         }
+         try
+         {
+            DataInputStream dis = new DataInputStream(socket.getInputStream());
+            DataOutputStream dos = new DataOutputStream(socket.getOutputStream());
+            if (!token.equals(dis.readUTF()))
+            {
+               continue;
+            }
+            final String kind = dis.readUTF();
+            if (SHUTDOWN.equals(kind))
+            {
+               return;
+            }
+            byte[] data = new byte[dis.readInt()];
+            dis.readFully(data);
+            Properties job = new Properties();
+            job.load(new ByteArrayInputStream(data));
+
+            PrintStream out = new PrintStream(new FrameOutputStream(dos, OUTPUT), true, "UTF-8");
+            PrintStream err = new PrintStream(new FrameOutputStream(dos, ERROR), true, "UTF-8");
+            System.setOut(out);
+            System.setErr(err);
+            Status status;
+            String message = "";
+            final long startCpu = WSContractInvoker.getProcessCpuTime();
+            try
+            {
+               ClassLoader loader = Thread.currentThread().getContextClassLoader();
+               if (CONSUME.equals(kind))
+               {
+                  WSContractInvoker.consume(loader, WSContractConsumerParams.load(job, JOB), job.getProperty(WSDL), out);
+               }
+               else
+               {
+                  WSContractInvoker.provide(loader, WSContractProviderParams.load(job, JOB), out);
+               }
+               status = Status.SUCCESS;
+            }
+            catch (MalformedURLException mue)
+            {
+               status = Status.INVALID_WSDL;
+               message = String.valueOf(mue.getMessage());
+            }
+            catch (Throwable t)
+            {
+               t.printStackTrace();
+               status = Status.FAILED;
+               message = String.valueOf(t);
+            }
+            finally
+            {
+               out.flush();
+               err.flush();
+               System.setOut(origOut);
+               System.setErr(origErr);
+            }
+            synchronized (dos)
+            {
+               dos.writeByte(RESULT);
+               dos.writeUTF(status.name());
+               dos.writeUTF(message);
+               dos.writeLong(WSContractInvoker.elapsed(startCpu, WSContractInvoker.getProcessCpuTime()));
+               dos.flush();
+            }
+         }
+         catch (IOException ioe)
+         {
+            ioe.printStackTrace(origErr);
+         }
+         finally
+         {
+            socket.close();
+         }
+      }
+   }
+
+   /**
+    * Turns the written bytes into log line frames
+    */
+   private static final class FrameOutputStream extends OutputStream
+   {
+      private final DataOutputStream dos;
+      private final byte type;
+      private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+      FrameOutputStream(DataOutputStream dos, byte type)
+      {
+         this.dos = dos;
+         this.type = type;
+      }
+
+      @Override
+      public void write(int b) throws IOException
+      {
+         if (b == '\n')
+         {
+            flushLine();
+         }
+         else if (b != '\r')
+         {
+            buffer.write(b);
+         }
+      }
+
+      @Override
+      public void flush() throws IOException
+      {
+         if (buffer.size() > 0)
+         {
+            flushLine();
+         }
+      }
+
+      private void flushLine() throws IOException
+      {
+         String line = buffer.toString("UTF-8");
+         buffer.reset();
+         //writeUTF is limited to 64K bytes
+         if (line.length() > 16384)
+         {
+            line = line.substring(0, 16384);
+         }
+         synchronized (dos)
+         {
+            dos.writeByte(type);
+            dos.writeUTF(line);
+            dos.flush();
+         }
+      }
+   }
+}
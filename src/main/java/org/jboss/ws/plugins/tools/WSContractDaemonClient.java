@@ -0,0 +1,356 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+
+import org.apache.maven.plugin.logging.Log;
+import org.jboss.ws.plugins.tools.MavenLogStreamConsumer.Type;
+import org.jboss.ws.plugins.tools.WSContractConsumerJob.Status;
+
+/**
+ * Plugin side of the daemon mode: keeps track of the running tool daemons
+ * (see {@link WSContractDaemon}), one per tool classpath, and submits jobs to them.
+ *
+ * Daemons are shared by all the executions within a Maven session; they're shut down
+ * when a new session is detected, when the Maven JVM exits or after an idle timeout.
+ */
+public class WSContractDaemonClient
+{
+   private static final Map<String, WSContractDaemonClient> DAEMONS = new HashMap<String, WSContractDaemonClient>();
+   private static Object currentSession;
+   private static Log sessionLog;
+   private static boolean shutdownHookRegistered;
+
+   private final Process process;
+   private final Writer stdin;
+   private final String token;
+   private final int port;
+
+   private WSContractDaemonClient(Process process, Writer stdin, String token, int port)
+   {
+      this.process = process;
+      this.stdin = stdin;
+      this.token = token;
+      this.port = port;
+   }
+
+   /**
+    * Shut down the daemons started within a previous Maven session, if any.
+    *
+    * @param session an object identifying the current Maven session
+    * @param log     the plugin log, to which the output of the daemons outside of the jobs goes
+    */
+   public static synchronized void checkSession(Object session, Log log)
+   {
+      sessionLog = log;
+      if (session != null && !session.equals(currentSession))
+      {
+         shutdownAll();
+         currentSession = session;
+      }
+   }
+
+   /**
+    * Run a job in the daemon for the given tool classpath, starting the daemon if needed.
+    * If the daemon turns out to be gone (e.g. because of the idle timeout), a new one is
+    * started and the job is submitted again.
+    *
+    * @param key          the key identifying the daemon (tool classpath and JVM options)
+    * @param command      the command for starting the daemon
+    * @param kind         the kind of job ({@link WSContractDaemon#CONSUME} or {@link WSContractDaemon#PROVIDE})
+    * @param job          the serialized job
+    * @param log          the log to stream the tool output to
+    * @return the CPU time (in nanoseconds) the daemon spent on the job, -1 if unknown
+    * @throws MalformedURLException if the job wsdl reference is not valid
+    * @throws Exception if the job fails
+    */
+   public static long submit(String key, List<String> command, String kind, Properties job, Log log) throws Exception
+   {
+      WSContractDaemonClient client = getInstance(key, command, log);
+      try
+      {
+         return client.run(kind, job, log);
+      }
+      catch (DaemonUnavailableException due)
+      {
+         log.debug("Tool daemon not available, restarting it: " + due.getCause());
+         discard(key, client);
+         return getInstance(key, command, log).run(kind, job, log);
+      }
+   }
+
+   private static synchronized WSContractDaemonClient getInstance(String key, List<String> command, Log log) throws Exception
+   {
+      WSContractDaemonClient client = DAEMONS.get(key);
+      if (client != null && !client.process.isAlive())
+      {
+         DAEMONS.remove(key);
+         client = null;
+      }
+      if (client == null)
+      {
+         if (log.isDebugEnabled())
+         {
+            log.debug("Starting tool daemon: " + WSContractDelegate.toCommandLine(command));
+         }
+         //the daemon outlives the invocation starting it, whose log might be a buffered or quiet one
+         client = start(command, sessionLog != null ? sessionLog : log);
+         DAEMONS.put(key, client);
+         if (!shutdownHookRegistered)
+         {
+            Runtime.getRuntime().addShutdownHook(new Thread("jaxws-tools-daemon-shutdown")
+            {
+               @Override
+               public void run()
+               {
+                  shutdownAll();
+               }
+            });
+            shutdownHookRegistered = true;
+         }
+      }
+      return client;
+   }
+
+   private static synchronized void discard(String key, WSContractDaemonClient client)
+   {
+      if (DAEMONS.get(key) == client)
+      {
+         DAEMONS.remove(key);
+      }
+      client.shutdown();
+   }
+
+   private static synchronized void shutdownAll()
+   {
+      for (WSContractDaemonClient client : DAEMONS.values())
+      {
+         client.shutdown();
+      }
+      DAEMONS.clear();
+   }
+
+   private static WSContractDaemonClient start(List<String> command, Log log) throws Exception
+   {
+      Object event = FlightRecorderEvents.beginForkSpawn(WSContractDaemon.class.getName(), null, ExecutionMetrics.MODE_DAEMON);
+      try
+      {
+         return launch(command, log);
+      }
+      finally
+      {
+         FlightRecorderEvents.commitForkSpawn(event, -1);
+      }
+   }
+
+   private static WSContractDaemonClient launch(List<String> command, Log log) throws Exception
+   {
+      Process process = new ProcessBuilder(command).start();
+      String token = UUID.randomUUID().toString();
+      Writer stdin = new OutputStreamWriter(process.getOutputStream(), "UTF-8");
+      stdin.write(token);
+      stdin.write('\n');
+      stdin.flush();
+
+      BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+      ForkedProcess.pump(process.getErrorStream(), new MavenLogStreamConsumer(log, Type.ERROR), "jaxws-tools-daemon-error");
+      List<String> startupLines = new ArrayList<String>();
+      String line;
+      while ((line = reader.readLine()) != null)
+      {
+         if (line.startsWith(WSContractDaemon.PORT_PREFIX))
+         {
+            int port = Integer.parseInt(line.substring(WSContractDaemon.PORT_PREFIX.length()).trim());
+            //whatever is written outside of the jobs is just debug information
+            new DebugPumper(reader, log).start();
+            return new WSContractDaemonClient(process, stdin, token, port);
+         }
+         startupLines.add(line);
+      }
+      for (String l : startupLines)
+      {
+         log.error(l);
+      }
+      process.destroy();
+      throw new IOException("Could not start the tool daemon");
+   }
+
+   private long run(String kind, Properties job, Log log) throws Exception
+   {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      job.store(baos, null);
+      byte[] data = baos.toByteArray();
+
+      Status status = null;
+      String message = null;
+      long cpuTime = -1;
+      boolean received = false;
+      try
+      {
+         Socket socket = new Socket(InetAddress.getByName(null), port);
+         try
+         {
+            DataOutputStream dos = new DataOutputStream(socket.getOutputStream());
+            dos.writeUTF(token);
+            dos.writeUTF(kind);
+            dos.writeInt(data.length);
+            dos.write(data);
+            dos.flush();
+
+            MavenLogStreamConsumer out = new MavenLogStreamConsumer(log, Type.OUTPUT);
+            MavenLogStreamConsumer err = new MavenLogStreamConsumer(log, Type.ERROR);
+            DataInputStream dis = new DataInputStream(socket.getInputStream());
+            while (status == null)
+            {
+               byte type = dis.readByte();
+               received = true;
+               if (type == WSContractDaemon.OUTPUT)
+               {
+                  out.consumeLine(dis.readUTF());
+               }
+               else if (type == WSContractDaemon.ERROR)
+               {
+                  err.consumeLine(dis.readUTF());
+               }
+               else
+               {
+                  status = Status.valueOf(dis.readUTF());
+                  message = dis.readUTF();
+                  cpuTime = dis.readLong();
+               }
+            }
+         }
+         finally
+         {
+            socket.close();
+         }
+      }
+      catch (IOException ioe)
+      {
+         if (!received)
+         {
+            //the job did not even start, it's safe to submit it again
+            throw new DaemonUnavailableException(ioe);
+         }
+         throw ioe;
+      }
+      if (status == Status.INVALID_WSDL)
+      {
+         throw new MalformedURLException(message);
+      }
+      else if (status != Status.SUCCESS)
+      {
+         throw new Exception(message);
+      }
+      return cpuTime;
+   }
+
+   private void shutdown()
+   {
+      try
+      {
+         Socket socket = new Socket(InetAddress.getByName(null), port);
+         try
+         {
+            DataOutputStream dos = new DataOutputStream(socket.getOutputStream());
+            dos.writeUTF(token);
+            dos.writeUTF(WSContractDaemon.SHUTDOWN);
+            dos.flush();
+         }
+         finally
+         {
+            socket.close();
+         }
+      }
+      catch (IOException ignored)
+      {
+         //the daemon is already gone
+      }
+      try
+      {
+         //closing the stdin makes the daemon exit even if it's busy
+         stdin.close();
+      }
+      catch (IOException ignored)
+      {
+         //NOOP
+      }
+   }
+
+   private static final class DebugPumper extends Thread
+   {
+      private final BufferedReader reader;
+      private final Log log;
+
+      DebugPumper(BufferedReader reader, Log log)
+      {
+         super("jaxws-tools-daemon-output");
+         setDaemon(true);
+         this.reader = reader;
+         this.log = log;
+      }
+
+      @Override
+      public void run()
+      {
+         try
+         {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+               log.debug(line);
+            }
+         }
+         catch (IOException ignored)
+         {
+            //the daemon is gone
+         }
+      }
+   }
+
+   private static final class DaemonUnavailableException extends Exception
+   {
+      private static final long serialVersionUID = 1L;
+
+      DaemonUnavailableException(IOException cause)
+      {
+         super(cause);
+      }
+   }
+}
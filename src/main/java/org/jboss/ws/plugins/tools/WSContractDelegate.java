@@ -22,109 +22,636 @@
 package org.jboss.ws.plugins.tools;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
-import java.lang.reflect.Method;
+import java.net.MalformedURLException;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarFile;
 
 import org.apache.maven.plugin.logging.Log;
 import org.codehaus.plexus.util.cli.CommandLineUtils;
-import org.codehaus.plexus.util.cli.Commandline;
 import org.jboss.ws.plugins.tools.MavenLogStreamConsumer.Type;
+import org.jboss.ws.plugins.tools.WSContractConsumerJob.Status;
 
 public class WSContractDelegate
 {
-   private static final PrintStream PS = System.out;
    private static final String FS = System.getProperty("file.separator");
+   private static final AtomicInteger RECORDINGS = new AtomicInteger();
+   private static final ConcurrentMap<File, File> ARCHIVES_IN_PROGRESS = new ConcurrentHashMap<File, File>();
    private Log log;
+   private ExecutionMetrics metrics;
+   private boolean quiet;
 
    public WSContractDelegate(Log log)
+   {
+      this(log, null);
+   }
+
+   /**
+    * @param log      the log to route the tool output to
+    * @param metrics  the metrics to record the tool runs into, if any
+    */
+   public WSContractDelegate(Log log, ExecutionMetrics metrics)
    {
       this.log = log;
+      this.metrics = metrics;
+   }
+
+   /**
+    * @param quiet  whether to only log a summary line for the successful tool invocations,
+    *               their output being logged on failure only (see {@link QuietLog})
+    */
+   public void setQuiet(boolean quiet)
+   {
+      this.quiet = quiet;
+   }
+
+   private void record(String name, String mode, long start, long cpuTime)
+   {
+      if (metrics != null)
+      {
+         metrics.getItem(name).recordRun(mode, start, cpuTime);
+      }
+   }
+   
+   /**
+    * @return a message stream for the in-process tools, routed to this delegate's log
+    */
+   private PrintStream newMessageStream()
+   {
+      return new PrintStream(new LogOutputStream(new MavenLogStreamConsumer(log, Type.OUTPUT)), true);
    }
    
    public void runProvider(WSContractProviderParams params) throws Exception
    {
-      if (params.isFork())
+      if (quiet)
       {
-         runProviderOutOfProcess(params);
+         QuietLog quietLog = new QuietLog(log, "wsprovide of " + params.getEndpointClass());
+         boolean success = false;
+         try
+         {
+            new WSContractDelegate(quietLog, metrics).runProvider(params);
+            success = true;
+         }
+         finally
+         {
+            quietLog.complete(success);
+         }
+         return;
       }
-      else
+      Object event = FlightRecorderEvents.beginInvocation(false, params.getEndpointClass());
+      final long start = System.nanoTime();
+      long cpuTime = -1;
+      String mode = ExecutionMetrics.MODE_IN_PROCESS;
+      try
       {
-         runProviderInProcess(params);
+         if (params.isDaemon())
+         {
+            mode = ExecutionMetrics.MODE_DAEMON;
+            cpuTime = runProviderInDaemon(params);
+         }
+         else if (params.isFork())
+         {
+            mode = ExecutionMetrics.MODE_FORK;
+            cpuTime = runProviderOutOfProcess(params);
+         }
+         else
+         {
+            cpuTime = runProviderInProcess(params);
+         }
+      }
+      finally
+      {
+         record(params.getEndpointClass(), mode, start, cpuTime);
+         FlightRecorderEvents.commitInvocation(event, mode);
       }
    }
    
-   private void runProviderInProcess(WSContractProviderParams params) throws Exception
+   private long runProviderInProcess(WSContractProviderParams params) throws Exception
    {
-      ClassLoader loader = params.getLoader();
-      Class<?> providerClass = loader.loadClass("org.jboss.ws.api.tools.WSContractProvider");
-      Object provider = providerClass.getMethod("newInstance").invoke(null);
-      setupProvider(providerClass, provider, params);
-      Method m = providerClass.getMethod("provide", new Class<?>[]{String.class});
-      m.invoke(provider, new Object[]{params.getEndpointClass()});
+      PrintStream ps = newMessageStream();
+      final long startCpu = WSContractInvoker.getThreadCpuTime();
+      try
+      {
+         WSContractInvoker.provide(params.getLoader(), params, ps);
+      }
+      finally
+      {
+         ps.close();
+      }
+      return WSContractInvoker.elapsed(startCpu, WSContractInvoker.getThreadCpuTime());
    }
    
-   private void runProviderOutOfProcess(WSContractProviderParams params) throws Exception
+   private long runProviderOutOfProcess(WSContractProviderParams params) throws Exception
    {
-      List<String> commandList = initCommandList(params.getArgLine(), params.getManifestOnlyJar(), "org.jboss.ws.tools.cmd.WSProvide");
-      String commandLine = getProviderCommandLine(commandList, params);
-      
-      if (log.isDebugEnabled())
-      {
-         log.debug("Running command line: " + commandLine);
-      }
+      ClassDataSharing cds = new ClassDataSharing(params.getClassDataArchive(), true);
+      List<String> commandList = initCommandList(params.getArgLine(), params.getForkProfile(), params.getManifestOnlyJar(), "org.jboss.ws.tools.cmd.WSProvide",
+            getFlightRecordingOption(params.getFlightRecording(), params.getFlightRecordingDirectory(), "wsprovide"), cds.getOption());
+      getProviderCommandLine(commandList, params);
       
       MavenLogStreamConsumer out = new MavenLogStreamConsumer(log, Type.OUTPUT);
       MavenLogStreamConsumer err = new MavenLogStreamConsumer(log, Type.ERROR);
-      int result = CommandLineUtils.executeCommandLine(new Commandline(commandLine), out, err);
+      ForkedProcess process = null;
+      try
+      {
+         process = execute(commandList, params.getForkTimeout(), out, err, "org.jboss.ws.tools.cmd.WSProvide", params.getEndpointClass(), ExecutionMetrics.MODE_FORK);
+      }
+      finally
+      {
+         cds.done(process != null && process.getExitCode() == 0);
+      }
       
-      if (result != 0)
+      if (process.getExitCode() != 0)
       {
-         throw new Exception("Process terminated with code " + result);
+         throw new Exception("Process terminated with code " + process.getExitCode());
       }
+      return process.getCpuTime();
+   }
+   
+   private long runProviderInDaemon(WSContractProviderParams params) throws Exception
+   {
+      Properties job = new Properties();
+      params.store(job, WSContractDaemon.JOB);
+      List<String> commandList = initCommandList(params.getArgLine(), params.getForkProfile(), params.getManifestOnlyJar(), WSContractDaemon.class.getName(),
+            getFlightRecordingOption(params.getFlightRecording(), params.getFlightRecordingDirectory(), "daemon"),
+            new ClassDataSharing(params.getClassDataArchive(), false).getOption());
+      commandList.add(String.valueOf(params.getDaemonIdleTimeout()));
+      String key = getDaemonKey(params.getArgLine(), params.getForkProfile(), params.getFlightRecording(), params.getManifestOnlyJar());
+      return WSContractDaemonClient.submit(key, commandList, WSContractDaemon.PROVIDE, job, log);
    }
    
    public void runConsumer(WSContractConsumerParams params, String wsdl) throws Exception
    {
-      if (params.isFork())
+      runConsumer(params, wsdl, wsdl);
+   }
+
+   /**
+    * @param params    the tool settings
+    * @param location  the location of the wsdl to consume, e.g. a local copy of the wsdl
+    * @param wsdl      the wsdl reference, for reporting
+    */
+   public void runConsumer(WSContractConsumerParams params, String location, String wsdl) throws Exception
+   {
+      if (quiet)
+      {
+         QuietLog quietLog = new QuietLog(log, "wsconsume of " + wsdl);
+         boolean success = false;
+         try
+         {
+            new WSContractDelegate(quietLog, metrics).runConsumer(params, location, wsdl);
+            success = true;
+         }
+         finally
+         {
+            quietLog.complete(success);
+         }
+         return;
+      }
+      Object event = FlightRecorderEvents.beginInvocation(true, wsdl);
+      final long start = System.nanoTime();
+      long cpuTime = -1;
+      String mode = ExecutionMetrics.MODE_IN_PROCESS;
+      try
+      {
+         if (params.isDaemon())
+         {
+            mode = ExecutionMetrics.MODE_DAEMON;
+            cpuTime = runConsumerInDaemon(params, location);
+         }
+         else if (params.isFork())
+         {
+            mode = ExecutionMetrics.MODE_FORK;
+            cpuTime = runConsumerOutOfProcess(params, location);
+         }
+         else
+         {
+            cpuTime = runConsumerInProcess(params, location);
+         }
+      }
+      finally
+      {
+         record(wsdl, mode, start, cpuTime);
+         FlightRecorderEvents.commitInvocation(event, mode);
+      }
+   }
+   
+   private long runConsumerInProcess(WSContractConsumerParams params, String wsdl) throws Exception
+   {
+      PrintStream ps = newMessageStream();
+      final long startCpu = WSContractInvoker.getThreadCpuTime();
+      try
+      {
+         WSContractInvoker.consume(params.getLoader(), params, wsdl, ps);
+      }
+      finally
+      {
+         ps.close();
+      }
+      return WSContractInvoker.elapsed(startCpu, WSContractInvoker.getThreadCpuTime());
+   }
+   
+   private long runConsumerInDaemon(WSContractConsumerParams params, String wsdl) throws Exception
+   {
+      Properties job = new Properties();
+      params.store(job, WSContractDaemon.JOB);
+      job.setProperty(WSContractDaemon.WSDL, wsdl);
+      List<String> commandList = initCommandList(params.getArgLine(), params.getForkProfile(), params.getManifestOnlyJar(), WSContractDaemon.class.getName(),
+            getFlightRecordingOption(params.getFlightRecording(), params.getFlightRecordingDirectory(), "daemon"),
+            new ClassDataSharing(params.getClassDataArchive(), false).getOption());
+      commandList.add(String.valueOf(params.getDaemonIdleTimeout()));
+      String key = getDaemonKey(params.getArgLine(), params.getForkProfile(), params.getFlightRecording(), params.getManifestOnlyJar());
+      return WSContractDaemonClient.submit(key, commandList, WSContractDaemon.CONSUME, job, log);
+   }
+   
+   /**
+    * Daemons are shared among executions having the same tool classpath and JVM options
+    */
+   private static String getDaemonKey(String argLine, ForkProfile forkProfile, String flightRecording, File manifestOnlyJar) throws IOException
+   {
+      JarFile jar = new JarFile(manifestOnlyJar);
+      try
+      {
+         return argLine + "|" + forkProfile + "|" + flightRecording + "|" + jar.getManifest().getMainAttributes().getValue("Class-Path");
+      }
+      finally
       {
-         runConsumerOutOfProcess(params, wsdl);
+         jar.close();
+      }
+   }
+   
+   /**
+   * Run all the provided consumer jobs, setting the outcome of each of them.
+   * In fork mode a single JVM is started for the whole batch, while in daemon mode
+   * the jobs are all sent to the same tool daemon.
+   *
+   * @param params  the common settings (fork mode, classpath, etc.)
+   * @param jobs    the jobs to run
+   * @throws Exception if the batch could not be run at all
+   */
+   public void runConsumerBatch(WSContractConsumerParams params, List<WSContractConsumerJob> jobs) throws Exception
+   {
+      if (params.isFork() && !params.isDaemon() && quiet)
+      {
+         QuietLog quietLog = new QuietLog(log, "wsconsume batch of " + jobs.size() + " wsdl(s)");
+         boolean success = false;
+         try
+         {
+            new WSContractDelegate(quietLog, metrics).runConsumerBatchOutOfProcess(params, jobs);
+            success = true;
+            for (WSContractConsumerJob job : jobs)
+            {
+               success &= job.getStatus() == Status.SUCCESS;
+            }
+         }
+         finally
+         {
+            quietLog.complete(success);
+         }
+      }
+      else if (params.isFork() && !params.isDaemon())
+      {
+         runConsumerBatchOutOfProcess(params, jobs);
       }
       else
       {
-         runConsumerInProcess(params, wsdl);
+         for (WSContractConsumerJob job : jobs)
+         {
+            runConsumerJob(job);
+         }
       }
    }
    
-   private void runConsumerInProcess(WSContractConsumerParams params, String wsdl) throws Exception
+   private void runConsumerJob(WSContractConsumerJob job)
    {
-      ClassLoader loader = params.getLoader();
-      Class<?> consumerClass = loader.loadClass("org.jboss.ws.api.tools.WSContractConsumer");
-      Object consumer = consumerClass.getMethod("newInstance").invoke(null);
-      setupConsumer(consumerClass, consumer, params);
-      Method m = consumerClass.getMethod("consume", new Class<?>[]{String.class});
-      m.invoke(consumer, new Object[]{wsdl});
+      try
+      {
+         runConsumer(job.getParams(), job.getLocation(), job.getWsdl());
+         job.setStatus(Status.SUCCESS);
+      }
+      catch (MalformedURLException mue)
+      {
+         job.setStatus(Status.INVALID_WSDL);
+         job.setMessage(mue.getMessage());
+      }
+      catch (Exception e)
+      {
+         if (!job.getParams().isFork() && Util.isLoaderFailure(e))
+         {
+            throw new LinkageError("Could not run wsconsume in-process", e);
+         }
+         log.error(e);
+         job.setStatus(Status.FAILED);
+         job.setMessage(String.valueOf(e));
+      }
    }
    
-   private void runConsumerOutOfProcess(WSContractConsumerParams params, String wsdl) throws Exception
+   /**
+   * Run the provided consumer jobs concurrently, using at most the given number of threads.
+   * In batch mode the jobs are split into (at most) one batch per thread, each of them
+   * running in its own forked JVM. The output of each job (or batch) is logged as a
+   * whole once it completes, so that it's not interleaved with the others.
+   *
+   * @param params   the common settings (fork mode, classpath, etc.)
+   * @param jobs     the jobs to run
+   * @param threads  the maximum number of concurrent jobs
+   * @param batch    whether to run the jobs in batches
+   * @throws Exception if any job could not be run at all
+   */
+   public void runConsumerJobs(final WSContractConsumerParams params, List<WSContractConsumerJob> jobs, int threads, final boolean batch) throws Exception
    {
-      List<String> commandList = initCommandList(params.getArgLine(), params.getManifestOnlyJar(), "org.jboss.ws.tools.cmd.WSConsume");
-      String commandLine = getConsumerCommandLine(commandList, params, wsdl);
+      List<List<WSContractConsumerJob>> groups = new ArrayList<List<WSContractConsumerJob>>();
+      final int groupCount = batch ? Math.min(threads, jobs.size()) : jobs.size();
+      for (int i = 0; i < groupCount; i++)
+      {
+         groups.add(new ArrayList<WSContractConsumerJob>());
+      }
+      for (int i = 0; i < jobs.size(); i++)
+      {
+         groups.get(i % groupCount).add(jobs.get(i));
+      }
       
-      if (log.isDebugEnabled())
+      ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, groupCount));
+      try
+      {
+         List<Future<Void>> futures = new ArrayList<Future<Void>>(groupCount);
+         for (final List<WSContractConsumerJob> group : groups)
+         {
+            futures.add(executor.submit(new Callable<Void>()
+            {
+               public Void call() throws Exception
+               {
+                  BufferedLog bufferedLog = new BufferedLog(log);
+                  try
+                  {
+                     WSContractDelegate delegate = new WSContractDelegate(bufferedLog, metrics);
+                     delegate.setQuiet(quiet);
+                     if (batch)
+                     {
+                        delegate.runConsumerBatch(params, group);
+                     }
+                     else
+                     {
+                        delegate.runConsumerJob(group.get(0));
+                     }
+                  }
+                  finally
+                  {
+                     bufferedLog.flush();
+                  }
+                  return null;
+               }
+            }));
+         }
+         for (Future<Void> future : futures)
+         {
+            try
+            {
+               future.get();
+            }
+            catch (ExecutionException ee)
+            {
+               Throwable cause = ee.getCause();
+               if (cause instanceof Error)
+               {
+                  throw (Error)cause;
+               }
+               throw cause instanceof Exception ? (Exception)cause : ee;
+            }
+         }
+      }
+      finally
+      {
+         executor.shutdownNow();
+      }
+   }
+   
+   private void runConsumerBatchOutOfProcess(WSContractConsumerParams params, List<WSContractConsumerJob> jobs) throws Exception
+   {
+      File workDir = params.getManifestOnlyJar().getParentFile();
+      File batchFile = File.createTempFile("wsconsume-batch-", ".properties", workDir);
+      File resultFile = new File(workDir, batchFile.getName().replace("-batch-", "-result-"));
+      ClassDataSharing cds = new ClassDataSharing(params.getClassDataArchive(), true);
+      int result = -1;
+      try
+      {
+         Properties batch = new Properties();
+         batch.setProperty(WSContractBatchRunner.JOBS, String.valueOf(jobs.size()));
+         for (int i = 0; i < jobs.size(); i++)
+         {
+            final String prefix = WSContractBatchRunner.JOB_PREFIX + i;
+            WSContractConsumerJob job = jobs.get(i);
+            job.getParams().store(batch, prefix);
+            batch.setProperty(prefix + WSContractBatchRunner.WSDL_SUFFIX, job.getLocation());
+         }
+         WSContractBatchRunner.store(batch, batchFile);
+         
+         List<String> commandList = initCommandList(params.getArgLine(), params.getForkProfile(), params.getManifestOnlyJar(), WSContractBatchRunner.class.getName(),
+               getFlightRecordingOption(params.getFlightRecording(), params.getFlightRecordingDirectory(), "wsconsume-batch"), cds.getOption());
+         commandList.add(batchFile.getCanonicalPath());
+         commandList.add(resultFile.getCanonicalPath());
+         
+         MavenLogStreamConsumer out = new MavenLogStreamConsumer(log, Type.OUTPUT);
+         MavenLogStreamConsumer err = new MavenLogStreamConsumer(log, Type.ERROR);
+         final long start = System.nanoTime();
+         result = execute(commandList, params.getForkTimeout(), out, err, WSContractBatchRunner.class.getName(),
+               jobs.size() + " wsdl(s)", ExecutionMetrics.MODE_BATCH).getExitCode();
+         long jobsTime = 0;
+         
+         Properties results = resultFile.exists() ? WSContractBatchRunner.load(resultFile) : new Properties();
+         for (int i = 0; i < jobs.size(); i++)
+         {
+            final String prefix = WSContractBatchRunner.JOB_PREFIX + i;
+            WSContractConsumerJob job = jobs.get(i);
+            if (metrics != null)
+            {
+               long time = Long.parseLong(results.getProperty(prefix + WSContractBatchRunner.TIME_SUFFIX, "-1"));
+               ExecutionMetrics.Item item = metrics.getItem(job.getWsdl());
+               item.recordRun(ExecutionMetrics.MODE_BATCH, start, Long.parseLong(results.getProperty(prefix + WSContractBatchRunner.CPU_SUFFIX, "-1")));
+               item.setWallTime(time);
+               jobsTime += Math.max(time, 0);
+            }
+            String status = results.getProperty(prefix + WSContractBatchRunner.STATUS_SUFFIX);
+            if (status != null)
+            {
+               job.setStatus(Status.valueOf(status));
+               job.setMessage(results.getProperty(prefix + WSContractBatchRunner.MESSAGE_SUFFIX));
+            }
+            else
+            {
+               job.setStatus(Status.FAILED);
+               job.setMessage("Process terminated with code " + result);
+            }
+         }
+         if (metrics != null)
+         {
+            //JVM startup and shutdown
+            metrics.addPhaseTime("forkOverhead", System.nanoTime() - start - jobsTime);
+         }
+      }
+      finally
       {
-         log.debug("Running command line: " + commandLine);
+         cds.done(result == 0);
+         batchFile.delete();
+         resultFile.delete();
       }
+   }
+   
+   private long runConsumerOutOfProcess(WSContractConsumerParams params, String wsdl) throws Exception
+   {
+      ClassDataSharing cds = new ClassDataSharing(params.getClassDataArchive(), true);
+      List<String> commandList = initCommandList(params.getArgLine(), params.getForkProfile(), params.getManifestOnlyJar(), "org.jboss.ws.tools.cmd.WSConsume",
+            getFlightRecordingOption(params.getFlightRecording(), params.getFlightRecordingDirectory(), "wsconsume"), cds.getOption());
+      getConsumerCommandLine(commandList, params, wsdl);
       
       MavenLogStreamConsumer out = new MavenLogStreamConsumer(log, Type.OUTPUT);
       MavenLogStreamConsumer err = new MavenLogStreamConsumer(log, Type.ERROR);
-      int result = CommandLineUtils.executeCommandLine(new Commandline(commandLine), out, err);
+      ForkedProcess process = null;
+      try
+      {
+         process = execute(commandList, params.getForkTimeout(), out, err, "org.jboss.ws.tools.cmd.WSConsume", wsdl, ExecutionMetrics.MODE_FORK);
+      }
+      finally
+      {
+         cds.done(process != null && process.getExitCode() == 0);
+      }
       
-      if (result != 0)
+      if (process.getExitCode() != 0)
       {
-         throw new Exception("Process terminated with code " + result);
+         throw new Exception("Process terminated with code " + process.getExitCode());
+      }
+      return process.getCpuTime();
+   }
+   
+   /**
+    * Run the given command in a forked JVM, recording it as a fork spawn event
+    *
+    * @param command  the command and its arguments
+    * @param timeout  the maximum execution time in seconds, 0 for no limit
+    * @return the completed process, for its exit code and CPU time
+    */
+   private ForkedProcess execute(List<String> command, int timeout, MavenLogStreamConsumer out, MavenLogStreamConsumer err,
+         String mainClass, String subject, String mode) throws Exception
+   {
+      if (log.isDebugEnabled())
+      {
+         log.debug("Running command line: " + toCommandLine(command));
+      }
+      Object event = FlightRecorderEvents.beginForkSpawn(mainClass, subject, mode);
+      ForkedProcess process = new ForkedProcess(command, timeout);
+      try
+      {
+         process.execute(out, err);
+         return process;
+      }
+      finally
+      {
+         FlightRecorderEvents.commitForkSpawn(event, process.getExitCode());
+         if (log.isDebugEnabled())
+         {
+            log.debug("Forked process exited with code " + process.getExitCode() + " after " + process.getWallTime() / 1000000L + " ms");
+         }
+      }
+   }
+
+   /**
+    * Build the option starting a flight recording in a forked JVM, dumped on exit
+    * into a dedicated file of the given directory unless the settings name one
+    *
+    * @param settings   the JFR options, "true" for the default ones; null if no recording is wanted
+    * @param directory  the directory of the recording files
+    * @param name       the recording file name prefix
+    * @return the JVM option, or null
+    */
+   static String getFlightRecordingOption(String settings, File directory, String name)
+   {
+      if (settings == null || settings.trim().length() == 0 || "false".equals(settings.trim()))
+      {
+         return null;
+      }
+      List<String> options = new ArrayList<String>();
+      if (!"true".equals(settings.trim()))
+      {
+         options.add(settings.trim());
+      }
+      if (!settings.contains("filename="))
+      {
+         String fileName = "jaxws-tools-" + name + "-" + System.currentTimeMillis() + "-" + RECORDINGS.incrementAndGet() + ".jfr";
+         options.add("filename=" + new File(directory, fileName).getAbsolutePath());
+      }
+      if (!settings.contains("dumponexit="))
+      {
+         options.add("dumponexit=true");
+      }
+      StringBuilder sb = new StringBuilder("-XX:StartFlightRecording=");
+      for (int i = 0; i < options.size(); i++)
+      {
+         sb.append(i > 0 ? "," : "").append(options.get(i));
+      }
+      return sb.toString();
+   }
+   
+   /**
+    * The dynamic AppCDS archive a forked JVM uses or, when it does not exist yet and no
+    * other fork of this Maven JVM is creating it, creates on exit. The archive is dumped
+    * into a temporary file first and only published if the fork succeeds.
+    */
+   private static final class ClassDataSharing
+   {
+      private final File archive;
+      private File creating;
+
+      /**
+       * @param archive    the archive, null if class data sharing is disabled
+       * @param canCreate  whether the fork is short-lived enough for creating the archive at its exit
+       */
+      ClassDataSharing(File archive, boolean canCreate)
+      {
+         this.archive = archive;
+         if (archive != null && canCreate && !archive.isFile())
+         {
+            File tmp = new File(archive.getPath() + "." + UUID.randomUUID() + ".tmp");
+            if (ARCHIVES_IN_PROGRESS.putIfAbsent(archive, tmp) == null)
+            {
+               creating = tmp;
+            }
+         }
+      }
+
+      String getOption()
+      {
+         if (creating != null)
+         {
+            return "-XX:ArchiveClassesAtExit=" + creating.getAbsolutePath();
+         }
+         if (archive != null && archive.isFile())
+         {
+            return "-XX:SharedArchiveFile=" + archive.getAbsolutePath();
+         }
+         return null;
+      }
+
+      void done(boolean success)
+      {
+         if (creating != null)
+         {
+            if (!success || !creating.renameTo(archive))
+            {
+               creating.delete();
+            }
+            ARCHIVES_IN_PROGRESS.remove(archive);
+         }
       }
    }
    
@@ -132,12 +659,14 @@ public class WSContractDelegate
     * Write manifest-only jar to the command-line
     *
     * @param argLine
+    * @param forkProfile the JVM option profile, whose options are added unless configured in the argLine
     * @param manifestOnlyJar
     * @param toolClass
+    * @param jvmOptions additional JVM options, null ones being skipped
     * @return
     * @throws Exception
     */
-   private static List<String> initCommandList(String argLine, File manifestOnlyJar, String toolClass) throws Exception
+   private static List<String> initCommandList(String argLine, ForkProfile forkProfile, File manifestOnlyJar, String toolClass, String... jvmOptions) throws Exception
    {
       List<String> commandList = new ArrayList<String>();
       final String fileName = System.getProperty("os.name", "").startsWith("Windows") ? "java.exe" : "java";
@@ -145,18 +674,46 @@ public class WSContractDelegate
       commandList.add(javaFile.exists() ? javaFile.getCanonicalPath() : "java");
       if (argLine != null)
       {
-         commandList.add(argLine);
+         commandList.addAll(Arrays.asList(CommandLineUtils.translateCommandline(argLine)));
+      }
+      if (forkProfile != null)
+      {
+         commandList.addAll(forkProfile.getOptions(argLine));
+      }
+      for (String option : jvmOptions)
+      {
+         if (option != null)
+         {
+            commandList.add(option);
+         }
       }
       if (Util.getJVMMajorVersion() > 8) {
-         commandList.add("--add-modules=java.compiler ");
+         commandList.add("--add-modules=java.compiler");
       }
-      commandList.add("-classpath ");
+      commandList.add("-classpath");
       commandList.add(manifestOnlyJar.getCanonicalPath());
       commandList.add(toolClass);
       return commandList;
    }
    
-   private static String getConsumerCommandLine(List<String> commandList, WSContractConsumerParams params, String wsdl)
+   /**
+    * @return the given command as a string, for logging purposes only
+    */
+   static String toCommandLine(List<String> commandList)
+   {
+      StringBuilder command = new StringBuilder();
+      for (String s : commandList)
+      {
+         if (command.length() > 0)
+         {
+            command.append(' ');
+         }
+         command.append(s.indexOf(' ') >= 0 ? "\"" + s + "\"" : s);
+      }
+      return command.toString();
+   }
+   
+   private static List<String> getConsumerCommandLine(List<String> commandList, WSContractConsumerParams params, String wsdl)
    {
       List<String> bindingFiles = params.getBindingFiles();
       if (bindingFiles != null && !bindingFiles.isEmpty())
@@ -216,16 +773,10 @@ public class WSContractDelegate
          commandList.add("-a");
       }
       commandList.add(wsdl);
-      StringBuilder command = new StringBuilder();
-      for (String s : commandList)
-      {
-         command.append(s);
-         command.append(" ");
-      }
-      return command.toString();
+      return commandList;
    }
    
-   private static String getProviderCommandLine(List<String> commandList, WSContractProviderParams params)
+   private static List<String> getProviderCommandLine(List<String> commandList, WSContractProviderParams params)
    {
       if (params.isGenerateSource())
       {
@@ -259,108 +810,6 @@ public class WSContractDelegate
          commandList.add(params.getPortSoapAddress());
       }
       commandList.add(params.getEndpointClass());
-      StringBuilder command = new StringBuilder();
-      for (String s : commandList)
-      {
-         command.append(s);
-         command.append(" ");
-      }
-      return command.toString();
-   }
-   
-   private static void setupConsumer(Class<?> consumerClass, Object consumer, WSContractConsumerParams params) throws Exception
-   {
-      callMethod(consumerClass, consumer, "setAdditionalCompilerClassPath", params.getAdditionalCompilerClassPath());
-      Method m = consumerClass.getMethod("setMessageStream", new Class<?>[]{PrintStream.class});
-      m.invoke(consumer, new Object[]{PS});
-      List<String> bindingFiles = params.getBindingFiles();
-      if (bindingFiles != null && !bindingFiles.isEmpty())
-      {
-         List<File> files = new LinkedList<File>();
-         for (String bf : bindingFiles)
-         {
-            files.add(new File(bf));
-         }
-         callMethod(consumerClass, consumer, "setBindingFiles", files);
-      }
-      if (params.getCatalog() != null)
-      {
-         callMethod(consumerClass, consumer, "setCatalog", params.getCatalog());
-      }
-      callMethod(consumerClass, consumer, "setAdditionalHeaders", params.isAdditionalHeaders());
-      callMethod(consumerClass, consumer, "setExtension", params.isExtension());
-      callMethod(consumerClass, consumer, "setGenerateSource", params.isGenerateSource());
-      callMethod(consumerClass, consumer, "setNoCompile", params.isNoCompile());
-      if (params.getOutputDirectory() != null)
-      {
-         callMethod(consumerClass, consumer, "setOutputDirectory", params.getOutputDirectory());
-      }
-      if (params.getSourceDirectory() != null)
-      {
-         callMethod(consumerClass, consumer, "setSourceDirectory", params.getSourceDirectory());
-      }
-      if (params.getTarget() != null)
-      {
-         callMethod(consumerClass, consumer, "setTarget", params.getTarget());
-      }
-      if (params.getTargetPackage() != null)
-      {
-         callMethod(consumerClass, consumer, "setTargetPackage", params.getTargetPackage());
-      }
-      if (params.getWsdlLocation() != null)
-      {
-         callMethod(consumerClass, consumer, "setWsdlLocation", params.getWsdlLocation());
-      }
-      if (params.getEncoding() != null)
-      {
-    	  callMethod(consumerClass, consumer, "setEncoding", params.getEncoding());
-      }
-   }
-   
-   private static Object callMethod(Class<?> clazz, Object obj, String name, boolean param) throws Exception
-   {
-      Method m = clazz.getMethod(name, new Class<?>[]{boolean.class});
-      return m.invoke(obj, new Object[]{param});
-   }
-   
-   private static <T> Object callMethod(Class<?> clazz, Object obj, String name, T param) throws Exception
-   {
-      Method m = clazz.getMethod(name, new Class<?>[]{param.getClass()});
-      return m.invoke(obj, new Object[]{param});
-   }
-   
-   @SuppressWarnings("rawtypes")
-   private static Object callMethod(Class<?> clazz, Object obj, String name, List param) throws Exception
-   {
-      Method m = clazz.getMethod(name, new Class<?>[]{List.class});
-      return m.invoke(obj, new Object[]{param});
-   }
-   
-   private static void setupProvider(Class<?> providerClass, Object provider, WSContractProviderParams params) throws Exception
-   {
-      Method m = providerClass.getMethod("setClassLoader", new Class<?>[]{ClassLoader.class});
-      m.invoke(provider, new Object[]{params.getLoader()});
-      callMethod(providerClass, provider, "setExtension", params.isExtension());
-      callMethod(providerClass, provider, "setGenerateSource", params.isGenerateSource());
-      callMethod(providerClass, provider, "setGenerateWsdl", params.isGenerateWsdl());
-      Method m2 = providerClass.getMethod("setMessageStream", new Class<?>[]{PrintStream.class});
-      m2.invoke(provider, new Object[]{PS});
-      if (params.getOutputDirectory() != null)
-      {
-         callMethod(providerClass, provider, "setOutputDirectory", params.getOutputDirectory());
-      }
-      if (params.getResourceDirectory() != null)
-      {
-         callMethod(providerClass, provider, "setResourceDirectory", params.getResourceDirectory());
-      }
-      if (params.getSourceDirectory() != null)
-      {
-         callMethod(providerClass, provider, "setSourceDirectory", params.getSourceDirectory());
-      }
-      if (params.getPortSoapAddress() != null)
-      {
-          callMethod(providerClass, provider, "setPortSoapAddress", params.getPortSoapAddress());
-      }
+      return commandList;
    }
-
 }
@@ -0,0 +1,220 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Reflectively drives the JBossWS tools API (WSContractConsumer / WSContractProvider)
+ * loaded by a given classloader.
+ *
+ * This class only depends on the JDK, as it's also used within the forked tool JVM
+ * (see {@link WSContractBatchRunner}) where Maven classes are not available.
+ */
+final class WSContractInvoker
+{
+   private WSContractInvoker()
+   {
+   }
+
+   static void consume(ClassLoader loader, WSContractConsumerParams params, String wsdl, PrintStream ps) throws Exception
+   {
+      Class<?> consumerClass = loader.loadClass("org.jboss.ws.api.tools.WSContractConsumer");
+      Object consumer = consumerClass.getMethod("newInstance").invoke(null);
+      setupConsumer(consumerClass, consumer, params, ps);
+      Method m = consumerClass.getMethod("consume", new Class<?>[]{String.class});
+      invoke(m, consumer, wsdl);
+   }
+
+   static void provide(ClassLoader loader, WSContractProviderParams params, PrintStream ps) throws Exception
+   {
+      Class<?> providerClass = loader.loadClass("org.jboss.ws.api.tools.WSContractProvider");
+      Object provider = providerClass.getMethod("newInstance").invoke(null);
+      setupProvider(providerClass, provider, params, loader, ps);
+      Method m = providerClass.getMethod("provide", new Class<?>[]{String.class});
+      invoke(m, provider, params.getEndpointClass());
+   }
+
+   /**
+    * @return the CPU time of the current thread in nanoseconds, -1 if not supported
+    */
+   static long getThreadCpuTime()
+   {
+      ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      return bean.isCurrentThreadCpuTimeSupported() ? bean.getCurrentThreadCpuTime() : -1;
+   }
+
+   /**
+    * @return the CPU time of the current JVM in nanoseconds, -1 if not supported
+    */
+   static long getProcessCpuTime()
+   {
+      try
+      {
+         Class<?> beanClass = Class.forName("com.sun.management.OperatingSystemMXBean");
+         Object bean = ManagementFactory.getOperatingSystemMXBean();
+         return beanClass.isInstance(bean) ? (Long)beanClass.getMethod("getProcessCpuTime").invoke(bean) : -1;
+      }
+      catch (Exception e)
+      {
+         return -1;
+      }
+   }
+
+   /**
+    * @return the CPU time elapsed since the given start, -1 if unknown
+    */
+   static long elapsed(long startCpuTime, long endCpuTime)
+   {
+      return startCpuTime < 0 || endCpuTime < 0 ? -1 : endCpuTime - startCpuTime;
+   }
+
+   /**
+    * Invoke the given tool method, unwrapping the actual failure cause
+    * out of the reflection exception
+    */
+   private static Object invoke(Method m, Object obj, Object param) throws Exception
+   {
+      try
+      {
+         return m.invoke(obj, new Object[]{param});
+      }
+      catch (InvocationTargetException ite)
+      {
+         Throwable cause = ite.getCause();
+         if (cause instanceof Exception)
+         {
+            throw (Exception)cause;
+         }
+         if (cause instanceof Error)
+         {
+            throw (Error)cause;
+         }
+         throw ite;
+      }
+   }
+
+   static void setupConsumer(Class<?> consumerClass, Object consumer, WSContractConsumerParams params, PrintStream ps) throws Exception
+   {
+      if (params.getAdditionalCompilerClassPath() != null)
+      {
+         callMethod(consumerClass, consumer, "setAdditionalCompilerClassPath", params.getAdditionalCompilerClassPath());
+      }
+      Method m = consumerClass.getMethod("setMessageStream", new Class<?>[]{PrintStream.class});
+      m.invoke(consumer, new Object[]{ps});
+      List<String> bindingFiles = params.getBindingFiles();
+      if (bindingFiles != null && !bindingFiles.isEmpty())
+      {
+         List<File> files = new LinkedList<File>();
+         for (String bf : bindingFiles)
+         {
+            files.add(new File(bf));
+         }
+         callMethod(consumerClass, consumer, "setBindingFiles", files);
+      }
+      if (params.getCatalog() != null)
+      {
+         callMethod(consumerClass, consumer, "setCatalog", params.getCatalog());
+      }
+      callMethod(consumerClass, consumer, "setAdditionalHeaders", params.isAdditionalHeaders());
+      callMethod(consumerClass, consumer, "setExtension", params.isExtension());
+      callMethod(consumerClass, consumer, "setGenerateSource", params.isGenerateSource());
+      callMethod(consumerClass, consumer, "setNoCompile", params.isNoCompile());
+      if (params.getOutputDirectory() != null)
+      {
+         callMethod(consumerClass, consumer, "setOutputDirectory", params.getOutputDirectory());
+      }
+      if (params.getSourceDirectory() != null)
+      {
+         callMethod(consumerClass, consumer, "setSourceDirectory", params.getSourceDirectory());
+      }
+      if (params.getTarget() != null)
+      {
+         callMethod(consumerClass, consumer, "setTarget", params.getTarget());
+      }
+      if (params.getTargetPackage() != null)
+      {
+         callMethod(consumerClass, consumer, "setTargetPackage", params.getTargetPackage());
+      }
+      if (params.getWsdlLocation() != null)
+      {
+         callMethod(consumerClass, consumer, "setWsdlLocation", params.getWsdlLocation());
+      }
+      if (params.getEncoding() != null)
+      {
+         callMethod(consumerClass, consumer, "setEncoding", params.getEncoding());
+      }
+   }
+
+   static void setupProvider(Class<?> providerClass, Object provider, WSContractProviderParams params, ClassLoader loader, PrintStream ps) throws Exception
+   {
+      Method m = providerClass.getMethod("setClassLoader", new Class<?>[]{ClassLoader.class});
+      m.invoke(provider, new Object[]{loader});
+      callMethod(providerClass, provider, "setExtension", params.isExtension());
+      callMethod(providerClass, provider, "setGenerateSource", params.isGenerateSource());
+      callMethod(providerClass, provider, "setGenerateWsdl", params.isGenerateWsdl());
+      Method m2 = providerClass.getMethod("setMessageStream", new Class<?>[]{PrintStream.class});
+      m2.invoke(provider, new Object[]{ps});
+      if (params.getOutputDirectory() != null)
+      {
+         callMethod(providerClass, provider, "setOutputDirectory", params.getOutputDirectory());
+      }
+      if (params.getResourceDirectory() != null)
+      {
+         callMethod(providerClass, provider, "setResourceDirectory", params.getResourceDirectory());
+      }
+      if (params.getSourceDirectory() != null)
+      {
+         callMethod(providerClass, provider, "setSourceDirectory", params.getSourceDirectory());
+      }
+      if (params.getPortSoapAddress() != null)
+      {
+         callMethod(providerClass, provider, "setPortSoapAddress", params.getPortSoapAddress());
+      }
+   }
+
+   private static Object callMethod(Class<?> clazz, Object obj, String name, boolean param) throws Exception
+   {
+      Method m = clazz.getMethod(name, new Class<?>[]{boolean.class});
+      return m.invoke(obj, new Object[]{param});
+   }
+
+   private static <T> Object callMethod(Class<?> clazz, Object obj, String name, T param) throws Exception
+   {
+      Method m = clazz.getMethod(name, new Class<?>[]{param.getClass()});
+      return m.invoke(obj, new Object[]{param});
+   }
+
+   @SuppressWarnings("rawtypes")
+   private static Object callMethod(Class<?> clazz, Object obj, String name, List param) throws Exception
+   {
+      Method m = clazz.getMethod(name, new Class<?>[]{List.class});
+      return m.invoke(obj, new Object[]{param});
+   }
+}
@@ -23,11 +23,13 @@ package org.jboss.ws.plugins.tools;
 
 import java.io.File;
 import java.net.URLClassLoader;
-import java.util.List;
+import java.util.Properties;
 
 public class WSContractProviderParams
 {
    private boolean fork;
+   private boolean daemon;
+   private int daemonIdleTimeout;
    private String endpointClass;
    private URLClassLoader loader;
    private boolean extension;
@@ -39,6 +41,11 @@ public class WSContractProviderParams
    private String argLine;
    private String portSoapAddress;
    private File manifestOnlyJar;
+   private String flightRecording;
+   private File flightRecordingDirectory;
+   private File classDataArchive;
+   private ForkProfile forkProfile;
+   private int forkTimeout;
 
    public boolean isFork()
    {
@@ -48,6 +55,22 @@ public class WSContractProviderParams
    {
       this.fork = fork;
    }
+   public boolean isDaemon()
+   {
+      return daemon;
+   }
+   public void setDaemon(boolean daemon)
+   {
+      this.daemon = daemon;
+   }
+   public int getDaemonIdleTimeout()
+   {
+      return daemonIdleTimeout;
+   }
+   public void setDaemonIdleTimeout(int daemonIdleTimeout)
+   {
+      this.daemonIdleTimeout = daemonIdleTimeout;
+   }
    public String getArgLine()
    {
       return argLine;
@@ -139,5 +162,111 @@ public class WSContractProviderParams
    {
       this.manifestOnlyJar = manifestOnlyJar;
    }
-}
 
+   public String getFlightRecording()
+   {
+      return flightRecording;
+   }
+
+   public void setFlightRecording(String flightRecording)
+   {
+      this.flightRecording = flightRecording;
+   }
+
+   public File getFlightRecordingDirectory()
+   {
+      return flightRecordingDirectory;
+   }
+
+   public void setFlightRecordingDirectory(File flightRecordingDirectory)
+   {
+      this.flightRecordingDirectory = flightRecordingDirectory;
+   }
+
+   public File getClassDataArchive()
+   {
+      return classDataArchive;
+   }
+
+   public void setClassDataArchive(File classDataArchive)
+   {
+      this.classDataArchive = classDataArchive;
+   }
+
+   public ForkProfile getForkProfile()
+   {
+      return forkProfile;
+   }
+
+   public void setForkProfile(ForkProfile forkProfile)
+   {
+      this.forkProfile = forkProfile;
+   }
+
+   public int getForkTimeout()
+   {
+      return forkTimeout;
+   }
+
+   public void setForkTimeout(int forkTimeout)
+   {
+      this.forkTimeout = forkTimeout;
+   }
+
+   /**
+    * Store the settings that are relevant to the tool invocation in the given properties,
+    * so that they can be passed to a forked JVM.
+    *
+    * @param props   the properties to store the settings in
+    * @param prefix  the key prefix to use
+    */
+   public void store(Properties props, String prefix)
+   {
+      props.setProperty(prefix + ".endpointClass", endpointClass);
+      props.setProperty(prefix + ".extension", String.valueOf(extension));
+      props.setProperty(prefix + ".generateSource", String.valueOf(generateSource));
+      props.setProperty(prefix + ".generateWsdl", String.valueOf(generateWsdl));
+      storeFile(props, prefix + ".outputDirectory", outputDirectory);
+      storeFile(props, prefix + ".resourceDirectory", resourceDirectory);
+      storeFile(props, prefix + ".sourceDirectory", sourceDirectory);
+      if (portSoapAddress != null)
+      {
+         props.setProperty(prefix + ".portSoapAddress", portSoapAddress);
+      }
+   }
+
+   /**
+    * Load the settings previously saved through {@link #store(Properties, String)}
+    *
+    * @param props   the properties to read the settings from
+    * @param prefix  the key prefix to use
+    * @return the loaded params
+    */
+   public static WSContractProviderParams load(Properties props, String prefix)
+   {
+      WSContractProviderParams params = new WSContractProviderParams();
+      params.setEndpointClass(props.getProperty(prefix + ".endpointClass"));
+      params.setExtension(Boolean.parseBoolean(props.getProperty(prefix + ".extension")));
+      params.setGenerateSource(Boolean.parseBoolean(props.getProperty(prefix + ".generateSource")));
+      params.setGenerateWsdl(Boolean.parseBoolean(props.getProperty(prefix + ".generateWsdl")));
+      params.setOutputDirectory(loadFile(props, prefix + ".outputDirectory"));
+      params.setResourceDirectory(loadFile(props, prefix + ".resourceDirectory"));
+      params.setSourceDirectory(loadFile(props, prefix + ".sourceDirectory"));
+      params.setPortSoapAddress(props.getProperty(prefix + ".portSoapAddress"));
+      return params;
+   }
+
+   private static void storeFile(Properties props, String key, File file)
+   {
+      if (file != null)
+      {
+         props.setProperty(key, file.getAbsolutePath());
+      }
+   }
+
+   private static File loadFile(Properties props, String key)
+   {
+      String value = props.getProperty(key);
+      return value != null ? new File(value) : null;
+   }
+}
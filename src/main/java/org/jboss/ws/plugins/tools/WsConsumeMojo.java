@@ -32,6 +32,7 @@ import org.apache.maven.artifact.Artifact;
  * @goal wsconsume
  * @phase generate-sources
  * @requiresDependencyResolution compile
+ * @threadSafe
  * @description JBossWS WSConsume Maven Plugin.
  *
  * @author alessio.soldano@jboss.com
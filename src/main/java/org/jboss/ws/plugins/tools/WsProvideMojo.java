@@ -32,6 +32,7 @@ import org.apache.maven.artifact.Artifact;
  * @goal wsprovide
  * @phase process-classes
  * @requiresDependencyResolution compile
+ * @threadSafe
  * @description JBossWS WSProvide Maven Plugin.
  * 
  * @author alessio.soldano@jboss.com
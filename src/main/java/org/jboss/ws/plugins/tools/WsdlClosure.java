@@ -0,0 +1,203 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * The set of documents a wsdl is made of, i.e. the wsdl itself plus the
+ * wsdl and schema documents it (transitively) imports or includes.
+ *
+ * Only local (file) documents are actually read; when a remote document is
+ * referenced, the closure is flagged as not local. So is it when a document imports
+ * a namespace without giving its location, as the imported document can then only be
+ * found by the tool through a catalog.
+ */
+public class WsdlClosure
+{
+   static final String WSDL_NS = "http://schemas.xmlsoap.org/wsdl/";
+   static final String XSD_NS = "http://www.w3.org/2001/XMLSchema";
+
+   private final List<URL> documents;
+   private final boolean local;
+
+   private WsdlClosure(List<URL> documents, boolean local)
+   {
+      this.documents = documents;
+      this.local = local;
+   }
+
+   /**
+    * Resolve the closure of the given wsdl reference
+    *
+    * @param wsdl the wsdl reference (URL or file path)
+    * @return the wsdl closure
+    * @throws IOException if a local document can't be read
+    * @throws XMLStreamException if a local document can't be parsed
+    */
+   public static WsdlClosure resolve(String wsdl) throws IOException, XMLStreamException
+   {
+      XMLInputFactory factory = createInputFactory();
+      Set<URL> visited = new LinkedHashSet<URL>();
+      LinkedList<URL> queue = new LinkedList<URL>();
+      queue.add(Util.toURL(wsdl));
+      boolean local = true;
+      while (!queue.isEmpty())
+      {
+         URL url = queue.removeFirst();
+         if (!visited.add(url))
+         {
+            continue;
+         }
+         if (!"file".equals(url.getProtocol()))
+         {
+            local = false;
+            continue;
+         }
+         if (!Util.toFile(url).isFile())
+         {
+            //missing documents are part of the closure too, the tool will complain about them
+            continue;
+         }
+         List<String> namespaceImports = new LinkedList<String>();
+         for (String location : getReferences(factory, url, namespaceImports))
+         {
+            queue.add(new URL(url, location));
+         }
+         if (!namespaceImports.isEmpty())
+         {
+            local = false;
+         }
+      }
+      return new WsdlClosure(Collections.unmodifiableList(new ArrayList<URL>(visited)), local);
+   }
+
+   /**
+    * @return a factory for reading wsdl / schema documents, without resolving DTDs nor external entities
+    */
+   static XMLInputFactory createInputFactory()
+   {
+      XMLInputFactory factory = XMLInputFactory.newInstance();
+      factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+      factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+      return factory;
+   }
+
+   /**
+    * Get the locations of the wsdl / schema documents referenced by the given document
+    */
+   static List<String> getReferences(XMLInputFactory factory, URL url) throws IOException, XMLStreamException
+   {
+      return getReferences(factory, url, null);
+   }
+
+   /**
+    * Get the locations of the wsdl / schema documents referenced by the given document
+    *
+    * @param namespaceImports  if not null, gets the namespaces imported without a location
+    */
+   private static List<String> getReferences(XMLInputFactory factory, URL url, List<String> namespaceImports) throws IOException, XMLStreamException
+   {
+      List<String> references = new LinkedList<String>();
+      InputStream is = url.openStream();
+      try
+      {
+         XMLStreamReader reader = factory.createXMLStreamReader(url.toExternalForm(), is);
+         try
+         {
+            while (reader.hasNext())
+            {
+               if (reader.next() == XMLStreamConstants.START_ELEMENT)
+               {
+                  String location = getReference(reader);
+                  if (location != null && location.trim().length() > 0)
+                  {
+                     references.add(location.trim());
+                  }
+                  else if (namespaceImports != null && "import".equals(reader.getLocalName()) && isReference(reader))
+                  {
+                     namespaceImports.add(reader.getAttributeValue(null, "namespace"));
+                  }
+               }
+            }
+         }
+         finally
+         {
+            reader.close();
+         }
+      }
+      finally
+      {
+         is.close();
+      }
+      return references;
+   }
+
+   private static boolean isReference(XMLStreamReader reader)
+   {
+      return WSDL_NS.equals(reader.getNamespaceURI()) || XSD_NS.equals(reader.getNamespaceURI());
+   }
+
+   private static String getReference(XMLStreamReader reader)
+   {
+      String ns = reader.getNamespaceURI();
+      String name = reader.getLocalName();
+      if (WSDL_NS.equals(ns) && "import".equals(name))
+      {
+         return reader.getAttributeValue(null, "location");
+      }
+      if (XSD_NS.equals(ns) && ("import".equals(name) || "include".equals(name) || "redefine".equals(name)))
+      {
+         return reader.getAttributeValue(null, "schemaLocation");
+      }
+      return null;
+   }
+
+   /**
+    * @return the documents of the closure, the wsdl being the first one
+    */
+   public List<URL> getDocuments()
+   {
+      return documents;
+   }
+
+   /**
+    * @return true if all the documents of the closure are local files, known by their location
+    */
+   public boolean isLocal()
+   {
+      return local;
+   }
+}
@@ -0,0 +1,468 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * A local mirror of remote (http / https) wsdls and of the wsdl and schema documents
+ * they import, for handing local copies to the tools.
+ *
+ * The documents of a closure are downloaded concurrently, level by level. Mirrored
+ * documents are revalidated with conditional requests (<code>If-None-Match</code> /
+ * <code>If-Modified-Since</code>) and served as they are when the server can't be
+ * reached; in offline mode, they're served without any request. Each document is
+ * stored under <code>&lt;scheme&gt;/&lt;host&gt;/&lt;path&gt;</code>, so that relative
+ * references resolve within the mirror, along with a <code>.meta</code> file holding
+ * its validators. An OASIS XML catalog mapping the remote locations to the mirrored
+ * documents can be written for each closure, for resolving absolute references.
+ */
+public class WsdlMirror
+{
+   private static final Charset UTF_8 = Charset.forName("UTF-8");
+   private static final int CONNECT_TIMEOUT = 5000;
+   private static final int READ_TIMEOUT = 30000;
+   private static final String META_SUFFIX = ".meta";
+   private static final String ETAG = "etag";
+   private static final String LAST_MODIFIED = "lastModified";
+
+   private final File directory;
+   private final boolean offline;
+   private final int threads;
+   private final Log log;
+   //the documents already fetched by this mirror, which are not revalidated again
+   private final Map<String, File> fetched = new ConcurrentHashMap<String, File>();
+   private final AtomicInteger downloaded = new AtomicInteger();
+   private final AtomicInteger notModified = new AtomicInteger();
+   private final AtomicInteger served = new AtomicInteger();
+
+   /**
+    * @param directory  the mirror directory
+    * @param offline    whether or not to serve the mirrored documents without any request
+    * @param threads    the maximum number of concurrent downloads
+    * @param log        the log for reporting fallbacks to mirrored documents
+    */
+   public WsdlMirror(File directory, boolean offline, int threads, Log log)
+   {
+      this.directory = directory;
+      this.offline = offline;
+      this.threads = Math.max(1, threads);
+      this.log = log;
+   }
+
+   /**
+    * @return true if the given wsdl reference is an http(s) URL
+    */
+   public static boolean isRemote(String wsdl)
+   {
+      return wsdl.startsWith("http://") || wsdl.startsWith("https://");
+   }
+
+   /**
+    * Mirror the closure of the given remote wsdl
+    *
+    * @param wsdl  the wsdl URL
+    * @return the mirrored closure
+    * @throws IOException if a document can't be fetched nor served from the mirror
+    */
+   public Closure mirror(String wsdl) throws IOException
+   {
+      XMLInputFactory factory = WsdlClosure.createInputFactory();
+      Map<String, File> documents = new LinkedHashMap<String, File>();
+      Set<String> seen = new HashSet<String>();
+      List<URL> level = Collections.singletonList(normalize(new URL(wsdl)));
+      seen.add(level.get(0).toExternalForm());
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try
+      {
+         while (!level.isEmpty())
+         {
+            List<Future<File>> futures = new ArrayList<Future<File>>(level.size());
+            for (final URL url : level)
+            {
+               futures.add(executor.submit(new Callable<File>()
+               {
+                  public File call() throws IOException
+                  {
+                     return fetch(url);
+                  }
+               }));
+            }
+            List<URL> next = new ArrayList<URL>();
+            for (int i = 0; i < level.size(); i++)
+            {
+               URL url = level.get(i);
+               File file = get(futures.get(i));
+               documents.put(url.toExternalForm(), file);
+               for (String location : WsdlClosure.getReferences(factory, file.toURI().toURL()))
+               {
+                  URL reference = normalize(new URL(url, location));
+                  if (isRemote(reference.toExternalForm()) && seen.add(reference.toExternalForm()))
+                  {
+                     next.add(reference);
+                  }
+               }
+            }
+            level = next;
+         }
+      }
+      catch (XMLStreamException xse)
+      {
+         throw new IOException("Could not parse a document of " + wsdl + ": " + xse.getMessage(), xse);
+      }
+      finally
+      {
+         executor.shutdownNow();
+      }
+      return new Closure(documents);
+   }
+
+   private static File get(Future<File> future) throws IOException
+   {
+      try
+      {
+         return future.get();
+      }
+      catch (InterruptedException ie)
+      {
+         Thread.currentThread().interrupt();
+         throw new IOException("Interrupted while mirroring", ie);
+      }
+      catch (ExecutionException ee)
+      {
+         Throwable cause = ee.getCause();
+         throw cause instanceof IOException ? (IOException)cause : new IOException(cause);
+      }
+   }
+
+   /**
+    * Fetch the given document into the mirror, unless the mirrored copy is still valid
+    *
+    * @return the mirrored document
+    */
+   File fetch(URL url) throws IOException
+   {
+      final String key = url.toExternalForm();
+      File file = fetched.get(key);
+      if (file != null)
+      {
+         return file;
+      }
+      file = getFile(url);
+      if (offline)
+      {
+         if (!file.isFile())
+         {
+            throw new IOException(key + " is not in the wsdl mirror " + directory + " and Maven is offline");
+         }
+         served.incrementAndGet();
+      }
+      else
+      {
+         try
+         {
+            download(url, file);
+         }
+         catch (IOException ioe)
+         {
+            if (!file.isFile())
+            {
+               throw ioe;
+            }
+            log.warn("Could not revalidate " + key + ", using the mirrored copy: " + ioe.getMessage());
+            served.incrementAndGet();
+         }
+      }
+      fetched.put(key, file);
+      return file;
+   }
+
+   private void download(URL url, File file) throws IOException
+   {
+      File meta = new File(file.getPath() + META_SUFFIX);
+      Properties validators = new Properties();
+      if (file.isFile() && meta.isFile())
+      {
+         InputStream is = new FileInputStream(meta);
+         try
+         {
+            validators.load(is);
+         }
+         finally
+         {
+            is.close();
+         }
+      }
+      HttpURLConnection conn = (HttpURLConnection)url.openConnection();
+      conn.setConnectTimeout(CONNECT_TIMEOUT);
+      conn.setReadTimeout(READ_TIMEOUT);
+      conn.setUseCaches(false);
+      if (validators.getProperty(ETAG) != null)
+      {
+         conn.setRequestProperty("If-None-Match", validators.getProperty(ETAG));
+      }
+      if (validators.getProperty(LAST_MODIFIED) != null)
+      {
+         conn.setIfModifiedSince(Long.parseLong(validators.getProperty(LAST_MODIFIED)));
+      }
+      int status = conn.getResponseCode();
+      if (status == HttpURLConnection.HTTP_NOT_MODIFIED && file.isFile())
+      {
+         release(conn);
+         notModified.incrementAndGet();
+         return;
+      }
+      if (status != HttpURLConnection.HTTP_OK)
+      {
+         release(conn);
+         throw new IOException("Could not download " + url + ": HTTP " + status);
+      }
+      file.getParentFile().mkdirs();
+      //download next to the target, for atomically replacing the mirrored copy
+      File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+      try
+      {
+         InputStream is = conn.getInputStream();
+         try
+         {
+            Files.copy(is, tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+         }
+         finally
+         {
+            is.close();
+         }
+         validators.clear();
+         validators.setProperty("url", url.toExternalForm());
+         if (conn.getHeaderField("ETag") != null)
+         {
+            validators.setProperty(ETAG, conn.getHeaderField("ETag"));
+         }
+         if (conn.getLastModified() > 0)
+         {
+            validators.setProperty(LAST_MODIFIED, String.valueOf(conn.getLastModified()));
+         }
+         File tmpMeta = new File(tmp.getPath() + META_SUFFIX);
+         OutputStream os = new FileOutputStream(tmpMeta);
+         try
+         {
+            validators.store(os, null);
+         }
+         finally
+         {
+            os.close();
+         }
+         Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+         Files.move(tmpMeta.toPath(), meta.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+         downloaded.incrementAndGet();
+      }
+      finally
+      {
+         tmp.delete();
+         new File(tmp.getPath() + META_SUFFIX).delete();
+      }
+   }
+
+   private static void release(HttpURLConnection conn) throws IOException
+   {
+      InputStream is = conn.getResponseCode() < 400 ? conn.getInputStream() : conn.getErrorStream();
+      if (is != null)
+      {
+         try
+         {
+            byte[] buffer = new byte[1024];
+            while (is.read(buffer) != -1)
+            {
+               //discard
+            }
+         }
+         finally
+         {
+            is.close();
+         }
+      }
+   }
+
+   /**
+    * @return the mirror file of the given URL: <code>&lt;scheme&gt;/&lt;host&gt;[_&lt;port&gt;]/&lt;path&gt;</code>,
+    * the query (if any) being appended to the file name
+    */
+   File getFile(URL url)
+   {
+      String host = url.getPort() != -1 ? url.getHost() + "_" + url.getPort() : url.getHost();
+      File file = new File(new File(directory, url.getProtocol()), sanitize(host));
+      String path = url.getPath();
+      String[] segments = path.split("/");
+      for (int i = 0; i < segments.length - 1; i++)
+      {
+         if (segments[i].length() > 0)
+         {
+            file = new File(file, sanitize(segments[i]));
+         }
+      }
+      String name = path.endsWith("/") || segments.length == 0 ? "index" : sanitize(segments[segments.length - 1]);
+      if (url.getQuery() != null)
+      {
+         name = name + "_" + sanitize(url.getQuery());
+      }
+      return new File(file, name);
+   }
+
+   private static String sanitize(String segment)
+   {
+      String s = segment.replaceAll("[^A-Za-z0-9._-]", "_");
+      return s.length() == 0 || s.equals(".") || s.equals("..") ? "_" : s;
+   }
+
+   private static URL normalize(URL url) throws IOException
+   {
+      try
+      {
+         return url.toURI().normalize().toURL();
+      }
+      catch (URISyntaxException use)
+      {
+         return url;
+      }
+   }
+
+   public int getDownloaded()
+   {
+      return downloaded.get();
+   }
+
+   public int getNotModified()
+   {
+      return notModified.get();
+   }
+
+   public int getServed()
+   {
+      return served.get();
+   }
+
+   @Override
+   public String toString()
+   {
+      return fetched.size() + " documents: " + downloaded + " downloaded, " + notModified + " not modified, " + served
+            + " served from the mirror";
+   }
+
+   /**
+    * The mirrored documents of a remote wsdl
+    */
+   public static class Closure
+   {
+      private final Map<String, File> documents;
+
+      Closure(Map<String, File> documents)
+      {
+         this.documents = Collections.unmodifiableMap(documents);
+      }
+
+      /**
+       * @return the mirrored documents by URL, the wsdl being the first one
+       */
+      public Map<String, File> getDocuments()
+      {
+         return documents;
+      }
+
+      /**
+       * @return the mirrored copy of the wsdl
+       */
+      public File getWsdl()
+      {
+         return documents.values().iterator().next();
+      }
+
+      /**
+       * Write an OASIS XML catalog mapping the URLs of the documents to their mirrored copies
+       *
+       * @param file         the catalog file
+       * @param nextCatalog  a catalog to delegate the other entries to, can be null
+       */
+      public void writeCatalog(File file, File nextCatalog) throws IOException
+      {
+         file.getParentFile().mkdirs();
+         Writer writer = new OutputStreamWriter(new FileOutputStream(file), UTF_8);
+         try
+         {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write("<catalog xmlns=\"urn:oasis:names:tc:entity:xmlns:xml:catalog\" prefer=\"system\">\n");
+            for (Map.Entry<String, File> e : documents.entrySet())
+            {
+               String url = escape(e.getKey());
+               String uri = escape(e.getValue().toURI().toString());
+               writer.write("  <system systemId=\"" + url + "\" uri=\"" + uri + "\"/>\n");
+               writer.write("  <uri name=\"" + url + "\" uri=\"" + uri + "\"/>\n");
+            }
+            if (nextCatalog != null)
+            {
+               writer.write("  <nextCatalog catalog=\"" + escape(nextCatalog.getAbsoluteFile().toURI().toString()) + "\"/>\n");
+            }
+            writer.write("</catalog>\n");
+         }
+         finally
+         {
+            writer.close();
+         }
+      }
+
+      private static String escape(String value)
+      {
+         return value.replace("&", "&amp;").replace("\"", "&quot;").replace("<", "&lt;");
+      }
+   }
+}
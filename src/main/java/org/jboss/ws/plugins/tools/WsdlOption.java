@@ -0,0 +1,138 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * The settings of a single wsdl of a wsconsume execution, overriding the execution
+ * level ones, e.g.
+ * <pre>
+ * &lt;wsdlOption&gt;
+ *   &lt;wsdl&gt;src/main/resources/hello.wsdl&lt;/wsdl&gt;
+ *   &lt;targetPackage&gt;org.example.hello&lt;/targetPackage&gt;
+ * &lt;/wsdlOption&gt;
+ * </pre>
+ */
+public class WsdlOption
+{
+   /**
+    * The wsdl url / file to consume
+    */
+   private String wsdl;
+
+   /**
+    * The target package for the sources generated from the wsdl
+    */
+   private String targetPackage;
+
+   /**
+    * The JAX-WS and JAXB binding files to use for the wsdl
+    */
+   private List<String> bindingFiles;
+
+   /**
+    * The @@WebServiceClient.wsdlLocation value for the wsdl
+    */
+   private String wsdlLocation;
+
+   /**
+    * The OASIS XML Catalog file to use for the wsdl
+    */
+   private File catalog;
+
+   public String getWsdl()
+   {
+      return wsdl;
+   }
+
+   public void setWsdl(String wsdl)
+   {
+      this.wsdl = wsdl;
+   }
+
+   public String getTargetPackage()
+   {
+      return targetPackage;
+   }
+
+   public void setTargetPackage(String targetPackage)
+   {
+      this.targetPackage = targetPackage;
+   }
+
+   public List<String> getBindingFiles()
+   {
+      return bindingFiles;
+   }
+
+   public void setBindingFiles(List<String> bindingFiles)
+   {
+      this.bindingFiles = bindingFiles;
+   }
+
+   public String getWsdlLocation()
+   {
+      return wsdlLocation;
+   }
+
+   public void setWsdlLocation(String wsdlLocation)
+   {
+      this.wsdlLocation = wsdlLocation;
+   }
+
+   public File getCatalog()
+   {
+      return catalog;
+   }
+
+   public void setCatalog(File catalog)
+   {
+      this.catalog = catalog;
+   }
+
+   /**
+    * @return a copy of this option for the given wsdl, whose unset settings are the given execution ones
+    */
+   public WsdlOption withDefaults(String wsdl, String targetPackage, List<String> bindingFiles, String wsdlLocation, File catalog)
+   {
+      WsdlOption option = new WsdlOption();
+      option.wsdl = wsdl;
+      option.targetPackage = this.targetPackage != null ? this.targetPackage : targetPackage;
+      option.bindingFiles = this.bindingFiles != null ? this.bindingFiles : bindingFiles;
+      option.wsdlLocation = this.wsdlLocation != null ? this.wsdlLocation : wsdlLocation;
+      option.catalog = this.catalog != null ? this.catalog : catalog;
+      return option;
+   }
+
+   /**
+    * Set the settings of this option on the given (per-wsdl) params
+    */
+   public void applyTo(WSContractConsumerParams params)
+   {
+      params.setTargetPackage(targetPackage);
+      params.setBindingFiles(bindingFiles);
+      params.setWsdlLocation(wsdlLocation);
+      params.setCatalog(catalog);
+   }
+}
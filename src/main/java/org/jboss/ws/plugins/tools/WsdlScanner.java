@@ -0,0 +1,238 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.ws.plugins.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.SelectorUtils;
+
+/**
+ * Finds the wsdl files of a directory tree matching include / exclude patterns (Ant-style,
+ * as in Maven resources), walking the subdirectories in parallel. Directories that can't
+ * hold included files or that are entirely excluded are not walked; SCM directories are
+ * excluded by default. Symbolic links to directories are followed, except the ones
+ * pointing back to a directory being walked.
+ */
+public class WsdlScanner
+{
+   public static final String DEFAULT_INCLUDE = "**/*.wsdl";
+
+   private final File directory;
+   private final String[] includes;
+   private final String[] excludes;
+
+   /**
+    * @param directory  the directory to scan
+    * @param includes   the include patterns, all the wsdl files if null or empty
+    * @param excludes   the exclude patterns, in addition to the default SCM excludes; can be null
+    */
+   public WsdlScanner(File directory, List<String> includes, List<String> excludes)
+   {
+      this.directory = directory;
+      List<String> inc = includes != null && !includes.isEmpty() ? includes : Collections.singletonList(DEFAULT_INCLUDE);
+      this.includes = normalize(inc);
+      List<String> exc = new ArrayList<String>();
+      Collections.addAll(exc, DirectoryScanner.DEFAULTEXCLUDES);
+      if (excludes != null)
+      {
+         exc.addAll(excludes);
+      }
+      this.excludes = normalize(exc);
+   }
+
+   /**
+    * Scan the directory
+    *
+    * @param parallelism  the maximum number of directories to list concurrently
+    * @return the matching files, sorted by relative path
+    */
+   public List<File> scan(int parallelism)
+   {
+      if (!directory.isDirectory())
+      {
+         return Collections.emptyList();
+      }
+      ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+      List<String> names;
+      try
+      {
+         names = pool.invoke(new ScanTask(null, directory, getCanonicalPath(directory), ""));
+      }
+      finally
+      {
+         pool.shutdown();
+      }
+      Collections.sort(names);
+      List<File> files = new ArrayList<File>(names.size());
+      for (String name : names)
+      {
+         files.add(new File(directory, name));
+      }
+      return files;
+   }
+
+   boolean isIncluded(String name)
+   {
+      return matches(includes, name) && !matches(excludes, name);
+   }
+
+   /**
+    * @return true if files within the given directory could be included
+    */
+   boolean isWalked(String dirName)
+   {
+      for (String exclude : excludes)
+      {
+         if (exclude.endsWith("**") && SelectorUtils.matchPath(exclude, dirName))
+         {
+            return false;
+         }
+      }
+      for (String include : includes)
+      {
+         if (SelectorUtils.matchPatternStart(include, dirName))
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   private static boolean matches(String[] patterns, String name)
+   {
+      for (String pattern : patterns)
+      {
+         if (SelectorUtils.matchPath(pattern, name))
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Use the platform separator and turn trailing separators into a match of the whole
+    * directory content, as the DirectoryScanner does
+    */
+   private static String[] normalize(List<String> patterns)
+   {
+      String[] result = new String[patterns.size()];
+      for (int i = 0; i < result.length; i++)
+      {
+         String pattern = patterns.get(i).trim().replace('/', File.separatorChar).replace('\\', File.separatorChar);
+         result[i] = pattern.endsWith(File.separator) ? pattern + "**" : pattern;
+      }
+      return result;
+   }
+
+   /**
+    * @return the canonical path of the given directory, null if it can't be resolved (e.g. a broken link)
+    */
+   private static String getCanonicalPath(File dir)
+   {
+      try
+      {
+         return dir.getCanonicalPath();
+      }
+      catch (IOException ioe)
+      {
+         return null;
+      }
+   }
+
+   private class ScanTask extends RecursiveTask<List<String>>
+   {
+      private static final long serialVersionUID = 1L;
+
+      private final ScanTask parent;
+      private final File dir;
+      private final String canonicalPath;
+      private final String prefix;
+
+      ScanTask(ScanTask parent, File dir, String canonicalPath, String prefix)
+      {
+         this.parent = parent;
+         this.dir = dir;
+         this.canonicalPath = canonicalPath;
+         this.prefix = prefix;
+      }
+
+      /**
+       * @return true if the given directory is this one or one of its ancestors, i.e. walking it would loop
+       */
+      private boolean isWalking(String path)
+      {
+         for (ScanTask task = this; task != null; task = task.parent)
+         {
+            if (path.equals(task.canonicalPath))
+            {
+               return true;
+            }
+         }
+         return false;
+      }
+
+      @Override
+      protected List<String> compute()
+      {
+         List<String> names = new ArrayList<String>();
+         File[] children = dir.listFiles();
+         if (children == null)
+         {
+            return names;
+         }
+         List<ScanTask> subtasks = new ArrayList<ScanTask>();
+         for (File child : children)
+         {
+            String name = prefix + child.getName();
+            if (child.isDirectory())
+            {
+               if (isWalked(name))
+               {
+                  String path = getCanonicalPath(child);
+                  if (path != null && !isWalking(path))
+                  {
+                     subtasks.add(new ScanTask(this, child, path, name + File.separator));
+                  }
+               }
+            }
+            else if (isIncluded(name))
+            {
+               names.add(name);
+            }
+         }
+         invokeAll(subtasks);
+         for (ScanTask subtask : subtasks)
+         {
+            names.addAll(subtask.join());
+         }
+         return names;
+      }
+   }
+}
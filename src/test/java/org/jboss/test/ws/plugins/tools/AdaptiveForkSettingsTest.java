@@ -0,0 +1,157 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.ws.plugins.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.jboss.ws.plugins.tools.AdaptiveForkSettings;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A test for the sizing of the heap and GC of the forked JVMs from the wsdls to consume
+ * and the memory available, including the container (cgroup) limits
+ */
+public class AdaptiveForkSettingsTest
+{
+   private static final long MB = 1024 * 1024;
+
+   private File dir;
+   private File noCgroup;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      dir = Files.createTempDirectory("adaptive-fork").toFile();
+      noCgroup = new File(dir, "no-cgroup");
+      noCgroup.mkdirs();
+   }
+
+   @After
+   public void tearDown() throws Exception
+   {
+      FileUtils.deleteDirectory(dir);
+   }
+
+   @Test
+   public void testSmallWsdl() throws Exception
+   {
+      List<String> wsdls = Collections.singletonList(writeWsdl("small.wsdl", 10));
+      assertEquals("-Xmx192m -XX:+UseSerialGC", tune(null, wsdls, 1, noCgroup));
+      assertEquals("-ea -Xmx192m -XX:+UseSerialGC", tune(" -ea ", wsdls, 1, noCgroup));
+   }
+
+   @Test
+   public void testSettingsInArgLine() throws Exception
+   {
+      List<String> wsdls = Collections.singletonList(writeWsdl("small.wsdl", 10));
+      assertEquals("-Xmx1g", tune("-Xmx1g", wsdls, 1, noCgroup));
+      assertEquals("-XX:+UseG1GC -Xmx192m", tune("-XX:+UseG1GC", wsdls, 1, noCgroup));
+   }
+
+   @Test
+   public void testNoLocalWsdl() throws Exception
+   {
+      List<String> wsdls = Collections.singletonList(new File(dir, "missing.wsdl").getAbsolutePath());
+      assertEquals("-ea", tune("-ea", wsdls, 1, noCgroup));
+   }
+
+   @Test
+   public void testCgroupV2Limit() throws Exception
+   {
+      List<String> wsdls = Collections.singletonList(writeWsdl("large.wsdl", 3000));
+      File cgroup = new File(dir, "v2");
+      write(new File(cgroup, "memory.max"), String.valueOf(Runtime.getRuntime().maxMemory() + 1000 * MB));
+      //80% of the 1000 MB left by the Maven heap, shared by 2 forks
+      assertEquals("-Xmx400m -XX:+UseSerialGC", tune(null, wsdls, 2, cgroup));
+   }
+
+   @Test
+   public void testCgroupV1Limit() throws Exception
+   {
+      List<String> wsdls = Collections.singletonList(writeWsdl("large.wsdl", 3000));
+      File cgroup = new File(dir, "v1");
+      write(new File(cgroup, "memory.max"), "max");
+      write(new File(cgroup, "memory/memory.limit_in_bytes"), String.valueOf(Runtime.getRuntime().maxMemory() + 500 * MB));
+      assertEquals("-Xmx400m -XX:+UseSerialGC", tune(null, wsdls, 1, cgroup));
+   }
+
+   @Test
+   public void testLargeHeap() throws Exception
+   {
+      List<String> wsdls = Collections.singletonList(writeWsdl("huge.wsdl", 8000));
+      File cgroup = new File(dir, "v2");
+      write(new File(cgroup, "memory.max"), String.valueOf(Runtime.getRuntime().maxMemory() + 10000 * MB));
+      String argLine = tune(null, wsdls, 1, cgroup);
+      assertTrue(argLine, argLine.startsWith("-Xmx1152m "));
+      if (Runtime.getRuntime().availableProcessors() > 1)
+      {
+         assertTrue(argLine, argLine.contains("-XX:+UseParallelGC -XX:ParallelGCThreads="));
+      }
+      else
+      {
+         assertTrue(argLine, argLine.endsWith("-XX:+UseSerialGC"));
+      }
+      //GC threads set in argLine are not overridden
+      argLine = tune("-XX:ParallelGCThreads=2", wsdls, 1, cgroup);
+      assertEquals(argLine, argLine.indexOf("ParallelGCThreads"), argLine.lastIndexOf("ParallelGCThreads"));
+   }
+
+   private static String tune(String argLine, List<String> wsdls, int forks, File cgroup)
+   {
+      return AdaptiveForkSettings.tune(argLine, wsdls, forks, cgroup, new SystemStreamLog());
+   }
+
+   private String writeWsdl(String name, int types) throws IOException
+   {
+      StringBuilder sb = new StringBuilder();
+      sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+      sb.append("<definitions xmlns=\"http://schemas.xmlsoap.org/wsdl/\" xmlns:xs=\"http://www.w3.org/2001/XMLSchema\"");
+      sb.append(" targetNamespace=\"http://test\">\n");
+      sb.append(" <types>\n  <xs:schema targetNamespace=\"http://test\">\n");
+      for (int i = 0; i < types; i++)
+      {
+         sb.append("   <xs:complexType name=\"T").append(i).append("\"><xs:sequence/></xs:complexType>\n");
+      }
+      sb.append("  </xs:schema>\n </types>\n</definitions>\n");
+      File file = new File(dir, name);
+      write(file, sb.toString());
+      return file.getAbsolutePath();
+   }
+
+   private static void write(File file, String content) throws IOException
+   {
+      file.getParentFile().mkdirs();
+      Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+   }
+}
@@ -31,6 +31,7 @@ import org.jboss.ws.plugins.tools.TestWsConsumeMojo;
 import org.jboss.ws.plugins.tools.TestWsProvideMojo;
 import org.jboss.ws.plugins.tools.WsConsumeMojo;
 import org.jboss.ws.plugins.tools.WsProvideMojo;
+import org.jboss.ws.plugins.tools.WsdlOption;
 import org.junit.Test;
 
 /**
@@ -67,7 +68,34 @@ public class ArgumentTest extends AbstractToolsMojoTestCase
       assertThat(mojo.getBindingFiles(), hasItems(new String[] { "b1" }));
       assertThat(mojo.getClasspathElements(), hasItems(new String[] { "cp1", "cp2" }));
       assertThat(mojo.getWsdls(), hasItems(new String[] { "w1", "w2" }));
+      assertEquals(1, mojo.getWsdlOptions().size());
+      WsdlOption option = mojo.getWsdlOptions().get(0);
+      assertEquals("w2", option.getWsdl());
+      assertEquals("tp2", option.getTargetPackage());
+      assertThat(option.getBindingFiles(), hasItems(new String[] { "b2" }));
+      assertEquals("wl2", option.getWsdlLocation());
+      assertEquals("catalog2", option.getCatalog().getName());
+      assertEquals("contracts", mojo.getWsdlDirectory().getName());
+      assertTrue(mojo.isWsdlMirror());
+      assertEquals("mirror", mojo.getWsdlMirrorDirectory().getName());
+      assertThat(mojo.getIncludes(), hasItems(new String[] { "**/*.wsdl" }));
+      assertThat(mojo.getExcludes(), hasItems(new String[] { "legacy/**" }));
       assertTrue(mojo.isFork());
+      assertTrue(mojo.isDaemon());
+      assertEquals(60, mojo.getDaemonIdleTimeout());
+      assertTrue(mojo.isBatch());
+      assertEquals("2C", mojo.getThreads());
+      assertTrue(mojo.isAdaptiveForkMemory());
+      assertTrue(mojo.isForkClassDataSharing());
+      assertEquals(600, mojo.getForkTimeout());
+      assertTrue(mojo.isReproducible());
+      assertEquals("2023-01-01T00:00:00Z", mojo.getOutputTimestamp());
+      assertTrue(mojo.isForce());
+      assertTrue(mojo.isCache());
+      assertEquals("wscache", mojo.getCacheDirectory().getName());
+      assertEquals(64, mojo.getCacheMaxSize());
+      assertEquals("http://cache:8080/jaxws", mojo.getRemoteCache());
+      assertTrue(mojo.isRemoteCacheReadOnly());
       assertEquals("-Dfoo=bar", mojo.getArgLine());
    }
 
@@ -91,8 +119,16 @@ public class ArgumentTest extends AbstractToolsMojoTestCase
       assertTrue(mojo.isVerbose());
       assertThat(mojo.getClasspathElements(), hasItems(new String[] { "cp1", "cp2" }));
       assertTrue(mojo.isFork());
+      assertTrue(mojo.isDaemon());
+      assertEquals(60, mojo.getDaemonIdleTimeout());
+      assertEquals("settings=profile", mojo.getForkFlightRecording());
+      assertEquals("fast-start", mojo.getForkProfile());
+      assertTrue(mojo.isQuiet());
       assertEquals("-Dfoo=bar", mojo.getArgLine());
       assertEquals("http://someHost:somePort", mojo.getPortSoapAddress());
+      assertTrue(mojo.isForce());
+      assertTrue(mojo.isCache());
+      assertEquals("/mnt/shared/jaxws", mojo.getRemoteCache());
    }
 
 }
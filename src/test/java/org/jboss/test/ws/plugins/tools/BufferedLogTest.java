@@ -0,0 +1,118 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.ws.plugins.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jboss.test.ws.plugins.tools.utils.RecordingLog;
+import org.jboss.ws.plugins.tools.BufferedLog;
+import org.junit.Test;
+
+/**
+ * A test for the buffering of the output of concurrent tool invocations
+ */
+public class BufferedLogTest
+{
+   @Test
+   public void testNothingWrittenBeforeFlush() throws Exception
+   {
+      RecordingLog target = new RecordingLog();
+      BufferedLog log = new BufferedLog(target);
+      log.info("one");
+      log.warn("two");
+      log.debug("not enabled");
+      assertTrue(target.getLines().isEmpty());
+      log.flush();
+      assertEquals(Arrays.asList("[info] one", "[warn] two"), target.getLines());
+      log.flush();
+      assertEquals(2, target.getLines().size());
+   }
+
+   @Test
+   public void testOrderingAcrossLevels() throws Exception
+   {
+      RecordingLog target = new RecordingLog(true);
+      BufferedLog log = new BufferedLog(target);
+      log.error("1");
+      log.debug("2");
+      log.info("3");
+      log.warn("4");
+      log.info("5");
+      log.flush();
+      assertEquals(Arrays.asList("[error] 1", "[debug] 2", "[info] 3", "[warn] 4", "[info] 5"), target.getLines());
+   }
+
+   @Test
+   public void testConcurrentFlushesAreNotInterleaved() throws Exception
+   {
+      final RecordingLog target = new RecordingLog();
+      final int threads = 8;
+      final int lines = 200;
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try
+      {
+         List<Future<?>> futures = new ArrayList<Future<?>>();
+         for (int i = 0; i < threads; i++)
+         {
+            final int id = i;
+            futures.add(executor.submit(new Runnable()
+            {
+               public void run()
+               {
+                  BufferedLog log = new BufferedLog(target);
+                  for (int j = 0; j < lines; j++)
+                  {
+                     log.info(id + ":" + j);
+                  }
+                  log.flush();
+               }
+            }));
+         }
+         for (Future<?> future : futures)
+         {
+            future.get();
+         }
+      }
+      finally
+      {
+         executor.shutdownNow();
+      }
+      List<String> recorded = target.getLines();
+      assertEquals(threads * lines, recorded.size());
+      for (int block = 0; block < threads; block++)
+      {
+         String id = recorded.get(block * lines).substring("[info] ".length()).split(":")[0];
+         for (int j = 0; j < lines; j++)
+         {
+            assertEquals("[info] " + id + ":" + j, recorded.get(block * lines + j));
+         }
+      }
+   }
+}
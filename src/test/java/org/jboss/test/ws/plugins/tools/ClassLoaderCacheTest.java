@@ -0,0 +1,115 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.ws.plugins.tools;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.jboss.ws.plugins.tools.ClassLoaderCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A test for the sharing of the classpath aware classloaders within a Maven session
+ * and for their closing once not used anymore
+ */
+public class ClassLoaderCacheTest
+{
+   private static final String MARKER = "marker.txt";
+
+   private File dir;
+   private List<String> classpath;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      dir = Files.createTempDirectory("classloader-cache").toFile();
+      Files.write(new File(dir, MARKER).toPath(), Collections.singletonList("marker"));
+      classpath = Collections.singletonList(dir.getAbsolutePath());
+   }
+
+   @After
+   public void tearDown() throws Exception
+   {
+      //close whatever is left by starting a new session
+      ClassLoaderCache.release(ClassLoaderCache.acquire(new Object(), classpath, new SystemStreamLog()));
+      FileUtils.deleteDirectory(dir);
+   }
+
+   @Test
+   public void testReuseWithinSession() throws Exception
+   {
+      Object session = new Object();
+      URLClassLoader loader = ClassLoaderCache.acquire(session, classpath, new SystemStreamLog());
+      assertSame(loader, ClassLoaderCache.acquire(session, classpath, new SystemStreamLog()));
+      ClassLoaderCache.release(loader);
+      ClassLoaderCache.release(loader);
+      //released loaders are kept open for the next executions of the session
+      assertNotNull(loader.getResource(MARKER));
+      URLClassLoader reused = ClassLoaderCache.acquire(session, classpath, new SystemStreamLog());
+      assertSame(loader, reused);
+      ClassLoaderCache.release(reused);
+
+      //a new session gets a new loader, the unused one of the previous session is closed
+      URLClassLoader other = ClassLoaderCache.acquire(new Object(), classpath, new SystemStreamLog());
+      assertNotSame(loader, other);
+      assertNull(loader.getResource(MARKER));
+      assertNotNull(other.getResource(MARKER));
+      ClassLoaderCache.release(other);
+   }
+
+   @Test
+   public void testLoaderInUseClosedOnRelease() throws Exception
+   {
+      URLClassLoader loader = ClassLoaderCache.acquire(new Object(), classpath, new SystemStreamLog());
+      URLClassLoader other = ClassLoaderCache.acquire(new Object(), classpath, new SystemStreamLog());
+      assertNotSame(loader, other);
+      //still in use by an execution of the previous session
+      assertNotNull(loader.getResource(MARKER));
+      ClassLoaderCache.release(loader);
+      assertNull(loader.getResource(MARKER));
+      ClassLoaderCache.release(other);
+   }
+
+   @Test
+   public void testNoSession() throws Exception
+   {
+      URLClassLoader loader = ClassLoaderCache.acquire(null, classpath, new SystemStreamLog());
+      URLClassLoader other = ClassLoaderCache.acquire(null, classpath, new SystemStreamLog());
+      assertNotSame(loader, other);
+      ClassLoaderCache.release(loader);
+      assertNull(loader.getResource(MARKER));
+      ClassLoaderCache.release(other);
+      assertNull(other.getResource(MARKER));
+   }
+}
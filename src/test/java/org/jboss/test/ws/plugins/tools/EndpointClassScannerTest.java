@@ -0,0 +1,169 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.ws.plugins.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.jboss.ws.plugins.tools.EndpointClassScanner;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A test for the collection of the compiled classes an endpoint is made of, including
+ * the package-info classes and the types only referenced by JAXB annotations
+ */
+public class EndpointClassScannerTest
+{
+   /**
+    * The annotations the scanner looks for, compiled apart from the classes directory
+    */
+   private static final String[][] API = {
+      {"javax/jws/WebService.java", "package javax.jws;\n"
+            + "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n"
+            + "public @interface WebService { String endpointInterface() default \"\"; }\n"},
+      {"javax/xml/bind/annotation/XmlSchema.java", "package javax.xml.bind.annotation;\n"
+            + "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n"
+            + "@java.lang.annotation.Target(java.lang.annotation.ElementType.PACKAGE)\n"
+            + "public @interface XmlSchema { String namespace() default \"\"; }\n"},
+      {"javax/xml/bind/annotation/XmlSeeAlso.java", "package javax.xml.bind.annotation;\n"
+            + "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n"
+            + "public @interface XmlSeeAlso { Class<?>[] value(); }\n"},
+      {"javax/xml/bind/annotation/XmlElement.java", "package javax.xml.bind.annotation;\n"
+            + "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n"
+            + "public @interface XmlElement { Class<?> type() default DEFAULT.class; final class DEFAULT {} }\n"},
+      {"javax/xml/bind/annotation/XmlElements.java", "package javax.xml.bind.annotation;\n"
+            + "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n"
+            + "public @interface XmlElements { XmlElement[] value(); }\n"},
+      {"javax/xml/bind/annotation/XmlElementRef.java", "package javax.xml.bind.annotation;\n"
+            + "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n"
+            + "public @interface XmlElementRef { Class<?> type(); }\n"},
+   };
+
+   private static final String[][] CLASSES = {
+      {"org/example/Endpoint.java", "package org.example;\n"
+            + "@javax.jws.WebService(endpointInterface = \"org.example.EndpointSei\")\n"
+            + "public class Endpoint implements EndpointSei { public Animal get() { return null; } }\n"},
+      {"org/example/EndpointSei.java", "package org.example;\n"
+            + "@javax.xml.bind.annotation.XmlSeeAlso(org.example.pets.Cat.class)\n"
+            + "public interface EndpointSei { Animal get(); }\n"},
+      {"org/example/Animal.java", "package org.example;\n"
+            + "@javax.xml.bind.annotation.XmlSeeAlso(org.example.pets.Dog.class)\n"
+            + "public class Animal {\n"
+            + "   @javax.xml.bind.annotation.XmlElements({@javax.xml.bind.annotation.XmlElement(type = Bone.class)})\n"
+            + "   public Object toy;\n"
+            + "   private Object collar;\n"
+            + "   @javax.xml.bind.annotation.XmlElementRef(type = Collar.class)\n"
+            + "   public Object getCollar() { return collar; }\n"
+            + "}\n"},
+      {"org/example/Bone.java", "package org.example;\npublic class Bone {}\n"},
+      {"org/example/Collar.java", "package org.example;\npublic class Collar {}\n"},
+      {"org/example/Unused.java", "package org.example;\npublic class Unused {}\n"},
+      {"org/example/package-info.java", "@javax.xml.bind.annotation.XmlSchema(namespace = \"urn:example\")\n"
+            + "package org.example;\n"},
+      {"org/example/pets/Cat.java", "package org.example.pets;\npublic class Cat extends org.example.Animal {}\n"},
+      {"org/example/pets/Dog.java", "package org.example.pets;\npublic class Dog extends org.example.Animal {}\n"},
+      {"org/example/pets/package-info.java", "@javax.xml.bind.annotation.XmlSchema(namespace = \"urn:pets\")\n"
+            + "package org.example.pets;\n"},
+      {"org/example/other/package-info.java", "@javax.xml.bind.annotation.XmlSchema(namespace = \"urn:other\")\n"
+            + "package org.example.other;\n"},
+   };
+
+   private File dir;
+   private File api;
+   private File classes;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      dir = Files.createTempDirectory("endpoint-scanner").toFile();
+      api = new File(dir, "api");
+      classes = new File(dir, "classes");
+   }
+
+   @After
+   public void tearDown() throws Exception
+   {
+      FileUtils.deleteDirectory(dir);
+   }
+
+   @Test
+   public void testScan() throws Exception
+   {
+      JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+      Assume.assumeNotNull(compiler);
+      compile(compiler, API, api, null);
+      compile(compiler, CLASSES, classes, api);
+
+      URLClassLoader loader = new URLClassLoader(new URL[]{classes.toURI().toURL(), api.toURI().toURL()}, null);
+      try
+      {
+         Map<String, URL> classFiles = EndpointClassScanner.scan(loader, "org.example.Endpoint", classes);
+         assertEquals(Arrays.asList("org.example.Animal", "org.example.Bone", "org.example.Collar", "org.example.Endpoint",
+               "org.example.EndpointSei", "org.example.package-info", "org.example.pets.Cat", "org.example.pets.Dog",
+               "org.example.pets.package-info"), new ArrayList<String>(classFiles.keySet()));
+         for (Map.Entry<String, URL> e : classFiles.entrySet())
+         {
+            assertTrue(e.getValue().toString(), e.getValue().toString().endsWith(e.getKey().replace('.', '/') + ".class"));
+         }
+      }
+      finally
+      {
+         loader.close();
+      }
+   }
+
+   private void compile(JavaCompiler compiler, String[][] sources, File output, File classpath) throws Exception
+   {
+      File src = new File(dir, "src-" + output.getName());
+      List<String> args = new ArrayList<String>(Arrays.asList("-d", output.getAbsolutePath()));
+      if (classpath != null)
+      {
+         args.addAll(Arrays.asList("-cp", classpath.getAbsolutePath()));
+      }
+      for (String[] source : sources)
+      {
+         File file = new File(src, source[0]);
+         file.getParentFile().mkdirs();
+         Files.write(file.toPath(), source[1].getBytes(StandardCharsets.UTF_8));
+         args.add(file.getAbsolutePath());
+      }
+      output.mkdirs();
+      assertEquals(0, compiler.run(null, null, null, args.toArray(new String[args.size()])));
+   }
+}
@@ -0,0 +1,86 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.ws.plugins.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.jboss.ws.plugins.tools.ExecutionMetrics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A test for the metrics report: only the executions of the current build session are aggregated
+ */
+public class ExecutionMetricsTest
+{
+   private File work;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      work = Files.createTempDirectory("execution-metrics-test").toFile();
+   }
+
+   @After
+   public void tearDown() throws Exception
+   {
+      FileUtils.deleteDirectory(work);
+   }
+
+   @Test
+   public void testReportOfCurrentSession() throws Exception
+   {
+      File records = new File(work, "metrics");
+      File report = new File(work, "jaxws-tools-metrics.json");
+      write("wsconsume-previous", records, "1000", report);
+      assertEquals(1, count(report));
+
+      write("wsconsume-a", records, "2000", report);
+      write("wsconsume-b", records, "2000", report);
+      String content = FileUtils.fileRead(report.getAbsolutePath(), "UTF-8");
+      assertEquals(2, count(report));
+      assertTrue(content.contains("\"wsconsume-a\""));
+      assertTrue(content.contains("\"wsconsume-b\""));
+      assertFalse(content.contains("\"wsconsume-previous\""));
+      assertEquals(2, records.listFiles().length);
+   }
+
+   private static void write(String execution, File records, String session, File report) throws Exception
+   {
+      ExecutionMetrics metrics = new ExecutionMetrics(execution);
+      metrics.stop();
+      metrics.write(records, session, execution, report);
+   }
+
+   private static int count(File report) throws Exception
+   {
+      String content = FileUtils.fileRead(report.getAbsolutePath(), "UTF-8");
+      return content.split("\"execution\"", -1).length - 1;
+   }
+}
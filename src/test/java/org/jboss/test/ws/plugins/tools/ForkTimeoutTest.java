@@ -0,0 +1,120 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.ws.plugins.tools;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.plexus.util.FileUtils;
+import org.jboss.test.ws.plugins.tools.utils.AbstractToolsMojoTestCase;
+import org.jboss.ws.plugins.tools.WsConsumeMojo;
+import org.junit.Test;
+
+/**
+ * A test for the forkTimeout: a forked tool JVM running past the timeout is killed
+ * and the execution fails reporting the timeout.
+ */
+public class ForkTimeoutTest extends AbstractToolsMojoTestCase
+{
+   /**
+    * A fake tool, running way past the timeout while writing a heartbeat every 100 ms
+    */
+   private static final String SLEEPING_TOOL = "package org.jboss.ws.tools.cmd;\n"
+         + "public class WSConsume {\n"
+         + "   public static void main(String[] args) throws Exception {\n"
+         + "      for (int i = 0; i < 600; i++) {\n"
+         + "         java.nio.file.Files.write(java.nio.file.Paths.get(System.getProperty(\"heartbeat.file\")),\n"
+         + "               String.valueOf(i).getBytes());\n"
+         + "         Thread.sleep(100);\n"
+         + "      }\n"
+         + "   }\n"
+         + "}\n";
+
+   private File dir;
+
+   @Override
+   protected void setUp() throws Exception
+   {
+      super.setUp();
+      dir = Files.createTempDirectory("fork-timeout").toFile();
+   }
+
+   @Override
+   protected void tearDown() throws Exception
+   {
+      FileUtils.deleteDirectory(dir);
+      super.tearDown();
+   }
+
+   @Test
+   public void testForkTimeout() throws Exception
+   {
+      JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+      if (compiler == null)
+      {
+         //not running on a JDK
+         return;
+      }
+      File src = new File(dir, "src/org/jboss/ws/tools/cmd/WSConsume.java");
+      src.getParentFile().mkdirs();
+      Files.write(src.toPath(), SLEEPING_TOOL.getBytes(StandardCharsets.UTF_8));
+      File classes = new File(dir, "tool");
+      classes.mkdirs();
+      assertEquals(0, compiler.run(null, null, null, "-d", classes.getAbsolutePath(), src.getAbsolutePath()));
+      File wsdl = new File(dir, "test.wsdl");
+      FileUtils.copyFile(new File(getBasedir(), "src/test/resources/test-embedded/testWsConsume/test.wsdl"), wsdl);
+      File heartbeatFile = new File(dir, "tool.heartbeat");
+
+      WsConsumeMojo mojo = getMojo(WsConsumeMojo.class, "wsconsume", "target/test-classes/test-fork-timeout/wsconsume-plugin-config.xml");
+      setVariableValueToObject(mojo, "wsdls", Collections.singletonList(wsdl.getAbsolutePath()));
+      setVariableValueToObject(mojo, "classpathElements", Collections.singletonList(classes.getAbsolutePath()));
+      setVariableValueToObject(mojo, "pluginArtifacts", Collections.<Artifact>emptyList());
+      setVariableValueToObject(mojo, "outputDirectory", new File(dir, "target/classes"));
+      setVariableValueToObject(mojo, "sourceDirectory", new File(dir, "target/generated-sources/wsconsume"));
+      setVariableValueToObject(mojo, "argLine", "-Dheartbeat.file=" + heartbeatFile.getAbsolutePath());
+
+      final long start = System.nanoTime();
+      try
+      {
+         mojo.execute();
+         fail("The forked tool did not time out");
+      }
+      catch (MojoExecutionException mee)
+      {
+         assertTrue(mee.getMessage(), mee.getMessage().contains("did not complete within 1 s and has been killed"));
+      }
+      assertTrue("The forked tool was not stopped at the timeout", System.nanoTime() - start < 30000000000L);
+
+      assertTrue(heartbeatFile + " not found, the tool did not start", heartbeatFile.isFile());
+      String heartbeat = new String(Files.readAllBytes(heartbeatFile.toPath()), StandardCharsets.UTF_8);
+      Thread.sleep(1000);
+      assertEquals("The forked tool is still running", heartbeat,
+            new String(Files.readAllBytes(heartbeatFile.toPath()), StandardCharsets.UTF_8));
+   }
+}
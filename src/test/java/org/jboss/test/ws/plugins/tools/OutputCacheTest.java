@@ -0,0 +1,150 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.ws.plugins.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.jboss.ws.plugins.tools.OutputCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A test for the local tool output cache: store / restore, least recently used
+ * eviction beyond the maximum size and recovery from corrupted entries
+ */
+public class OutputCacheTest
+{
+   private static final int TREE_SIZE = 100;
+
+   private File work;
+   private File root;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      work = Files.createTempDirectory("output-cache-test").toFile();
+      root = new File(work, "cache");
+   }
+
+   @After
+   public void tearDown() throws Exception
+   {
+      FileUtils.deleteDirectory(work);
+   }
+
+   @Test
+   public void testStoreAndRestore() throws Exception
+   {
+      OutputCache cache = new OutputCache(root, Long.MAX_VALUE);
+      File target = new File(work, "target");
+      assertFalse(cache.restore("a", target));
+      cache.store("a", createTree("a"));
+      assertTrue(cache.restore("a", target));
+      assertTree("a", target);
+   }
+
+   @Test
+   public void testLeastRecentlyUsedEviction() throws Exception
+   {
+      //room for two trees only
+      OutputCache cache = new OutputCache(root, 2 * TREE_SIZE + TREE_SIZE / 2);
+      cache.store("a", createTree("a"));
+      pause();
+      cache.store("b", createTree("b"));
+      pause();
+      //a is now more recently used than b
+      assertTrue(cache.restore("a", new File(work, "restored-a")));
+      pause();
+      cache.store("c", createTree("c"));
+
+      assertTrue(cache.restore("a", new File(work, "target-a")));
+      assertTrue(cache.restore("c", new File(work, "target-c")));
+      assertFalse(cache.restore("b", new File(work, "target-b")));
+      assertFalse(new File(root, "b").exists());
+   }
+
+   @Test
+   public void testCorruptedEntries() throws Exception
+   {
+      OutputCache cache = new OutputCache(root, Long.MAX_VALUE);
+      cache.store("a", createTree("a"));
+      cache.store("b", createTree("b"));
+      //an entry without its descriptor, e.g. left over by an interrupted eviction
+      assertTrue(new File(root, "a/entry.properties").delete());
+      //an entry without its content
+      FileUtils.deleteDirectory(new File(root, "b/content"));
+
+      assertFalse(cache.restore("a", new File(work, "target-a")));
+      assertFalse(cache.restore("b", new File(work, "target-b")));
+
+      //storing the trees again repairs the entries
+      cache.store("a", createTree("a"));
+      cache.store("b", createTree("b"));
+      File target = new File(work, "target");
+      assertTrue(cache.restore("a", target));
+      assertTree("a", target);
+      target = new File(work, "target2");
+      assertTrue(cache.restore("b", target));
+      assertTree("b", target);
+   }
+
+   private File createTree(String name) throws Exception
+   {
+      File tree = new File(work, "source-" + name);
+      FileUtils.deleteDirectory(tree);
+      File file = new File(tree, "org/example/" + name + ".java");
+      file.getParentFile().mkdirs();
+      Files.write(file.toPath(), content(name));
+      return tree;
+   }
+
+   private static void assertTree(String name, File target) throws Exception
+   {
+      assertArrayEquals(content(name), Files.readAllBytes(new File(target, "org/example/" + name + ".java").toPath()));
+   }
+
+   private static byte[] content(String name)
+   {
+      StringBuilder sb = new StringBuilder();
+      while (sb.length() < TREE_SIZE)
+      {
+         sb.append(name);
+      }
+      return sb.toString().getBytes(StandardCharsets.UTF_8);
+   }
+
+   /**
+    * Let the clock move forward, the recency of the entries being tracked through file modification times
+    */
+   private static void pause() throws InterruptedException
+   {
+      Thread.sleep(50);
+   }
+}
@@ -0,0 +1,128 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.ws.plugins.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.jboss.ws.plugins.tools.OutputSync;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A test for the publishing of the generated outputs: unchanged files are left untouched
+ * and the outputs not generated anymore are deleted
+ */
+public class OutputSyncTest
+{
+   private static final long PAST = 1000000000000L;
+
+   private File staging;
+   private File target;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      staging = Files.createTempDirectory("output-sync-staging").toFile();
+      target = Files.createTempDirectory("output-sync-target").toFile();
+   }
+
+   @After
+   public void tearDown() throws Exception
+   {
+      FileUtils.deleteDirectory(staging);
+      FileUtils.deleteDirectory(target);
+   }
+
+   @Test
+   public void testUnchangedFilesKeepTheirTimestamp() throws Exception
+   {
+      write(target, "foo/Same.java", "same");
+      write(target, "foo/Changed.java", "old");
+      new File(target, "foo/Same.java").setLastModified(PAST);
+      new File(target, "foo/Changed.java").setLastModified(PAST);
+      write(staging, "foo/Same.java", "same");
+      write(staging, "foo/Changed.java", "new");
+      write(staging, "foo/bar/Added.java", "added");
+
+      OutputSync sync = OutputSync.sync(staging, target);
+      assertEquals(Arrays.asList("foo/Changed.java", "foo/Same.java", "foo/bar/Added.java"), sync.getFiles());
+      assertEquals(2, sync.getWritten());
+      assertEquals(1, sync.getUnchanged());
+      assertEquals(PAST, new File(target, "foo/Same.java").lastModified());
+      assertTrue(new File(target, "foo/Changed.java").lastModified() != PAST);
+      assertEquals("new", read(target, "foo/Changed.java"));
+      assertEquals("added", read(target, "foo/bar/Added.java"));
+   }
+
+   @Test
+   public void testRemovedOutputsAreDeleted() throws Exception
+   {
+      write(target, "foo/Kept.java", "kept");
+      write(target, "foo/Removed.java", "removed");
+      write(target, "foo/gone/Removed.java", "removed");
+      write(staging, "foo/Kept.java", "kept");
+
+      OutputSync sync = OutputSync.sync(staging, target);
+      Set<String> obsolete = new HashSet<String>(Arrays.asList("foo/Kept.java", "foo/Removed.java", "foo/gone/Removed.java"));
+      obsolete.removeAll(sync.getFiles());
+      sync.delete(obsolete);
+      assertEquals(2, sync.getDeleted());
+      assertTrue(new File(target, "foo/Kept.java").isFile());
+      assertFalse(new File(target, "foo/Removed.java").exists());
+      //directories left empty are pruned
+      assertFalse(new File(target, "foo/gone").exists());
+      assertTrue(new File(target, "foo").isDirectory());
+   }
+
+   @Test
+   public void testFileListRoundTrip() throws Exception
+   {
+      assertEquals(Collections.emptyList(), OutputSync.split(null));
+      assertEquals(Collections.emptyList(), OutputSync.split(OutputSync.join(Collections.<String>emptyList())));
+      assertEquals(Arrays.asList("a/B.java", "C.java"), OutputSync.split(OutputSync.join(Arrays.asList("a/B.java", "C.java"))));
+   }
+
+   private static void write(File dir, String name, String content) throws IOException
+   {
+      File file = new File(dir, name);
+      file.getParentFile().mkdirs();
+      Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+   }
+
+   private static String read(File dir, String name) throws IOException
+   {
+      return new String(Files.readAllBytes(new File(dir, name).toPath()), StandardCharsets.UTF_8);
+   }
+}
@@ -0,0 +1,111 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.ws.plugins.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.jboss.test.ws.plugins.tools.utils.RecordingLog;
+import org.jboss.ws.plugins.tools.QuietLog;
+import org.junit.Test;
+
+/**
+ * A test for the quiet mode log: nothing but a summary line on success, the last
+ * lines of the tool output on failure
+ */
+public class QuietLogTest
+{
+   @Test
+   public void testNothingPrintedOnSuccess() throws Exception
+   {
+      RecordingLog target = new RecordingLog();
+      QuietLog log = new QuietLog(target, "wsconsume of test.wsdl");
+      log.info("Loading FrontEnd jaxws ...");
+      log.info("Generating code...");
+      log.error("not really an error");
+      assertTrue(target.getLines().isEmpty());
+      log.complete(true);
+      assertEquals(Arrays.asList("[info] Completed wsconsume of test.wsdl (3 line(s) of tool output)"), target.getLines());
+   }
+
+   @Test
+   public void testWarningsAreNotBuffered() throws Exception
+   {
+      RecordingLog target = new RecordingLog();
+      QuietLog log = new QuietLog(target, "wsconsume of test.wsdl");
+      log.info("output");
+      log.warn("deprecated option");
+      assertEquals(Arrays.asList("[warn] deprecated option"), target.getLines());
+      log.complete(true);
+      assertEquals("[info] Completed wsconsume of test.wsdl (1 line(s) of tool output, 1 warning(s))", target.getLines().get(1));
+   }
+
+   @Test
+   public void testAllLinesReplayedOnFailure() throws Exception
+   {
+      RecordingLog target = new RecordingLog();
+      QuietLog log = new QuietLog(target, "wsconsume of test.wsdl");
+      log.info("one");
+      log.error("two");
+      log.info("three");
+      log.complete(false);
+      assertEquals(Arrays.asList("[error] Failed wsconsume of test.wsdl (3 line(s) of tool output), tool output follows:",
+            "[info] one", "[error] two", "[info] three"), target.getLines());
+   }
+
+   @Test
+   public void testLastLinesReplayedOnFailure() throws Exception
+   {
+      RecordingLog target = new RecordingLog();
+      QuietLog log = new QuietLog(target, "wsconsume of test.wsdl");
+      final int total = QuietLog.MAX_LINES + 500;
+      log.error("early error");
+      for (int i = 1; i < total; i++)
+      {
+         log.info("line " + i);
+      }
+      log.complete(false);
+      List<String> lines = target.getLines();
+      assertEquals("[error] Failed wsconsume of test.wsdl (" + total + " line(s) of tool output), tool output follows:", lines.get(0));
+      assertEquals("[error] [500 earlier line(s) not kept]", lines.get(1));
+      assertEquals("[info] line 500", lines.get(2));
+      assertEquals("[info] line " + (total - 1), lines.get(QuietLog.MAX_LINES + 1));
+      //the error lines which did not fit are replayed at the end
+      assertEquals(Arrays.asList("[error] Last error lines:", "[error] early error"), lines.subList(QuietLog.MAX_LINES + 2, lines.size()));
+   }
+
+   @Test
+   public void testCompleteResetsTheBuffer() throws Exception
+   {
+      RecordingLog target = new RecordingLog();
+      QuietLog log = new QuietLog(target, "wsconsume of test.wsdl");
+      log.info("first run");
+      log.complete(true);
+      log.info("second run");
+      log.complete(false);
+      assertEquals(Arrays.asList("[info] Completed wsconsume of test.wsdl (1 line(s) of tool output)",
+            "[error] Failed wsconsume of test.wsdl (1 line(s) of tool output), tool output follows:", "[info] second run"), target.getLines());
+   }
+}
@@ -0,0 +1,218 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.ws.plugins.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.jboss.ws.plugins.tools.OutputCache;
+import org.jboss.ws.plugins.tools.RemoteOutputCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A test for the remote tier of the tool output cache, run against a local
+ * stand-in HTTP server and a shared directory
+ */
+public class RemoteOutputCacheTest
+{
+   private static final String KEY = "0123456789abcdef";
+
+   private final Map<String, byte[]> store = new ConcurrentHashMap<String, byte[]>();
+   private HttpServer server;
+   private String url;
+   private File work;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      work = Files.createTempDirectory("remote-cache-test").toFile();
+      server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+      server.createContext("/cache", new HttpHandler()
+      {
+         public void handle(HttpExchange exchange) throws IOException
+         {
+            String path = exchange.getRequestURI().getPath();
+            if ("PUT".equals(exchange.getRequestMethod()))
+            {
+               store.put(path, read(exchange.getRequestBody()));
+               exchange.sendResponseHeaders(201, -1);
+            }
+            else if (store.containsKey(path))
+            {
+               byte[] body = store.get(path);
+               exchange.sendResponseHeaders(200, body.length);
+               exchange.getResponseBody().write(body);
+            }
+            else
+            {
+               exchange.sendResponseHeaders(404, -1);
+            }
+            exchange.close();
+         }
+      });
+      server.start();
+      url = "http://127.0.0.1:" + server.getAddress().getPort() + "/cache/";
+   }
+
+   @After
+   public void tearDown() throws Exception
+   {
+      server.stop(0);
+      FileUtils.deleteDirectory(work);
+   }
+
+   @Test
+   public void testHttpRoundTrip() throws Exception
+   {
+      File source = createTree("source");
+      RemoteOutputCache cache = new RemoteOutputCache(url, false, new SystemStreamLog());
+      assertFalse(cache.fetch(KEY, new File(work, "miss")));
+      cache.publish(KEY, source);
+      assertTrue(store.containsKey("/cache/" + KEY + ".sha256"));
+
+      File target = new File(work, "target");
+      assertTrue(cache.fetch(KEY, target));
+      assertTreeEquals(source, target);
+      assertFalse(cache.isDisabled());
+   }
+
+   @Test
+   public void testSharedDirectoryRoundTrip() throws Exception
+   {
+      File source = createTree("source");
+      File shared = new File(work, "shared");
+      new RemoteOutputCache(shared.toURI().toString(), false, new SystemStreamLog()).publish(KEY, source);
+
+      File target = new File(work, "target");
+      assertTrue(new RemoteOutputCache(shared.getAbsolutePath(), true, new SystemStreamLog()).fetch(KEY, target));
+      assertTreeEquals(source, target);
+   }
+
+   @Test
+   public void testReadOnly() throws Exception
+   {
+      new RemoteOutputCache(url, true, new SystemStreamLog()).publish(KEY, createTree("source"));
+      assertTrue(store.isEmpty());
+   }
+
+   @Test
+   public void testCorruptedEntry() throws Exception
+   {
+      RemoteOutputCache cache = new RemoteOutputCache(url, false, new SystemStreamLog());
+      cache.publish(KEY, createTree("source"));
+      for (Map.Entry<String, byte[]> e : store.entrySet())
+      {
+         if (e.getKey().endsWith(".zip"))
+         {
+            e.getValue()[e.getValue().length / 2] ^= 0x5a;
+         }
+      }
+      assertFalse(cache.fetch(KEY, new File(work, "target")));
+      assertFalse(cache.isDisabled());
+   }
+
+   @Test
+   public void testDeadCache() throws Exception
+   {
+      server.stop(0);
+      RemoteOutputCache cache = new RemoteOutputCache(url, false, new SystemStreamLog());
+      assertFalse(cache.fetch(KEY, new File(work, "target")));
+      assertTrue(cache.isDisabled());
+      //must not throw
+      cache.publish(KEY, createTree("source"));
+   }
+
+   @Test
+   public void testLocalMissFetchesRemote() throws Exception
+   {
+      File source = createTree("source");
+      OutputCache agent1 = new OutputCache(new File(work, "agent1"), Long.MAX_VALUE,
+            new RemoteOutputCache(url, false, new SystemStreamLog()));
+      agent1.store(KEY, source);
+
+      OutputCache agent2 = new OutputCache(new File(work, "agent2"), Long.MAX_VALUE,
+            new RemoteOutputCache(url, false, new SystemStreamLog()));
+      File target = new File(work, "target");
+      assertTrue(agent2.restore(KEY, target));
+      assertTreeEquals(source, target);
+
+      //now cached locally as well
+      server.stop(0);
+      File target2 = new File(work, "target2");
+      assertTrue(new OutputCache(new File(work, "agent2"), Long.MAX_VALUE).restore(KEY, target2));
+      assertTreeEquals(source, target2);
+   }
+
+   private File createTree(String name) throws IOException
+   {
+      File dir = new File(work, name);
+      new File(dir, "org/foo").mkdirs();
+      FileUtils.fileWrite(new File(dir, "org/foo/Service.java").getAbsolutePath(), "UTF-8", "package org.foo;\npublic class Service {}\n");
+      FileUtils.fileWrite(new File(dir, "org/foo/Port.java").getAbsolutePath(), "UTF-8", "package org.foo;\npublic interface Port {}\n");
+      FileUtils.fileWrite(new File(dir, "Service.wsdl").getAbsolutePath(), "UTF-8", "<definitions/>\n");
+      return dir;
+   }
+
+   private static void assertTreeEquals(File expected, File actual) throws IOException
+   {
+      @SuppressWarnings("unchecked")
+      List<String> names = FileUtils.getFileNames(expected, null, null, false);
+      assertEquals(names.size(), FileUtils.getFileNames(actual, null, null, false).size());
+      for (String name : names)
+      {
+         assertArrayEquals(name, Files.readAllBytes(new File(expected, name).toPath()),
+               Files.readAllBytes(new File(actual, name).toPath()));
+      }
+   }
+
+   private static byte[] read(InputStream is) throws IOException
+   {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = is.read(buffer)) != -1)
+      {
+         baos.write(buffer, 0, read);
+      }
+      return baos.toByteArray();
+   }
+}
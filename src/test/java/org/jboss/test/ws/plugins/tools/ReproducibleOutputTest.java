@@ -0,0 +1,169 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.ws.plugins.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.jboss.ws.plugins.tools.ReproducibleOutput;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A test for the normalization of the generated outputs in reproducible mode: two
+ * generations differing in timestamps and declaration order only end up byte-identical
+ */
+public class ReproducibleOutputTest
+{
+   private static final String SOURCE = "\n"
+         + "package org.example;\n"
+         + "\n"
+         + "/**\n"
+         + " * This class was generated by Apache CXF 3.5.5\n"
+         + " * %s\n"
+         + " * Generated source version: 3.5.5\n"
+         + " *\n"
+         + " */\n"
+         + "@javax.annotation.Generated(value = \"org.apache.cxf.tools.wsdlto.WSDLToJava\", date = \"%s\")\n"
+         + "@XmlSeeAlso({%s})\n"
+         + "public interface Hello {\n"
+         + "}\n";
+
+   private static final String SCHEMA = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+         + "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\" targetNamespace=\"urn:test\">\n"
+         + "  <xs:import namespace=\"urn:other\"/>\n"
+         + "%s"
+         + "</xs:schema>\n";
+
+   private static final String[] DECLARATIONS = {
+         "  <xs:element name=\"hello\" type=\"xs:string\"/>\n",
+         "  <!-- the response -->\n  <xs:element name=\"helloResponse\" type=\"xs:string\"/>\n",
+         "  <xs:complexType name=\"greeting\">\n    <xs:sequence>\n      <xs:element name=\"b\" type=\"xs:string\"/>\n"
+               + "      <xs:element name=\"a\" type=\"xs:string\"/>\n    </xs:sequence>\n  </xs:complexType>\n" };
+
+   private File work;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      work = Files.createTempDirectory("reproducible-output-test").toFile();
+   }
+
+   @After
+   public void tearDown() throws Exception
+   {
+      FileUtils.deleteDirectory(work);
+   }
+
+   @Test
+   public void testIdenticalOutputs() throws Exception
+   {
+      File first = generate("first", "2026-10-17T10:00:00.123+02:00", "A.class, B.class", "\n", 0, 1, 2);
+      File second = generate("second", "2026-10-18T11:30:00.456+02:00", "B.class, A.class", "\r\n", 2, 1, 0);
+      ReproducibleOutput output = new ReproducibleOutput(null);
+      output.normalize(first);
+      output.normalize(second);
+      for (String name : new String[]{"org/example/Hello.java", "hello.xsd"})
+      {
+         assertArrayEquals(name, read(first, name), read(second, name));
+      }
+      String source = new String(read(first, "org/example/Hello.java"), StandardCharsets.UTF_8);
+      assertFalse(source.contains("2026"));
+      assertTrue(source.contains("@javax.annotation.Generated(value = \"org.apache.cxf.tools.wsdlto.WSDLToJava\")"));
+      assertTrue(source.contains("@XmlSeeAlso({A.class, B.class})"));
+      String schema = new String(read(first, "hello.xsd"), StandardCharsets.UTF_8);
+      assertTrue(schema.indexOf("xs:import") < schema.indexOf("complexType"));
+      assertTrue(schema.indexOf("complexType") < schema.indexOf("\"hello\""));
+      assertTrue(schema.indexOf("the response") < schema.indexOf("\"helloResponse\""));
+      //nested declarations are meaningful, they're left as they are
+      assertTrue(schema.indexOf("\"b\"") < schema.indexOf("\"a\""));
+
+      //normalized outputs are left untouched
+      assertEquals(0, output.normalize(first));
+   }
+
+   @Test
+   public void testPinnedTimestamp() throws Exception
+   {
+      File dir = generate("pinned", "2026-10-17T10:00:00.123+02:00", "A.class", "\n", 0, 1, 2);
+      new ReproducibleOutput(ReproducibleOutput.parseOutputTimestamp("2023-01-01T01:00:00+01:00")).normalize(dir);
+      String source = new String(read(dir, "org/example/Hello.java"), StandardCharsets.UTF_8);
+      assertTrue(source.contains(" * 2023-01-01T00:00:00Z\n"));
+      assertTrue(source.contains("date = \"2023-01-01T00:00:00Z\""));
+      assertFalse(source.contains("2026"));
+   }
+
+   @Test
+   public void testOutputTimestamp() throws Exception
+   {
+      assertEquals(Instant.ofEpochSecond(1672531200L), ReproducibleOutput.parseOutputTimestamp("1672531200"));
+      assertEquals(Instant.ofEpochSecond(1672531200L), ReproducibleOutput.parseOutputTimestamp("2023-01-01T00:00:00Z"));
+      assertNull(ReproducibleOutput.parseOutputTimestamp(null));
+      assertNull(ReproducibleOutput.parseOutputTimestamp("a"));
+      assertNull(ReproducibleOutput.parseOutputTimestamp("${project.build.outputTimestamp}"));
+      try
+      {
+         ReproducibleOutput.parseOutputTimestamp("yesterday");
+         assertTrue("Expected an IllegalArgumentException", false);
+      }
+      catch (IllegalArgumentException iae)
+      {
+         //expected
+      }
+   }
+
+   private File generate(String name, String timestamp, String seeAlso, String eol, int... order) throws IOException
+   {
+      File dir = new File(work, name);
+      File source = new File(dir, "org/example/Hello.java");
+      source.getParentFile().mkdirs();
+      write(source, String.format(SOURCE, timestamp, timestamp, seeAlso), eol);
+      StringBuilder declarations = new StringBuilder();
+      for (int i : order)
+      {
+         declarations.append(DECLARATIONS[i]);
+      }
+      write(new File(dir, "hello.xsd"), String.format(SCHEMA, declarations), eol);
+      return dir;
+   }
+
+   private static void write(File file, String content, String eol) throws IOException
+   {
+      Files.write(file.toPath(), content.replace("\n", eol).getBytes(StandardCharsets.UTF_8));
+   }
+
+   private static byte[] read(File dir, String name) throws IOException
+   {
+      return Files.readAllBytes(new File(dir, name).toPath());
+   }
+}
@@ -0,0 +1,88 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.ws.plugins.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ServiceConfigurationError;
+
+import org.jboss.ws.plugins.tools.Util;
+import org.junit.Test;
+
+/**
+ * A test for the plugin utilities
+ */
+public class UtilTest
+{
+   @Test
+   public void testLoaderFailures() throws Exception
+   {
+      assertTrue(Util.isLoaderFailure(new NoClassDefFoundError("javax/xml/ws/Service")));
+      assertTrue(Util.isLoaderFailure(new ServiceConfigurationError("Provider not found")));
+      assertTrue(Util.isLoaderFailure(new InvocationTargetException(new ClassNotFoundException("org.apache.cxf.tools.wsdlto.WSDLToJava"))));
+      assertTrue(Util.isLoaderFailure(new IllegalStateException("Implementation of JAXB-API has not been found",
+            new ClassNotFoundException("com.sun.xml.bind.v2.ContextFactory"))));
+      assertTrue(Util.isLoaderFailure(new ClassNotFoundException("javax/xml/bind/JAXBContext")));
+      assertFalse(Util.isLoaderFailure(new InvocationTargetException(new IllegalArgumentException("Invalid wsdl"))));
+      //missing user classes are failures of the tools run
+      assertFalse(Util.isLoaderFailure(new InvocationTargetException(new ClassNotFoundException("org.example.Endpoint"))));
+      assertFalse(Util.isLoaderFailure(new ClassNotFoundException(null)));
+      Throwable cause = new ClassNotFoundException("com.sun.xml.bind.v2.ContextFactory");
+      assertSame(cause, Util.getLoaderFailure(new IllegalStateException(cause)));
+      assertFalse(Util.isLoaderFailure(null));
+   }
+
+   @Test
+   public void testThreadCount() throws Exception
+   {
+      int cores = Runtime.getRuntime().availableProcessors();
+      assertEquals(1, Util.getThreadCount(null));
+      assertEquals(1, Util.getThreadCount(" "));
+      assertEquals(4, Util.getThreadCount("4"));
+      assertEquals(4, Util.getThreadCount(" 4 "));
+      assertEquals(Math.max(1, (int)(1.5f * cores)), Util.getThreadCount("1.5C"));
+      assertEquals(cores, Util.getThreadCount("1c"));
+      assertEquals(1, Util.getThreadCount("0.0001C"));
+   }
+
+   @Test
+   public void testInvalidThreadCount() throws Exception
+   {
+      for (String threads : new String[] {"2X", "C", "abc", "0", "-2", "-1C", "0C", "NaNC"})
+      {
+         try
+         {
+            Util.getThreadCount(threads);
+            fail("Thread count accepted: " + threads);
+         }
+         catch (IllegalArgumentException iae)
+         {
+            assertTrue(iae.getMessage(), iae.getMessage().contains(threads));
+         }
+      }
+   }
+}
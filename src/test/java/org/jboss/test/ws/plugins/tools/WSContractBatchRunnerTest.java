@@ -0,0 +1,125 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.ws.plugins.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.jboss.test.ws.plugins.tools.utils.RecordingLog;
+import org.jboss.test.ws.plugins.tools.utils.ToolStubs;
+import org.jboss.ws.plugins.tools.WSContractConsumerJob;
+import org.jboss.ws.plugins.tools.WSContractConsumerJob.Status;
+import org.jboss.ws.plugins.tools.WSContractConsumerParams;
+import org.jboss.ws.plugins.tools.WSContractDelegate;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A test for the batch mode: the jobs are written to a batch file, consumed by
+ * WSContractBatchRunner in a single forked JVM (against a stub of the tools API)
+ * and their outcomes are read back from the result file.
+ */
+public class WSContractBatchRunnerTest
+{
+   private File dir;
+   private File workDir;
+   private WSContractConsumerParams params;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      dir = Files.createTempDirectory("wscontract-batch").toFile();
+      File stubs = new File(dir, "stubs");
+      Assume.assumeTrue(ToolStubs.compile(stubs));
+      workDir = new File(dir, "work");
+      params = new WSContractConsumerParams();
+      params.setFork(true);
+      params.setManifestOnlyJar(ToolStubs.createManifestJar(new File(workDir, "classpath.jar"), ToolStubs.getPluginClasses(), stubs));
+   }
+
+   @After
+   public void tearDown() throws Exception
+   {
+      FileUtils.deleteDirectory(dir);
+   }
+
+   @Test
+   public void testBatch() throws Exception
+   {
+      List<WSContractConsumerJob> jobs = new ArrayList<WSContractConsumerJob>();
+      for (String wsdl : Arrays.asList("first.wsdl", "fail.wsdl", "invalid.wsdl", "second.wsdl"))
+      {
+         jobs.add(new WSContractConsumerJob(params, wsdl));
+      }
+      RecordingLog log = new RecordingLog();
+      new WSContractDelegate(log).runConsumerBatch(params, jobs);
+
+      assertEquals(Status.SUCCESS, jobs.get(0).getStatus());
+      assertEquals(Status.FAILED, jobs.get(1).getStatus());
+      assertEquals("java.lang.IllegalStateException: boom", jobs.get(1).getMessage());
+      assertEquals(Status.INVALID_WSDL, jobs.get(2).getStatus());
+      assertEquals("invalid invalid.wsdl", jobs.get(2).getMessage());
+      assertEquals(Status.SUCCESS, jobs.get(3).getStatus());
+
+      //all the jobs ran in the same JVM
+      Set<String> jvms = new HashSet<String>();
+      for (String line : log.getLines())
+      {
+         if (line.contains(ToolStubs.CONSUMED))
+         {
+            jvms.add(line.substring(line.indexOf(ToolStubs.IN) + ToolStubs.IN.length()));
+         }
+      }
+      assertEquals(log.getLines().toString(), 1, jvms.size());
+
+      //the batch and result files are removed
+      String[] files = workDir.list();
+      assertNotNull(files);
+      assertEquals(Arrays.asList("classpath.jar"), Arrays.asList(files));
+   }
+
+   @Test
+   public void testSuccessfulBatch() throws Exception
+   {
+      List<WSContractConsumerJob> jobs = Arrays.asList(new WSContractConsumerJob(params, "first.wsdl"),
+            new WSContractConsumerJob(params, "second.wsdl"));
+      RecordingLog log = new RecordingLog();
+      new WSContractDelegate(log).runConsumerBatch(params, jobs);
+      for (WSContractConsumerJob job : jobs)
+      {
+         assertEquals(job.getWsdl(), Status.SUCCESS, job.getStatus());
+      }
+      assertTrue(log.getLines().toString(), log.getLines().toString().contains(ToolStubs.CONSUMED + "second.wsdl"));
+   }
+}
@@ -0,0 +1,224 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.ws.plugins.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.jboss.test.ws.plugins.tools.utils.RecordingLog;
+import org.jboss.test.ws.plugins.tools.utils.ToolStubs;
+import org.jboss.ws.plugins.tools.WSContractConsumerParams;
+import org.jboss.ws.plugins.tools.WSContractDaemon;
+import org.jboss.ws.plugins.tools.WSContractDaemonClient;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A test for the tool daemons: startup, reuse by key, access token check, idle shutdown
+ * and failure reporting, against a stub of the tools API
+ */
+public class WSContractDaemonTest
+{
+   private static final String PORT_PREFIX = "jaxws-tools-daemon-port:";
+   private static final String TOKEN = "secret";
+
+   private File dir;
+   private File stubs;
+   private RecordingLog log;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      dir = Files.createTempDirectory("wscontract-daemon").toFile();
+      stubs = new File(dir, "stubs");
+      Assume.assumeTrue(ToolStubs.compile(stubs));
+      log = new RecordingLog();
+      WSContractDaemonClient.checkSession(new Object(), log);
+   }
+
+   @After
+   public void tearDown() throws Exception
+   {
+      //a new session shuts down the daemons of the previous one
+      WSContractDaemonClient.checkSession(new Object(), log);
+      FileUtils.deleteDirectory(dir);
+   }
+
+   @Test
+   public void testReuseByKey() throws Exception
+   {
+      List<String> command = getCommand(0);
+      String jvm = consume("a", command, "first.wsdl");
+      assertEquals(jvm, consume("a", command, "second.wsdl"));
+      assertFalse(jvm.equals(consume("b", command, "third.wsdl")));
+   }
+
+   @Test
+   public void testFailingJob() throws Exception
+   {
+      List<String> command = getCommand(0);
+      String jvm = consume("a", command, "first.wsdl");
+      try
+      {
+         consume("a", command, "fail.wsdl");
+         fail("The job failure was not reported");
+      }
+      catch (Exception e)
+      {
+         assertTrue(e.getMessage(), e.getMessage().contains("boom"));
+      }
+      //the stack trace of the failure is streamed back as error output
+      assertTrue(log.getLines().toString(), log.getLines().contains("[error] java.lang.IllegalStateException: boom"));
+      //the daemon survives the failed job
+      assertEquals(jvm, consume("a", command, "second.wsdl"));
+   }
+
+   @Test
+   public void testRestartAfterIdleTimeout() throws Exception
+   {
+      List<String> command = getCommand(1);
+      String jvm = consume("a", command, "first.wsdl");
+      Thread.sleep(3000);
+      //the idle daemon is gone, a new one is started for the job
+      assertFalse(jvm.equals(consume("a", command, "second.wsdl")));
+   }
+
+   @Test
+   public void testIdleShutdown() throws Exception
+   {
+      Process process = new ProcessBuilder(getCommand(1)).redirectErrorStream(true).start();
+      try
+      {
+         Writer stdin = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+         stdin.write(TOKEN + "\n");
+         stdin.flush();
+         BufferedReader stdout = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+         assertTrue(stdout.readLine().startsWith(PORT_PREFIX));
+         assertTrue("The daemon did not shut down when idle", process.waitFor(10, TimeUnit.SECONDS));
+         assertEquals("Idle timeout reached, shutting down", stdout.readLine());
+      }
+      finally
+      {
+         process.destroyForcibly();
+      }
+   }
+
+   @Test
+   public void testTokenRejection() throws Exception
+   {
+      Process process = new ProcessBuilder(getCommand(0)).redirectErrorStream(true).start();
+      try
+      {
+         Writer stdin = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+         stdin.write(TOKEN + "\n");
+         stdin.flush();
+         String line = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)).readLine();
+         assertNotNull(line);
+         int port = Integer.parseInt(line.substring(PORT_PREFIX.length()).trim());
+
+         //a request with a wrong token is dropped without an answer
+         Socket socket = new Socket(InetAddress.getByName(null), port);
+         try
+         {
+            DataOutputStream dos = new DataOutputStream(socket.getOutputStream());
+            dos.writeUTF("wrong");
+            dos.writeUTF("shutdown");
+            dos.flush();
+            assertEquals(-1, new DataInputStream(socket.getInputStream()).read());
+         }
+         finally
+         {
+            socket.close();
+         }
+         assertFalse("The daemon obeyed a request with a wrong token", process.waitFor(1, TimeUnit.SECONDS));
+
+         socket = new Socket(InetAddress.getByName(null), port);
+         try
+         {
+            DataOutputStream dos = new DataOutputStream(socket.getOutputStream());
+            dos.writeUTF(TOKEN);
+            dos.writeUTF("shutdown");
+            dos.flush();
+         }
+         finally
+         {
+            socket.close();
+         }
+         assertTrue("The daemon did not shut down", process.waitFor(10, TimeUnit.SECONDS));
+      }
+      finally
+      {
+         process.destroyForcibly();
+      }
+   }
+
+   private List<String> getCommand(int idleTimeout) throws Exception
+   {
+      String classpath = ToolStubs.getPluginClasses().getAbsolutePath() + File.pathSeparator + stubs.getAbsolutePath();
+      return Arrays.asList(ToolStubs.getJava(), "-cp", classpath, WSContractDaemon.class.getName(), String.valueOf(idleTimeout));
+   }
+
+   /**
+    * Consume the given wsdl in the daemon with the given key
+    *
+    * @return the name of the daemon JVM which consumed the wsdl
+    */
+   private String consume(String key, List<String> command, String wsdl) throws Exception
+   {
+      Properties job = new Properties();
+      new WSContractConsumerParams().store(job, "job");
+      job.setProperty("wsdl", wsdl);
+      WSContractDaemonClient.submit(key, command, "consume", job, log);
+      String prefix = "[info] " + ToolStubs.CONSUMED + wsdl + ToolStubs.IN;
+      for (String line : log.getLines())
+      {
+         if (line.startsWith(prefix))
+         {
+            return line.substring(prefix.length());
+         }
+      }
+      fail(wsdl + " not consumed: " + log.getLines());
+      return null;
+   }
+}
@@ -0,0 +1,101 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.ws.plugins.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.jboss.ws.plugins.tools.WsdlClosure;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A test for the resolution of the documents a wsdl is made of
+ */
+public class WsdlClosureTest
+{
+   private File dir;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      dir = Files.createTempDirectory("wsdl-closure").toFile();
+   }
+
+   @After
+   public void tearDown() throws Exception
+   {
+      FileUtils.deleteDirectory(dir);
+   }
+
+   @Test
+   public void testLocalClosure() throws Exception
+   {
+      File wsdl = write("service.wsdl", wsdl("<xs:import namespace=\"urn:types\" schemaLocation=\"types.xsd\"/>"));
+      write("types.xsd", "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\" targetNamespace=\"urn:types\">"
+            + "<xs:include schemaLocation=\"more-types.xsd\"/></xs:schema>");
+      write("more-types.xsd", "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\" targetNamespace=\"urn:types\"/>");
+
+      WsdlClosure closure = WsdlClosure.resolve(wsdl.getAbsolutePath());
+      assertTrue(closure.isLocal());
+      assertEquals(3, closure.getDocuments().size());
+      assertEquals(wsdl.toURI().toURL(), closure.getDocuments().get(0));
+   }
+
+   @Test
+   public void testRemoteImport() throws Exception
+   {
+      File wsdl = write("service.wsdl", wsdl("<xs:import namespace=\"urn:types\" schemaLocation=\"http://localhost/types.xsd\"/>"));
+      assertFalse(WsdlClosure.resolve(wsdl.getAbsolutePath()).isLocal());
+   }
+
+   @Test
+   public void testNamespaceOnlyImport() throws Exception
+   {
+      //the imported schema can only be found through a catalog
+      File wsdl = write("service.wsdl", wsdl("<xs:import namespace=\"urn:types\"/>"));
+      WsdlClosure closure = WsdlClosure.resolve(wsdl.getAbsolutePath());
+      assertFalse(closure.isLocal());
+      assertEquals(1, closure.getDocuments().size());
+   }
+
+   private static String wsdl(String schemaContent)
+   {
+      return "<definitions xmlns=\"http://schemas.xmlsoap.org/wsdl/\" targetNamespace=\"urn:service\">"
+            + "<types><xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\" targetNamespace=\"urn:service\">"
+            + schemaContent + "</xs:schema></types></definitions>";
+   }
+
+   private File write(String name, String content) throws Exception
+   {
+      File file = new File(dir, name);
+      Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+      return file;
+   }
+}
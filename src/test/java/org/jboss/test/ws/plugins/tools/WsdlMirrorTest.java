@@ -0,0 +1,204 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.ws.plugins.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.jboss.ws.plugins.tools.WsdlMirror;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A test for the local mirror of remote wsdls, run against a local stand-in HTTP
+ * server supporting ETag based conditional requests
+ */
+public class WsdlMirrorTest
+{
+   private final Map<String, String> documents = new ConcurrentHashMap<String, String>();
+   private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+   private HttpServer server;
+   private String base;
+   private File work;
+   private File mirrorDir;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      work = Files.createTempDirectory("wsdl-mirror-test").toFile();
+      mirrorDir = new File(work, "mirror");
+      server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+      server.createContext("/", new HttpHandler()
+      {
+         public void handle(HttpExchange exchange) throws IOException
+         {
+            String path = exchange.getRequestURI().getRawPath();
+            if (exchange.getRequestURI().getRawQuery() != null)
+            {
+               path += "?" + exchange.getRequestURI().getRawQuery();
+            }
+            String content = documents.get(path);
+            if (content == null)
+            {
+               requests.add("404 " + path);
+               exchange.sendResponseHeaders(404, -1);
+            }
+            else
+            {
+               String etag = "\"" + Integer.toHexString(content.hashCode()) + "\"";
+               if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match")))
+               {
+                  requests.add("304 " + path);
+                  exchange.sendResponseHeaders(304, -1);
+               }
+               else
+               {
+                  requests.add("200 " + path);
+                  byte[] body = content.getBytes(StandardCharsets.UTF_8);
+                  exchange.getResponseHeaders().set("ETag", etag);
+                  exchange.sendResponseHeaders(200, body.length);
+                  exchange.getResponseBody().write(body);
+               }
+            }
+            exchange.close();
+         }
+      });
+      server.start();
+      base = "http://127.0.0.1:" + server.getAddress().getPort();
+      documents.put("/svc/hello.wsdl", "<definitions xmlns=\"http://schemas.xmlsoap.org/wsdl/\">\n"
+            + "  <import namespace=\"urn:common\" location=\"" + base + "/common/service?wsdl=1\"/>\n"
+            + "  <types>\n"
+            + "    <xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">\n"
+            + "      <xs:import namespace=\"urn:types\" schemaLocation=\"types.xsd\"/>\n"
+            + "    </xs:schema>\n"
+            + "  </types>\n"
+            + "</definitions>\n");
+      documents.put("/svc/types.xsd", "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\"/>\n");
+      documents.put("/common/service?wsdl=1", "<definitions xmlns=\"http://schemas.xmlsoap.org/wsdl/\"/>\n");
+   }
+
+   @After
+   public void tearDown() throws Exception
+   {
+      server.stop(0);
+      FileUtils.deleteDirectory(work);
+   }
+
+   @Test
+   public void testMirror() throws Exception
+   {
+      WsdlMirror mirror = new WsdlMirror(mirrorDir, false, 4, new SystemStreamLog());
+      WsdlMirror.Closure closure = mirror.mirror(base + "/svc/hello.wsdl");
+      assertEquals(3, closure.getDocuments().size());
+      assertEquals(3, mirror.getDownloaded());
+      assertArrayEquals(documents.get("/svc/hello.wsdl").getBytes(StandardCharsets.UTF_8), Files.readAllBytes(closure.getWsdl().toPath()));
+      //relative references resolve within the mirror
+      File types = new File(closure.getWsdl().getParentFile(), "types.xsd");
+      assertEquals(types, closure.getDocuments().get(base + "/svc/types.xsd"));
+      assertTrue(types.isFile());
+
+      File catalog = new File(work, "catalog.xml");
+      File userCatalog = new File(work, "user-catalog.xml");
+      closure.writeCatalog(catalog, userCatalog);
+      String content = new String(Files.readAllBytes(catalog.toPath()), StandardCharsets.UTF_8);
+      assertTrue(content.contains("<system systemId=\"" + base + "/common/service?wsdl=1\" uri=\""
+            + closure.getDocuments().get(base + "/common/service?wsdl=1").toURI() + "\"/>"));
+      assertTrue(content.contains("<nextCatalog catalog=\"" + userCatalog.toURI() + "\"/>"));
+
+      //documents are fetched once per mirror
+      requests.clear();
+      mirror.mirror(base + "/svc/hello.wsdl");
+      assertTrue(requests.isEmpty());
+   }
+
+   @Test
+   public void testRevalidation() throws Exception
+   {
+      new WsdlMirror(mirrorDir, false, 4, new SystemStreamLog()).mirror(base + "/svc/hello.wsdl");
+      requests.clear();
+      WsdlMirror mirror = new WsdlMirror(mirrorDir, false, 4, new SystemStreamLog());
+      mirror.mirror(base + "/svc/hello.wsdl");
+      assertEquals(0, mirror.getDownloaded());
+      assertEquals(3, mirror.getNotModified());
+      assertEquals(3, requests.size());
+
+      documents.put("/svc/types.xsd", "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\" targetNamespace=\"urn:types\"/>\n");
+      mirror = new WsdlMirror(mirrorDir, false, 4, new SystemStreamLog());
+      WsdlMirror.Closure closure = mirror.mirror(base + "/svc/hello.wsdl");
+      assertEquals(1, mirror.getDownloaded());
+      assertEquals(2, mirror.getNotModified());
+      assertArrayEquals(documents.get("/svc/types.xsd").getBytes(StandardCharsets.UTF_8),
+            Files.readAllBytes(closure.getDocuments().get(base + "/svc/types.xsd").toPath()));
+   }
+
+   @Test
+   public void testOffline() throws Exception
+   {
+      try
+      {
+         new WsdlMirror(mirrorDir, true, 4, new SystemStreamLog()).mirror(base + "/svc/hello.wsdl");
+         fail("Expected an IOException, the mirror being empty");
+      }
+      catch (IOException ioe)
+      {
+         //expected
+      }
+      assertTrue(requests.isEmpty());
+
+      new WsdlMirror(mirrorDir, false, 4, new SystemStreamLog()).mirror(base + "/svc/hello.wsdl");
+      requests.clear();
+      WsdlMirror mirror = new WsdlMirror(mirrorDir, true, 4, new SystemStreamLog());
+      assertEquals(3, mirror.mirror(base + "/svc/hello.wsdl").getDocuments().size());
+      assertEquals(3, mirror.getServed());
+      assertTrue(requests.isEmpty());
+   }
+
+   @Test
+   public void testDeadServer() throws Exception
+   {
+      WsdlMirror.Closure mirrored = new WsdlMirror(mirrorDir, false, 4, new SystemStreamLog()).mirror(base + "/svc/hello.wsdl");
+      server.stop(0);
+      WsdlMirror mirror = new WsdlMirror(mirrorDir, false, 4, new SystemStreamLog());
+      assertEquals(mirrored.getDocuments(), mirror.mirror(base + "/svc/hello.wsdl").getDocuments());
+      assertEquals(3, mirror.getServed());
+   }
+}
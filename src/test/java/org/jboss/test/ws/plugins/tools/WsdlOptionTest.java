@@ -0,0 +1,100 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.ws.plugins.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.jboss.ws.plugins.tools.WSContractConsumerParams;
+import org.jboss.ws.plugins.tools.WsdlOption;
+import org.junit.Test;
+
+/**
+ * A test for the merging of the per-wsdl settings with the execution level ones
+ */
+public class WsdlOptionTest
+{
+   private static final List<String> BINDINGS = Collections.singletonList("bindings.xml");
+   private static final File CATALOG = new File("catalog.xml");
+
+   @Test
+   public void testUnsetSettingsInheritDefaults() throws Exception
+   {
+      WsdlOption option = new WsdlOption();
+      option.setWsdl("ignored.wsdl");
+      WsdlOption merged = option.withDefaults("hello.wsdl", "org.example", BINDINGS, "wl", CATALOG);
+      assertEquals("hello.wsdl", merged.getWsdl());
+      assertEquals("org.example", merged.getTargetPackage());
+      assertEquals(BINDINGS, merged.getBindingFiles());
+      assertEquals("wl", merged.getWsdlLocation());
+      assertEquals(CATALOG, merged.getCatalog());
+      //the option itself is left untouched
+      assertNull(option.getTargetPackage());
+   }
+
+   @Test
+   public void testSetSettingsOverrideDefaults() throws Exception
+   {
+      WsdlOption option = new WsdlOption();
+      option.setTargetPackage("org.example.hello");
+      option.setBindingFiles(Arrays.asList("hello-bindings.xml"));
+      option.setWsdlLocation("hello-wl");
+      option.setCatalog(new File("hello-catalog.xml"));
+      WsdlOption merged = option.withDefaults("hello.wsdl", "org.example", BINDINGS, "wl", CATALOG);
+      assertEquals("org.example.hello", merged.getTargetPackage());
+      assertEquals(Arrays.asList("hello-bindings.xml"), merged.getBindingFiles());
+      assertEquals("hello-wl", merged.getWsdlLocation());
+      assertEquals(new File("hello-catalog.xml"), merged.getCatalog());
+
+      //partially set options only override what's set
+      WsdlOption partial = new WsdlOption();
+      partial.setTargetPackage("org.example.partial");
+      merged = partial.withDefaults("hello.wsdl", "org.example", BINDINGS, null, CATALOG);
+      assertEquals("org.example.partial", merged.getTargetPackage());
+      assertEquals(BINDINGS, merged.getBindingFiles());
+      assertNull(merged.getWsdlLocation());
+      assertEquals(CATALOG, merged.getCatalog());
+   }
+
+   @Test
+   public void testApplyTo() throws Exception
+   {
+      WSContractConsumerParams params = new WSContractConsumerParams();
+      params.setTargetPackage("org.example");
+      params.setBindingFiles(BINDINGS);
+      params.setWsdlLocation("wl");
+      params.setCatalog(CATALOG);
+      WsdlOption option = new WsdlOption();
+      option.setTargetPackage("org.example.hello");
+      option.withDefaults("hello.wsdl", params.getTargetPackage(), params.getBindingFiles(), params.getWsdlLocation(), params.getCatalog())
+            .applyTo(params);
+      assertEquals("org.example.hello", params.getTargetPackage());
+      assertEquals(BINDINGS, params.getBindingFiles());
+      assertEquals("wl", params.getWsdlLocation());
+      assertEquals(CATALOG, params.getCatalog());
+   }
+}
@@ -0,0 +1,146 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.ws.plugins.tools;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.jboss.ws.plugins.tools.WsdlScanner;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A test for the scan of wsdl directories
+ */
+public class WsdlScannerTest
+{
+   private File dir;
+   private final List<File> links = new ArrayList<File>();
+
+   @Before
+   public void setUp() throws Exception
+   {
+      dir = Files.createTempDirectory("wsdl-scanner").toFile();
+      touch("b.wsdl");
+      touch("a.wsdl");
+      touch("readme.txt");
+      touch("legacy/old.wsdl");
+      touch("legacy/nested/older.wsdl");
+      touch("services/z/z.wsdl");
+      touch("services/a/a.wsdl");
+      touch("services/a/a.xsd");
+      touch(".git/refs/fake.wsdl");
+      touch(".svn/fake.wsdl");
+   }
+
+   @After
+   public void tearDown() throws Exception
+   {
+      //not to have the links followed while deleting
+      for (File link : links)
+      {
+         Files.deleteIfExists(link.toPath());
+      }
+      FileUtils.deleteDirectory(dir);
+   }
+
+   @Test
+   public void testDefaultIncludesAndSorting() throws Exception
+   {
+      assertEquals(Arrays.asList("a.wsdl", "b.wsdl", "legacy/nested/older.wsdl", "legacy/old.wsdl", "services/a/a.wsdl", "services/z/z.wsdl"),
+            scan(null, null));
+   }
+
+   @Test
+   public void testIncludes() throws Exception
+   {
+      assertEquals(Arrays.asList("services/a/a.wsdl", "services/a/a.xsd", "services/z/z.wsdl"),
+            scan(Arrays.asList("services/**/*"), null));
+      assertEquals(Arrays.asList("a.wsdl", "b.wsdl"), scan(Arrays.asList("*.wsdl"), null));
+   }
+
+   @Test
+   public void testExcludes() throws Exception
+   {
+      assertEquals(Arrays.asList("a.wsdl", "b.wsdl", "services/a/a.wsdl"),
+            scan(null, Arrays.asList("legacy/**", "**/z.wsdl")));
+   }
+
+   @Test
+   public void testTrailingSeparatorPatterns() throws Exception
+   {
+      assertEquals(Arrays.asList("a.wsdl", "b.wsdl", "services/a/a.wsdl", "services/z/z.wsdl"),
+            scan(null, Arrays.asList("legacy/")));
+      assertEquals(Arrays.asList("services/a/a.wsdl", "services/a/a.xsd"),
+            scan(Arrays.asList("services/a/"), null));
+   }
+
+   @Test
+   public void testSymbolicLinkLoop() throws Exception
+   {
+      try
+      {
+         link("services/a/loop", dir);
+         link("linked", new File(dir, "services/z"));
+      }
+      catch (UnsupportedOperationException | IOException e)
+      {
+         Assume.assumeNoException(e);
+      }
+      assertEquals(Arrays.asList("a.wsdl", "b.wsdl", "legacy/nested/older.wsdl", "legacy/old.wsdl", "linked/z.wsdl", "services/a/a.wsdl", "services/z/z.wsdl"),
+            scan(null, null));
+   }
+
+   private List<String> scan(List<String> includes, List<String> excludes)
+   {
+      List<String> names = new ArrayList<String>();
+      for (File file : new WsdlScanner(dir, includes, excludes).scan(4))
+      {
+         names.add(dir.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/'));
+      }
+      return names;
+   }
+
+   private void link(String name, File target) throws IOException
+   {
+      File link = new File(dir, name);
+      Files.createSymbolicLink(link.toPath(), target.toPath());
+      links.add(link);
+   }
+
+   private void touch(String name) throws IOException
+   {
+      File file = new File(dir, name);
+      file.getParentFile().mkdirs();
+      Files.write(file.toPath(), Collections.singletonList(name));
+   }
+}
@@ -0,0 +1,89 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.ws.plugins.tools.helpers;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+/**
+ * A helper class for testing the in-process execution of wsconsume through bsh scripts
+ */
+public class TestWsConsumeInProcessHelper implements VerifyScriptHelper, SetupScriptHelper
+{
+   private Long lastModificationTime = null;
+
+   @Override
+   public boolean verify(File basedir, File localRepositoryPath, Map<?, ?> context) throws Exception
+   {
+      File endpointFile = getEndpointFile(basedir);
+      if (!endpointFile.exists())
+      {
+         System.out.println(endpointFile + " not found!");
+         return false;
+      }
+      if (lastModificationTime != null && endpointFile.lastModified() == lastModificationTime)
+      {
+         System.out.println(endpointFile + " was not modified by the plugin!");
+         return false;
+      }
+      
+      //the tools must have actually run in-process, without falling back to fork mode
+      File buildLog = new File(basedir, "build.log");
+      if (buildLog.exists())
+      {
+         String log = new String(Files.readAllBytes(buildLog.toPath()), StandardCharsets.UTF_8);
+         if (log.contains("falling back to fork mode"))
+         {
+            System.out.println("wsconsume did not run in-process!");
+            return false;
+         }
+      }
+      
+      File classesFoo = new File(basedir.getAbsolutePath() + File.separator + "target" + File.separator + "classes" + File.separator + "foo" +
+            File.separator + "bar");
+      if (!classesFoo.exists())
+      {
+         System.out.println(classesFoo + " dir not found!");
+         return false;
+      }
+      return true;
+   }
+
+   @Override
+   public void setup(File basedir, File localRepositoryPath, Map<?, ?> context) throws Exception
+   {
+      File endpointFile = getEndpointFile(basedir);
+      if (endpointFile.exists())
+      {
+         this.lastModificationTime = endpointFile.lastModified();
+      }
+   }
+
+   private static File getEndpointFile(File basedir)
+   {
+      return new File(basedir.getAbsolutePath() + File.separator + "target" + File.separator + "generated-sources" + File.separator + "wsconsume" +
+            File.separator + "foo" + File.separator + "bar" + File.separator + "Endpoint.java");
+   }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.ws.plugins.tools.helpers;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+/**
+ * A helper class for testing the up-to-date checks of wsconsume through bsh scripts:
+ * the second execution consumes the same wsdls with the same settings and must skip them
+ */
+public class TestWsConsumeUpToDateHelper implements VerifyScriptHelper, SetupScriptHelper
+{
+   @Override
+   public boolean verify(File basedir, File localRepositoryPath, Map<?, ?> context) throws Exception
+   {
+      for (String pkg : new String[] {"bar", "bar2"})
+      {
+         File endpointFile = new File(basedir.getAbsolutePath() + File.separator + "target" + File.separator + "generated-sources" + File.separator + "wsconsume" +
+               File.separator + "foo" + File.separator + pkg + File.separator + "Endpoint.java");
+         if (!endpointFile.exists())
+         {
+            System.out.println(endpointFile + " not found!");
+            return false;
+         }
+      }
+      
+      File buildLog = new File(basedir, "build.log");
+      if (!buildLog.exists())
+      {
+         System.out.println(buildLog + " not found!");
+         return false;
+      }
+      String log = new String(Files.readAllBytes(buildLog.toPath()), StandardCharsets.UTF_8);
+      for (String wsdl : new String[] {"test.wsdl", "test2.wsdl"})
+      {
+         if (!log.contains("Skipping up-to-date wsdl: " + new File(basedir, wsdl).getAbsolutePath()))
+         {
+            System.out.println(wsdl + " was not skipped by the second execution!");
+            return false;
+         }
+      }
+      
+      File classesFoo = new File(basedir.getAbsolutePath() + File.separator + "target" + File.separator + "classes" + File.separator + "foo");
+      if (!classesFoo.exists())
+      {
+         System.out.println(classesFoo + " dir not found!");
+         return false;
+      }
+      return true;
+   }
+
+   @Override
+   public void setup(File basedir, File localRepositoryPath, Map<?, ?> context) throws Exception
+   {
+      //NOOP
+   }
+
+}
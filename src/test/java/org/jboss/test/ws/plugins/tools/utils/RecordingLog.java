@@ -0,0 +1,140 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.ws.plugins.tools.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * A Log recording the messages it's given as "[level] message" lines, for checking
+ * what the plugin actually logs.
+ */
+public class RecordingLog implements Log
+{
+   private final List<String> lines = new ArrayList<String>();
+   private final boolean debugEnabled;
+
+   public RecordingLog()
+   {
+      this(false);
+   }
+
+   public RecordingLog(boolean debugEnabled)
+   {
+      this.debugEnabled = debugEnabled;
+   }
+
+   /**
+    * @return the recorded lines, in the order they were logged
+    */
+   public synchronized List<String> getLines()
+   {
+      return new ArrayList<String>(lines);
+   }
+
+   private synchronized void add(String level, CharSequence content, Throwable error)
+   {
+      lines.add("[" + level + "] " + (content != null ? content : "") + (error != null ? " " + error : ""));
+   }
+
+   public boolean isDebugEnabled()
+   {
+      return debugEnabled;
+   }
+
+   public void debug(CharSequence content)
+   {
+      add("debug", content, null);
+   }
+
+   public void debug(CharSequence content, Throwable error)
+   {
+      add("debug", content, error);
+   }
+
+   public void debug(Throwable error)
+   {
+      add("debug", null, error);
+   }
+
+   public boolean isInfoEnabled()
+   {
+      return true;
+   }
+
+   public void info(CharSequence content)
+   {
+      add("info", content, null);
+   }
+
+   public void info(CharSequence content, Throwable error)
+   {
+      add("info", content, error);
+   }
+
+   public void info(Throwable error)
+   {
+      add("info", null, error);
+   }
+
+   public boolean isWarnEnabled()
+   {
+      return true;
+   }
+
+   public void warn(CharSequence content)
+   {
+      add("warn", content, null);
+   }
+
+   public void warn(CharSequence content, Throwable error)
+   {
+      add("warn", content, error);
+   }
+
+   public void warn(Throwable error)
+   {
+      add("warn", null, error);
+   }
+
+   public boolean isErrorEnabled()
+   {
+      return true;
+   }
+
+   public void error(CharSequence content)
+   {
+      add("error", content, null);
+   }
+
+   public void error(CharSequence content, Throwable error)
+   {
+      add("error", content, error);
+   }
+
+   public void error(Throwable error)
+   {
+      add("error", null, error);
+   }
+}
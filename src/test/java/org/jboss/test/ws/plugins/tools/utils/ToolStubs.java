@@ -0,0 +1,127 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.ws.plugins.tools.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.jboss.ws.plugins.tools.WSContractDaemon;
+
+/**
+ * A stub of the JBossWS tools consumer API for the tests running the forked tool entry points
+ * of the plugin (batch runner, daemon) without a web services stack: the stub logs the consumed
+ * wsdl along with the name of the JVM it runs in, fails with a MalformedURLException for the
+ * wsdls whose name contains "invalid" and with an IllegalStateException("boom") for the ones
+ * whose name contains "fail".
+ */
+public final class ToolStubs
+{
+   public static final String CONSUMED = "consumed ";
+   public static final String IN = " in ";
+
+   private static final String CONSUMER = "package org.jboss.ws.api.tools;\n"
+         + "public class WSContractConsumer {\n"
+         + "   private java.io.PrintStream out = System.out;\n"
+         + "   public static WSContractConsumer newInstance() { return new WSContractConsumer(); }\n"
+         + "   public void setMessageStream(java.io.PrintStream out) { this.out = out; }\n"
+         + "   public void setAdditionalHeaders(boolean value) {}\n"
+         + "   public void setExtension(boolean value) {}\n"
+         + "   public void setGenerateSource(boolean value) {}\n"
+         + "   public void setNoCompile(boolean value) {}\n"
+         + "   public void consume(String wsdl) throws Exception {\n"
+         + "      if (wsdl.contains(\"invalid\")) throw new java.net.MalformedURLException(\"invalid \" + wsdl);\n"
+         + "      if (wsdl.contains(\"fail\")) throw new IllegalStateException(\"boom\");\n"
+         + "      out.println(\"" + CONSUMED + "\" + wsdl + \"" + IN + "\"\n"
+         + "            + java.lang.management.ManagementFactory.getRuntimeMXBean().getName());\n"
+         + "   }\n"
+         + "}\n";
+
+   private ToolStubs()
+   {
+   }
+
+   /**
+    * Compile the stub tools API into the given directory
+    *
+    * @return false if not running on a JDK
+    */
+   public static boolean compile(File directory) throws IOException
+   {
+      JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+      if (compiler == null)
+      {
+         return false;
+      }
+      File src = new File(directory.getParentFile(), directory.getName() + "-src/org/jboss/ws/api/tools/WSContractConsumer.java");
+      src.getParentFile().mkdirs();
+      Files.write(src.toPath(), CONSUMER.getBytes(StandardCharsets.UTF_8));
+      directory.mkdirs();
+      if (compiler.run(null, null, null, "-d", directory.getAbsolutePath(), src.getAbsolutePath()) != 0)
+      {
+         throw new IOException("Could not compile " + src);
+      }
+      return true;
+   }
+
+   /**
+    * @return the directory (or jar) the plugin classes are loaded from
+    */
+   public static File getPluginClasses() throws Exception
+   {
+      return new File(WSContractDaemon.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+   }
+
+   /**
+    * @return the path of the java launcher of the current JVM
+    */
+   public static String getJava()
+   {
+      return new File(System.getProperty("java.home"), "bin/java").getAbsolutePath();
+   }
+
+   /**
+    * Write a manifest-only jar, whose Class-Path lists the given entries
+    */
+   public static File createManifestJar(File jar, File... entries) throws IOException
+   {
+      StringBuilder classPath = new StringBuilder();
+      for (File entry : entries)
+      {
+         classPath.append(entry.toURI().toURL().toExternalForm()).append(' ');
+      }
+      Manifest manifest = new Manifest();
+      manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+      manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, classPath.toString().trim());
+      jar.getParentFile().mkdirs();
+      new JarOutputStream(new FileOutputStream(jar), manifest).close();
+      return jar;
+   }
+}